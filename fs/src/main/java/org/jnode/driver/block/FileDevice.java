@@ -27,13 +27,19 @@ import java.io.RandomAccessFile;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.jnode.driver.Device;
 import org.jnode.partitions.PartitionTableEntry;
-import org.jnode.util.ByteBufferUtils;
 
 /**
  * This class is a device wrapping a simple file
+ * <p>
+ * I/O is done with positional {@link FileChannel} calls, so there is no shared
+ * file pointer and concurrent readers do not need to lock each other out.
+ * Optionally the file can be memory mapped in windows of {@link #MAP_WINDOW_SIZE}
+ * bytes, reads are then served from the mapped windows.
  *
  * @author epr
  */
@@ -41,8 +47,19 @@ public class FileDevice extends Device implements FSBlockDeviceAPI {
 
     private static final Logger log = System.getLogger(FileDevice.class.getName());
 
+    /** size of one mapped window (1GiB) */
+    static final long MAP_WINDOW_SIZE = 1L << 30;
+
     private final RandomAccessFile raf;
 
+    private final FileChannel channel;
+
+    /** mapped windows, null when not mapped */
+    private volatile MappedByteBuffer[] windows;
+
+    /** the file length covered by {@link #windows} */
+    private long mappedLength;
+
     /** virtual offset */
     private long offset = 0;
 
@@ -65,6 +82,7 @@ log.log(Level.DEBUG, String.format("offset: %08x + %08x -> %08x", (this.offset -
     public FileDevice(File file, String mode) throws IOException {
         super("file" + System.currentTimeMillis());
         raf = new RandomAccessFile(file, mode);
+        channel = raf.getChannel();
 //        registerAPI(BlockDeviceAPI.class, this);
         registerAPI(FSBlockDeviceAPI.class, this);
     }
@@ -82,6 +100,27 @@ log.log(Level.DEBUG, String.format("offset: %08x + %08x -> %08x", (this.offset -
         this.offset = offset;
     }
 
+    /**
+     * Create a new FileDevice optionally backed by memory mapped windows.
+     *
+     * @param file the target file
+     * @param mode see {@link RandomAccessFile}
+     * @param mapped true to serve reads from memory mapped windows of the file
+     * @throws FileNotFoundException when an error occurs
+     */
+    public FileDevice(File file, String mode, boolean mapped) throws IOException {
+        this(file, mode);
+        if (mapped) {
+            mappedLength = raf.length();
+            windows = new MappedByteBuffer[(int) ((mappedLength + MAP_WINDOW_SIZE - 1) / MAP_WINDOW_SIZE)];
+        }
+    }
+
+    /** @return true if reads are served from memory mapped windows */
+    public boolean isMapped() {
+        return windows != null;
+    }
+
     @Override
     public long getLength() throws IOException {
         return raf.length() - offset;
@@ -89,24 +128,65 @@ log.log(Level.DEBUG, String.format("offset: %08x + %08x -> %08x", (this.offset -
 
     @Override
     public void read(long devOffset, ByteBuffer destBuf) throws IOException {
-        raf.seek(devOffset + offset);
-log.log(Level.DEBUG, String.format("offset: %08x (%08x)", devOffset + offset, offset));
-
-        // TODO optimize it also to use ByteBuffer at lower level
-        ByteBufferUtils.ByteArray destBA = ByteBufferUtils.toByteArray(destBuf);
-        byte[] dest = destBA.toArray();
-        raf.read(dest, 0, dest.length);
-        destBA.refreshByteBuffer();
+        long position = devOffset + offset;
+        if (log.isLoggable(Level.TRACE)) {
+            log.log(Level.TRACE, String.format("offset: %08x (%08x)", position, offset));
+        }
+
+        MappedByteBuffer[] windows = this.windows;
+        if (windows != null && position + destBuf.remaining() <= mappedLength) {
+            readMapped(windows, position, destBuf);
+            return;
+        }
+
+        while (destBuf.hasRemaining()) {
+            int n = channel.read(destBuf, position);
+            if (n < 0) {
+                // beyond the end of file, the rest of the buffer is left untouched
+                destBuf.position(destBuf.limit());
+                break;
+            }
+            position += n;
+        }
+    }
+
+    /** copies from the mapped windows, the windows are never repositioned so this is thread safe */
+    private void readMapped(MappedByteBuffer[] windows, long position, ByteBuffer destBuf) throws IOException {
+        while (destBuf.hasRemaining()) {
+            int index = (int) (position / MAP_WINDOW_SIZE);
+            int windowOffset = (int) (position % MAP_WINDOW_SIZE);
+            MappedByteBuffer window = getWindow(windows, index);
+            int length = Math.min(destBuf.remaining(), window.capacity() - windowOffset);
+            destBuf.put(destBuf.position(), window, windowOffset, length);
+            destBuf.position(destBuf.position() + length);
+            position += length;
+        }
+    }
+
+    /** maps the window lazily */
+    private MappedByteBuffer getWindow(MappedByteBuffer[] windows, int index) throws IOException {
+        MappedByteBuffer window = windows[index];
+        if (window == null) {
+            synchronized (windows) {
+                window = windows[index];
+                if (window == null) {
+                    long start = index * MAP_WINDOW_SIZE;
+                    long size = Math.min(MAP_WINDOW_SIZE, mappedLength - start);
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                    windows[index] = window;
+                }
+            }
+        }
+        return window;
     }
 
     @Override
     public void write(long devOffset, ByteBuffer srcBuf) throws IOException {
 //        log.log(Level.DEBUG, "fd.write devOffset=" + devOffset + ", length=" + length);
-        raf.seek(devOffset + offset);
-
-        // TODO optimize it also to use ByteBuffer at lower level
-        byte[] src = ByteBufferUtils.toArray(srcBuf);
-        raf.write(src, 0, src.length);
+        long position = devOffset + offset;
+        while (srcBuf.hasRemaining()) {
+            position += channel.write(srcBuf, position);
+        }
     }
 
     @Override
@@ -124,6 +204,11 @@ log.log(Level.DEBUG, String.format("offset: %08x (%08x)", devOffset + offset, of
             log.log(Level.WARNING, "this device has virtual offset (" + offset + "), so length you specified might be different as your expectation.");
         }
         raf.setLength(length);
+        if (windows != null) {
+            // remap lazily against the new length
+            mappedLength = raf.length();
+            windows = new MappedByteBuffer[(int) ((mappedLength + MAP_WINDOW_SIZE - 1) / MAP_WINDOW_SIZE)];
+        }
         if (offset > 0) {
             log.log(Level.WARNING, "now real file length is " + length + ", virtual offset is " + offset);
         }
@@ -133,6 +218,7 @@ log.log(Level.DEBUG, String.format("offset: %08x (%08x)", devOffset + offset, of
      * close the underlying file
      */
     public void close() throws IOException {
+        windows = null;
         raf.close();
     }
 
@@ -70,6 +70,13 @@ public class DirectoryParser {
     private UpcaseTable upcase;
     private int index;
 
+    /**
+     * The up-cased name to look for, {@code null} to report all entries.
+     */
+    private String lookupName;
+    private int lookupHash;
+    private boolean found;
+
     private DirectoryParser(Node node, boolean showDeleted) {
         this.node = node;
         this.showDeleted = showDeleted;
@@ -117,9 +124,28 @@ public class DirectoryParser {
         chunk.position(chunk.position() + bytes);
     }
 
+    /**
+     * Looks for a single entry by name. Only the entry sets whose name hash
+     * matches are decoded, and parsing stops at the first match.
+     *
+     * @param name the name, matched case-insensitive
+     * @param v    the visitor, which sees at most the matching node
+     * @throws IOException on read error
+     */
+    public void lookup(String name, Visitor v) throws IOException {
+        if (this.upcase == null) {
+            throw new IllegalStateException("no upcase table");
+        }
+
+        this.lookupName = this.upcase.toUpperCase(name);
+        this.lookupHash = hashName(name);
+
+        parse(v);
+    }
+
     public void parse(Visitor v) throws IOException {
 
-        while (true) {
+        while (!found) {
             final int entryType = DeviceAccess.getUint8(chunk);
 
             if (entryType == LABEL) {
@@ -242,6 +268,11 @@ public class DirectoryParser {
 
         conts--;
 
+        if (this.lookupName != null && nameHash != this.lookupHash) {
+            skipEntries(conts, deleted);
+            return;
+        }
+
         // read file name
         final StringBuilder nameBuilder = new StringBuilder(nameLen);
 
@@ -287,11 +318,36 @@ public class DirectoryParser {
                 " != " + Integer.toHexString(nameHash) + ")");
         }
 
+        if (this.lookupName != null) {
+            if (!this.lookupName.equals(this.upcase.toUpperCase(name))) {
+                /* just a hash collision */
+                return;
+            }
+
+            this.found = true;
+        }
+
         v.foundNode(Node.create(sb, startCluster, attrib, name, (flag == FLAG_CONTIGUOUS), realSize, times, deleted),
             index);
     }
 
-    private int hashName(String name) throws IOException {
+    /**
+     * Skips the remaining entries of an entry set without decoding them.
+     */
+    private void skipEntries(int count, boolean deleted) throws IOException {
+        while (count-- > 0) {
+            advance();
+
+            if (deleted) {
+                // Keep the index consistent with the index when not recovering deleted files
+                index++;
+            }
+
+            skip(ENTRY_SIZE);
+        }
+    }
+
+    private int hashName(String name) {
         int hash = 0;
 
         for (int i = 0; i < name.length(); i++) {
@@ -53,6 +53,7 @@ public final class ExFatSuperBlock extends AbstractFSObject {
     private byte blockBits;
     private byte blocksPerClusterBits;
     private byte percentInUse;
+    private Fat fat;
 
     public ExFatSuperBlock(ExFatFileSystem fs) {
         super(fs);
@@ -123,6 +124,8 @@ public final class ExFatSuperBlock extends AbstractFSObject {
                 result.fsVersionMinor);
         }
 
+        result.fat = new Fat(result);
+
         return result;
     }
 
@@ -153,6 +156,15 @@ public final class ExFatSuperBlock extends AbstractFSObject {
         return da;
     }
 
+    /**
+     * Gets the file allocation table.
+     *
+     * @return the FAT, loaded on demand.
+     */
+    Fat getFat() {
+        return fat;
+    }
+
     public long getBlockStart() {
         return blockStart;
     }
@@ -0,0 +1,90 @@
+/*
+ * $Id$
+ *
+ * Copyright (C) 2003-2015 JNode.org
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public 
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; If not, write to the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jnode.fs.exfat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lazily loaded in-memory mirror of the exFAT file allocation table. The
+ * table is read in pages of {@link #PAGE_ENTRIES} entries, so following a
+ * cluster chain costs one device read per page instead of one per cluster.
+ */
+final class Fat {
+
+    /**
+     * The number of FAT entries per page, 64KiB worth of entries.
+     */
+    static final int PAGE_ENTRIES = 16 * 1024;
+
+    private static final int PAGE_SHIFT = Integer.numberOfTrailingZeros(PAGE_ENTRIES);
+
+    private final ExFatSuperBlock sb;
+
+    /**
+     * The number of entries in the table, including the two reserved ones.
+     */
+    private final long entryCount;
+
+    private final AtomicReferenceArray<int[]> pages;
+
+    Fat(ExFatSuperBlock sb) {
+        this.sb = sb;
+        this.entryCount = Math.min(sb.getClusterCount() + Cluster.FIRST_DATA_CLUSTER,
+            sb.blockToOffset(sb.getFatBlockCount()) / Cluster.SIZE);
+        this.pages = new AtomicReferenceArray<>((int) ((entryCount + PAGE_ENTRIES - 1) >>> PAGE_SHIFT));
+    }
+
+    /**
+     * Gets the FAT entry of a cluster, which is the next cluster of the chain.
+     *
+     * @param cluster the cluster.
+     * @return the FAT entry, an invalid cluster marks the end of the chain.
+     * @throws IOException on read error
+     */
+    public long getNextCluster(long cluster) throws IOException {
+        if (cluster >= entryCount) {
+            throw new IOException("cluster " + cluster + " exceeds the FAT of " + entryCount + " entries");
+        }
+
+        final int index = (int) (cluster >>> PAGE_SHIFT);
+        int[] page = pages.get(index);
+        if (page == null) {
+            page = readPage(index);
+            pages.compareAndSet(index, null, page);
+        }
+
+        return page[(int) (cluster & (PAGE_ENTRIES - 1))] & 0xffff_ffffL;
+    }
+
+    private int[] readPage(int index) throws IOException {
+        final long first = (long) index << PAGE_SHIFT;
+        final int count = (int) Math.min(PAGE_ENTRIES, entryCount - first);
+        final ByteBuffer buffer = ByteBuffer.allocate(count * Cluster.SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        sb.getDeviceAccess().read(buffer, sb.blockToOffset(sb.getFatBlockStart()) + first * Cluster.SIZE);
+        buffer.flip();
+
+        final int[] page = new int[count];
+        buffer.asIntBuffer().get(page);
+        return page;
+    }
+}
@@ -21,6 +21,9 @@
 package org.jnode.fs.exfat;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author Matthias Treydte &lt;waldheinz at gmail.com&gt;
@@ -61,7 +64,6 @@ public final class Node {
     }
 
     private final ExFatSuperBlock sb;
-    private final DeviceAccess da;
     private final long startCluster;
     private final EntryTimes times;
 
@@ -72,9 +74,13 @@ public final class Node {
     private long size;
     private boolean deleted;
 
+    /**
+     * The clusters of this node as runs of consecutive clusters, built on first use.
+     */
+    private volatile Runs runs;
+
     private Node(ExFatSuperBlock sb, long startCluster, EntryTimes times) {
         this.sb = sb;
-        this.da = sb.getDeviceAccess();
         this.startCluster = startCluster;
         this.times = times;
     }
@@ -153,11 +159,135 @@ public final class Node {
         if (this.isContiguous) {
             return cluster + 1;
         } else {
-            final long fatOffset =
-                sb.blockToOffset(this.sb.getFatBlockStart()) +
-                    cluster * Cluster.SIZE;
+            return this.sb.getFat().getNextCluster(cluster);
+        }
+    }
+
+    /**
+     * Maps a cluster index within this node to the cluster on the device.
+     *
+     * @param index the index of the cluster within this node.
+     * @return the cluster on the device.
+     * @throws IOException if the index is beyond the cluster chain or on read error
+     */
+    public long getCluster(long index) throws IOException {
+        final Runs runs = getRuns();
+        final int run = runs.find(index);
+
+        if (run < 0) {
+            throw new IOException("cluster index " + index + " is beyond the cluster chain of " + this);
+        }
+
+        return runs.clusters[run] + (index - runs.starts[run]);
+    }
+
+    /**
+     * Determines how many clusters starting at a cluster index are
+     * consecutive on the device, so they can be read at once.
+     *
+     * @param index the index of the cluster within this node.
+     * @return the number of consecutive clusters, {@code 0} if the index is
+     *     beyond the cluster chain
+     * @throws IOException on read error
+     */
+    public long getContiguousClusterCount(long index) throws IOException {
+        final Runs runs = getRuns();
+        final int run = runs.find(index);
+
+        return run < 0 ? 0 : runs.starts[run] + runs.lengths[run] - index;
+    }
+
+    private Runs getRuns() throws IOException {
+        Runs result = this.runs;
+
+        if (result == null) {
+            result = buildRuns();
+            this.runs = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Walks the cluster chain once, merging consecutive clusters into runs.
+     */
+    private Runs buildRuns() throws IOException {
+        final long bpc = this.sb.getBytesPerCluster();
+        final long count = (this.clusterCount != 0) ? this.clusterCount : (this.size + bpc - 1) / bpc;
+
+        if (this.startCluster == 0 || (count == 0 && this.isContiguous)) {
+            return new Runs(new long[0], new long[0], new long[0]);
+        }
+
+        if (this.isContiguous) {
+            return new Runs(new long[] {0}, new long[] {this.startCluster}, new long[] {count});
+        }
+
+        /* a chain never has more clusters than the volume, this also stops on loops */
+        final long limit = (count != 0) ? count : this.sb.getClusterCount();
+        final List<long[]> list = new ArrayList<>();
+        long[] run = null;
+        long index = 0;
+        long current = this.startCluster;
+
+        while (index < limit && !Cluster.invalid(current)) {
+            Cluster.checkValid(current, this.sb);
+
+            if (run != null && run[1] + run[2] == current) {
+                run[2]++;
+            } else {
+                run = new long[] {index, current, 1};
+                list.add(run);
+            }
+
+            index++;
+            current = this.sb.getFat().getNextCluster(current);
+        }
+
+        final long[] starts = new long[list.size()];
+        final long[] clusters = new long[list.size()];
+        final long[] lengths = new long[list.size()];
+
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = list.get(i)[0];
+            clusters[i] = list.get(i)[1];
+            lengths[i] = list.get(i)[2];
+        }
+
+        return new Runs(starts, clusters, lengths);
+    }
+
+    /**
+     * Runs of consecutive clusters: the index of the first cluster within
+     * the node, the cluster on the device and the length of each run.
+     */
+    private static final class Runs {
+
+        private final long[] starts;
+        private final long[] clusters;
+        private final long[] lengths;
+
+        private Runs(long[] starts, long[] clusters, long[] lengths) {
+            this.starts = starts;
+            this.clusters = clusters;
+            this.lengths = lengths;
+        }
+
+        /**
+         * @return the run holding the cluster index, or {@code -1}
+         */
+        private int find(long index) {
+            int run = Arrays.binarySearch(this.starts, index);
+
+            if (run < 0) {
+                run = -run - 2;
+            }
+
+            if (run < 0 || index >= this.starts[run] + this.lengths[run]) {
+                return -1;
+            }
 
-            return this.da.getUint32(fatOffset);
+            return run;
         }
     }
 
@@ -39,6 +39,13 @@ public class NodeDirectory extends AbstractFSObject implements FSDirectory, FSDi
     private final Map<String, NodeEntry> nameToNode;
     private final Map<String, NodeEntry> idToNode;
     private final UpcaseTable upCase;
+    private final boolean showDeleted;
+
+    /**
+     * Whether all entries have been parsed, until then {@link #nameToNode}
+     * only holds the entries found by {@link #getEntry(String)}.
+     */
+    private boolean loaded;
 
     public NodeDirectory(ExFatFileSystem fs, Node node)
         throws IOException {
@@ -55,12 +62,25 @@ public class NodeDirectory extends AbstractFSObject implements FSDirectory, FSDi
         this.upCase = fs.getUpcase();
         this.nameToNode = new LinkedHashMap<>();
         this.idToNode = new LinkedHashMap<>();
+        this.showDeleted = showDeleted;
+    }
+
+    private synchronized void load() throws IOException {
+        if (this.loaded) {
+            return;
+        }
+
+        /* start over to keep the directory order, but reuse looked up entries */
+        final Map<String, NodeEntry> lookedUp = new LinkedHashMap<>(this.idToNode);
+        this.nameToNode.clear();
+        this.idToNode.clear();
 
         DirectoryParser.
             create(node, showDeleted).
             setUpcase(this.upCase).
-            parse(new VisitorImpl());
+            parse(new VisitorImpl(lookedUp));
 
+        this.loaded = true;
     }
 
     @Override
@@ -69,18 +89,35 @@ public class NodeDirectory extends AbstractFSObject implements FSDirectory, FSDi
     }
 
     @Override
-    public Iterator<FSEntry> iterator() {
+    public Iterator<FSEntry> iterator() throws IOException {
+        load();
+
         return Collections.<FSEntry>unmodifiableCollection(
             idToNode.values()).iterator();
     }
 
     @Override
-    public FSEntry getEntry(String name) throws IOException {
-        return this.nameToNode.get(upCase.toUpperCase(name));
+    public synchronized FSEntry getEntry(String name) throws IOException {
+        final String upCaseName = upCase.toUpperCase(name);
+        NodeEntry nodeEntry = this.nameToNode.get(upCaseName);
+
+        if (nodeEntry == null && !this.loaded) {
+            /* only decode the entry sets whose name hash matches */
+            DirectoryParser.
+                create(node, showDeleted).
+                setUpcase(this.upCase).
+                lookup(name, new VisitorImpl(this.idToNode));
+
+            nodeEntry = this.nameToNode.get(upCaseName);
+        }
+
+        return nodeEntry;
     }
 
     @Override
     public FSEntry getEntryById(String id) throws IOException {
+        load();
+
         NodeEntry nodeEntry = idToNode.get(id);
 
         if (nodeEntry != null) {
@@ -121,6 +158,15 @@ public class NodeDirectory extends AbstractFSObject implements FSDirectory, FSDi
 
     private class VisitorImpl implements DirectoryParser.Visitor {
 
+        /**
+         * Entries created before, by id.
+         */
+        private final Map<String, NodeEntry> existing;
+
+        private VisitorImpl(Map<String, NodeEntry> existing) {
+            this.existing = existing;
+        }
+
         @Override
         public void foundLabel(String label) throws IOException {
             // ignore
@@ -143,10 +189,15 @@ public class NodeDirectory extends AbstractFSObject implements FSDirectory, FSDi
         @Override
         public void foundNode(Node node, int index) throws IOException {
             final String upCaseName = upCase.toUpperCase(node.getName());
+            final String id = Integer.toString(index);
 
-            NodeEntry nodeEntry = new NodeEntry((ExFatFileSystem) getFileSystem(), node, NodeDirectory.this, index);
+            /* keep the instance handed out by an earlier lookup */
+            NodeEntry nodeEntry = existing.get(id);
+            if (nodeEntry == null) {
+                nodeEntry = new NodeEntry((ExFatFileSystem) getFileSystem(), node, NodeDirectory.this, index);
+            }
             nameToNode.put(upCaseName, nodeEntry);
-            idToNode.put(nodeEntry.getId(), nodeEntry);
+            idToNode.put(id, nodeEntry);
         }
     }
 }
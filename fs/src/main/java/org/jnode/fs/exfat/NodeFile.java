@@ -61,49 +61,27 @@ public class NodeFile extends AbstractFSObject implements FSFile {
             throw new EOFException();
         }
 
-        final int bpc = node.getSuperBlock().getBytesPerCluster();
-        long cluster = node.getStartCluster();
-        int remain = dest.remaining();
+        final ExFatSuperBlock sb = node.getSuperBlock();
+        final int bpc = sb.getBytesPerCluster();
+        long position = offset;
 
-        // Skip to the cluster that corresponds to the requested offset
-        long clustersToSkip = offset / bpc;
-        for (int i = 0; i < clustersToSkip; i++) {
-            cluster = this.node.nextCluster(cluster);
+        // Read each run of consecutive clusters with a single device access
+        while (dest.hasRemaining()) {
+            final long index = position / bpc;
+            final int clusterOffset = (int) (position % bpc);
+            final long contiguous = this.node.getContiguousClusterCount(index);
 
-            if (Cluster.invalid(cluster)) {
+            if (contiguous == 0) {
                 throw new IOException("invalid cluster");
             }
-        }
-
-        // Read in any leading partial cluster
-        if (offset % bpc != 0) {
-            ByteBuffer tmpBuffer = ByteBuffer.allocate(bpc);
-            node.getSuperBlock().readCluster(tmpBuffer, cluster);
-
-            int tmpOffset = (int) (offset % bpc);
-            int tmpLength = Math.min(remain, bpc - tmpOffset);
 
-            dest.put(tmpBuffer.array(), tmpOffset, tmpLength);
-            remain -= tmpLength;
-            cluster = this.node.nextCluster(cluster);
+            final int toRead = (int) Math.min(dest.remaining(), contiguous * bpc - clusterOffset);
+            final ByteBuffer slice = dest.duplicate();
+            slice.limit(slice.position() + toRead);
+            sb.getDeviceAccess().read(slice, sb.clusterToOffset(this.node.getCluster(index)) + clusterOffset);
 
-            if (remain != 0 && Cluster.invalid(cluster)) {
-                throw new IOException("invalid cluster");
-            }
-        }
-
-        // Read in the remaining data
-        while (remain > 0) {
-            int toRead = Math.min(bpc, remain);
-            dest.limit(dest.position() + toRead);
-            node.getSuperBlock().readCluster(dest, cluster);
-
-            remain -= toRead;
-            cluster = this.node.nextCluster(cluster);
-
-            if (remain != 0 && Cluster.invalid(cluster)) {
-                throw new IOException("invalid cluster");
-            }
+            dest.position(dest.position() + toRead);
+            position += toRead;
         }
     }
 
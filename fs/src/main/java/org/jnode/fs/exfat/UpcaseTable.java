@@ -21,15 +21,31 @@
 package org.jnode.fs.exfat;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
- * TODO: Add support for compressed format:
+ * The exFAT up-case table. The table is read and checked once and kept
+ * decoded as a full 64K {@code char} array, supporting the compressed
+ * format where a {@code 0xffff} entry followed by a count stands for a
+ * range of identity mappings:
  * http://www.ntfs.com/exfat-upcase-table.htm
  *
  * @author Matthias Treydte &lt;waldheinz at gmail.com&gt;
  */
 public final class UpcaseTable {
 
+    /**
+     * The number of entries in a full, uncompressed table.
+     */
+    private static final int FULL_CHARS = 0x10000;
+
+    /**
+     * Marks a compressed run of identity mappings, the next entry holds
+     * the run length.
+     */
+    private static final char COMPRESSED_RUN = 0xffff;
+
     public static UpcaseTable read(ExFatSuperBlock sb,
                                    long startCluster, long size, long checksum) throws IOException {
 
@@ -37,12 +53,17 @@ public final class UpcaseTable {
 
         /* validate size */
 
-        if ((size == 0) || (size > (0xffff * 2)) || (size % 2) != 0) {
+        if ((size == 0) || (size > (FULL_CHARS * 2)) || (size % 2) != 0) {
             throw new IOException("bad upcase table size " + size);
         }
 
-        final UpcaseTable result = new UpcaseTable(sb,
-            sb.clusterToOffset(startCluster), size);
+        final long offset = sb.clusterToOffset(startCluster);
+        final ByteBuffer raw = ByteBuffer.allocate((int) size);
+        raw.order(ByteOrder.LITTLE_ENDIAN);
+        sb.getDeviceAccess().read(raw, offset);
+        raw.flip();
+
+        final UpcaseTable result = new UpcaseTable(offset, size, checkSum(raw), decode(raw));
 
         /* verify checksum */
         final long actualCs = result.checkSum();
@@ -60,7 +81,39 @@ public final class UpcaseTable {
         return result;
     }
 
-    private final ExFatSuperBlock sb;
+    private static long checkSum(ByteBuffer raw) {
+        long sum = 0;
+
+        for (int i = 0; i < raw.limit(); i++) {
+            sum = ((sum << 31) | (sum >> 1)) + (raw.get(i) & 0xff);
+            sum &= 0xffff_ffffL;
+        }
+
+        return sum;
+    }
+
+    private static char[] decode(ByteBuffer raw) {
+        final char[] table = new char[FULL_CHARS];
+
+        for (int i = 0; i < FULL_CHARS; i++) {
+            table[i] = (char) i;
+        }
+
+        int c = 0;
+
+        while (raw.remaining() >= DeviceAccess.BYTES_PER_CHAR && c < FULL_CHARS) {
+            final char mapped = DeviceAccess.getChar(raw);
+
+            if (mapped == COMPRESSED_RUN && raw.remaining() >= DeviceAccess.BYTES_PER_CHAR) {
+                /* identity mappings, already in place */
+                c += DeviceAccess.getChar(raw);
+            } else {
+                table[c++] = mapped;
+            }
+        }
+
+        return table;
+    }
 
     /**
      * Size in bytes.
@@ -78,14 +131,19 @@ public final class UpcaseTable {
      */
     private final long offset;
 
-    private final DeviceAccess da;
+    private final long checksum;
 
-    private UpcaseTable(ExFatSuperBlock sb, long offset, long size) {
-        this.sb = sb;
-        this.da = sb.getDeviceAccess();
+    /**
+     * The up-case mapping for every {@code char}.
+     */
+    private final char[] table;
+
+    private UpcaseTable(long offset, long size, long checksum, char[] table) {
         this.size = size;
         this.chars = size / 2;
         this.offset = offset;
+        this.checksum = checksum;
+        this.table = table;
     }
 
     /**
@@ -106,35 +164,30 @@ public final class UpcaseTable {
         return size;
     }
 
-    public long checkSum() throws IOException {
-        long sum = 0;
-
-        for (int i = 0; i < size; i++) {
-            sum = ((sum << 31) | (sum >> 1)) + da.getUint8(offset + i);
-            sum &= 0xffff_ffffL;
-        }
-
-        return sum;
+    public long checkSum() {
+        return checksum;
     }
 
-    public char toUpperCase(char c) throws IOException {
-        if (c > this.chars) {
-            return c;
-        } else {
-            return da.getChar(offset + (c * 2));
-        }
+    public char toUpperCase(char c) {
+        return table[c];
     }
 
-    public String toUpperCase(String s) throws IOException {
-        final StringBuilder result = new StringBuilder(s.length());
+    public String toUpperCase(String s) {
+        final char[] result = new char[s.length()];
 
-        for (char c : s.toCharArray()) {
-            result.append(toUpperCase(c));
+        for (int i = 0; i < result.length; i++) {
+            result[i] = table[s.charAt(i)];
         }
 
-        return result.toString();
+        return new String(result);
     }
 
+    /**
+     * Gets the number of {@code char}s stored in the table, which is less
+     * than 64K if the table is compressed.
+     *
+     * @return the number of stored entries.
+     */
     public long getCharCount() {
         return this.chars;
     }
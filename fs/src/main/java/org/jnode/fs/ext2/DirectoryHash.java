@@ -0,0 +1,190 @@
+/*
+ * $Id$
+ *
+ * Copyright (C) 2003-2015 JNode.org
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public 
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; If not, write to the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jnode.fs.ext2;
+
+/**
+ * The hash functions of the hashed directory index (htree / dir_index).
+ * <p>
+ * The functions follow the linux ext2/3/4 implementation, all values are
+ * 32 bit words and compared unsigned.
+ */
+public final class DirectoryHash {
+
+    private DirectoryHash() {
+    }
+
+    /**
+     * Computes the major hash of a name.
+     *
+     * @param name        the encoded name.
+     * @param hashVersion the hash version, see {@link Ext2Constants#EXT2_HASH_LEGACY} and so on.
+     * @param seed        the hash seed of the superblock, may be all zero.
+     * @return the hash, the lowest bit is always cleared.
+     * @throws IllegalArgumentException when the hash version is not supported.
+     */
+    public static int hash(byte[] name, int hashVersion, int[] seed) {
+        int[] buf = {0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476};
+        if (seed != null && (seed[0] | seed[1] | seed[2] | seed[3]) != 0) {
+            System.arraycopy(seed, 0, buf, 0, 4);
+        }
+
+        int hash;
+        switch (hashVersion) {
+        case Ext2Constants.EXT2_HASH_LEGACY -> hash = legacyHash(name, false);
+        case Ext2Constants.EXT2_HASH_LEGACY_UNSIGNED -> hash = legacyHash(name, true);
+        case Ext2Constants.EXT2_HASH_HALF_MD4, Ext2Constants.EXT2_HASH_HALF_MD4_UNSIGNED -> {
+            boolean unsigned = hashVersion == Ext2Constants.EXT2_HASH_HALF_MD4_UNSIGNED;
+            int[] in = new int[8];
+            for (int p = 0, len = name.length; len > 0; len -= 32, p += 32) {
+                toHashBuffer(name, p, len, in, 8, unsigned);
+                halfMD4Transform(buf, in);
+            }
+            hash = buf[1];
+        }
+        case Ext2Constants.EXT2_HASH_TEA, Ext2Constants.EXT2_HASH_TEA_UNSIGNED -> {
+            boolean unsigned = hashVersion == Ext2Constants.EXT2_HASH_TEA_UNSIGNED;
+            int[] in = new int[4];
+            for (int p = 0, len = name.length; len > 0; len -= 16, p += 16) {
+                toHashBuffer(name, p, len, in, 4, unsigned);
+                teaTransform(buf, in);
+            }
+            hash = buf[0];
+        }
+        default -> throw new IllegalArgumentException("unsupported hash version: " + hashVersion);
+        }
+
+        hash &= ~1;
+        if (hash == (0x7fffffff << 1)) {
+            hash = (0x7fffffff - 1) << 1;
+        }
+        return hash;
+    }
+
+    /** the old legacy hash */
+    private static int legacyHash(byte[] name, boolean unsigned) {
+        int hash;
+        int hash0 = 0x12a3fe2d;
+        int hash1 = 0x37abe8f9;
+        for (byte b : name) {
+            int c = unsigned ? b & 0xff : b;
+            hash = hash1 + (hash0 ^ (c * 7152373));
+            if ((hash & 0x80000000) != 0) {
+                hash -= 0x7fffffff;
+            }
+            hash1 = hash0;
+            hash0 = hash;
+        }
+        return hash0 << 1;
+    }
+
+    /** packs up to num * 4 bytes of the name into words, padded with the length */
+    private static void toHashBuffer(byte[] name, int offset, int len, int[] buf, int num, boolean unsigned) {
+        int pad = len | (len << 8);
+        pad |= pad << 16;
+
+        int val = pad;
+        len = Math.min(len, num * 4);
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            int c = unsigned ? name[offset + i] & 0xff : name[offset + i];
+            val = c + (val << 8);
+            if ((i % 4) == 3) {
+                buf[n++] = val;
+                val = pad;
+            }
+        }
+        if (n < num) {
+            buf[n++] = val;
+        }
+        while (n < num) {
+            buf[n++] = pad;
+        }
+    }
+
+    private static final int DELTA = 0x9E3779B9;
+
+    private static void teaTransform(int[] buf, int[] in) {
+        int sum = 0;
+        int b0 = buf[0], b1 = buf[1];
+        int a = in[0], b = in[1], c = in[2], d = in[3];
+        for (int n = 0; n < 16; n++) {
+            sum += DELTA;
+            b0 += ((b1 << 4) + a) ^ (b1 + sum) ^ ((b1 >>> 5) + b);
+            b1 += ((b0 << 4) + c) ^ (b0 + sum) ^ ((b0 >>> 5) + d);
+        }
+        buf[0] += b0;
+        buf[1] += b1;
+    }
+
+    private static final int K2 = 013240474631;
+    private static final int K3 = 015666365641;
+
+    private static int f(int x, int y, int z) {
+        return z ^ (x & (y ^ z));
+    }
+
+    private static int g(int x, int y, int z) {
+        return (x & y) + ((x ^ y) & z);
+    }
+
+    private static int h(int x, int y, int z) {
+        return x ^ y ^ z;
+    }
+
+    private static void halfMD4Transform(int[] buf, int[] in) {
+        int a = buf[0], b = buf[1], c = buf[2], d = buf[3];
+
+        // round 1
+        a = Integer.rotateLeft(a + f(b, c, d) + in[0], 3);
+        d = Integer.rotateLeft(d + f(a, b, c) + in[1], 7);
+        c = Integer.rotateLeft(c + f(d, a, b) + in[2], 11);
+        b = Integer.rotateLeft(b + f(c, d, a) + in[3], 19);
+        a = Integer.rotateLeft(a + f(b, c, d) + in[4], 3);
+        d = Integer.rotateLeft(d + f(a, b, c) + in[5], 7);
+        c = Integer.rotateLeft(c + f(d, a, b) + in[6], 11);
+        b = Integer.rotateLeft(b + f(c, d, a) + in[7], 19);
+
+        // round 2
+        a = Integer.rotateLeft(a + g(b, c, d) + in[1] + K2, 3);
+        d = Integer.rotateLeft(d + g(a, b, c) + in[3] + K2, 5);
+        c = Integer.rotateLeft(c + g(d, a, b) + in[5] + K2, 9);
+        b = Integer.rotateLeft(b + g(c, d, a) + in[7] + K2, 13);
+        a = Integer.rotateLeft(a + g(b, c, d) + in[0] + K2, 3);
+        d = Integer.rotateLeft(d + g(a, b, c) + in[2] + K2, 5);
+        c = Integer.rotateLeft(c + g(d, a, b) + in[4] + K2, 9);
+        b = Integer.rotateLeft(b + g(c, d, a) + in[6] + K2, 13);
+
+        // round 3
+        a = Integer.rotateLeft(a + h(b, c, d) + in[3] + K3, 3);
+        d = Integer.rotateLeft(d + h(a, b, c) + in[7] + K3, 9);
+        c = Integer.rotateLeft(c + h(d, a, b) + in[2] + K3, 11);
+        b = Integer.rotateLeft(b + h(c, d, a) + in[6] + K3, 15);
+        a = Integer.rotateLeft(a + h(b, c, d) + in[1] + K3, 3);
+        d = Integer.rotateLeft(d + h(a, b, c) + in[5] + K3, 9);
+        c = Integer.rotateLeft(c + h(d, a, b) + in[0] + K3, 11);
+        b = Integer.rotateLeft(b + h(c, d, a) + in[4] + K3, 15);
+
+        buf[0] += a;
+        buf[1] += b;
+        buf[2] += c;
+        buf[3] += d;
+    }
+}
@@ -112,6 +112,18 @@ public class Ext2Constants {
     public static final long EXT4_HUGE_FILE_FL = 0x00040000;
     public static final long EXT4_INODE_EXTENTS_FLAG = 0x00080000;
 
+    // directory index hash versions
+    public static final int EXT2_HASH_LEGACY = 0;
+    public static final int EXT2_HASH_HALF_MD4 = 1;
+    public static final int EXT2_HASH_TEA = 2;
+    public static final int EXT2_HASH_LEGACY_UNSIGNED = 3;
+    public static final int EXT2_HASH_HALF_MD4_UNSIGNED = 4;
+    public static final int EXT2_HASH_TEA_UNSIGNED = 5;
+
+    // superblock flags
+    public static final long EXT2_FLAGS_SIGNED_HASH = 0x0001;
+    public static final long EXT2_FLAGS_UNSIGNED_HASH = 0x0002;
+
     // Filesystem state constants
     /** cleanly unmounted */
     public static final int EXT2_VALID_FS = 0x0001;
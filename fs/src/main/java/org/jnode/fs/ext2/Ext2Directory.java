@@ -332,6 +332,31 @@ public class Ext2Directory extends AbstractFSDirectory implements FSDirectoryId
         return Long.toString(iNode.getINodeNr());
     }
 
+    /**
+     * Looks up a single name through the hashed index if the directory has one
+     * and the entries are not loaded yet, so only the blocks needed are read.
+     */
+    @Override
+    public FSEntry getEntry(String name) throws IOException {
+        if (!isEntriesLoaded() && (iNode.getFlags() & Ext2Constants.EXT2_INDEX_FL) != 0) {
+            try {
+                HTreeIndex index = new HTreeIndex(iNode);
+                if (index.isSupported()) {
+                    Ext2DirectoryRecord dr = index.lookup(name);
+                    if (dr == null) {
+                        return null;
+                    }
+                    Ext2FileSystem fs = (Ext2FileSystem) getFileSystem();
+                    return new Ext2Entry(fs.getINode(dr.getINodeNr()), dr.getFileOffset(), dr.getName(), dr.getType(),
+                        fs, this);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.log(Level.WARNING, "htree lookup failed, falling back to a linear scan: " + entry, e);
+            }
+        }
+        return super.getEntry(name);
+    }
+
     @Override
     public FSEntry getEntryById(String id) throws IOException {
         checkEntriesLoaded();
@@ -158,10 +158,7 @@ public class Ext2File extends AbstractFSFile implements FSFileSlackSpace {
      */
     public void readImpl(long fileOffset, ByteBuffer destBuf) throws IOException {
         final int len = destBuf.remaining();
-        final int off = 0;
-        // TODO optimize it also to use ByteBuffer at lower level
-        final ByteBufferUtils.ByteArray destBA = ByteBufferUtils.toByteArray(destBuf);
-        final byte[] dest = destBA.toArray();
+        final int off = destBuf.position();
 
         // synchronize to the inode cache to make sure that the inode does not
         // get flushed between reading it and locking it
@@ -182,7 +179,7 @@ public class Ext2File extends AbstractFSFile implements FSFileSlackSpace {
         }
 
         log.log(Level.DEBUG, "File:" + name + " size:" + getLength() + " read offset: " + fileOffset + " len: "
-                + dest.length);
+                + len);
 
         // a single inode may be represented by more than one Ext2Directory instances,
         // but each will use the same instance of the underlying inode (see
@@ -192,9 +189,10 @@ public class Ext2File extends AbstractFSFile implements FSFileSlackSpace {
             try {
                 if ((iNode.getMode() & Ext2Constants.EXT2_S_IFLNK) == Ext2Constants.EXT2_S_IFLNK) {
                     // Sym-links are a special case: the data seems to be stored inline in the iNode
-                    System.arraycopy(iNode.getINodeBlockData(), 0, dest, 0, Math.min(64, dest.length));
+                    destBuf.put(off, iNode.getINodeBlockData(), 0, Math.min(64, len));
                 } else {
-                    long blockSize = iNode.getExt2FileSystem().getBlockSize();
+                    Ext2FileSystem fs = iNode.getExt2FileSystem();
+                    int blockSize = fs.getBlockSize();
                     long bytesRead = 0;
                     while (bytesRead < len) {
                         long blockNr = (fileOffset + bytesRead) / blockSize;
@@ -204,7 +202,27 @@ public class Ext2File extends AbstractFSFile implements FSFileSlackSpace {
                         log.log(Level.DEBUG, "blockNr: " + blockNr + ", blockOffset: " + blockOffset + ", copyLength: "
                             + copyLength + ", bytesRead: " + bytesRead);
 
-                        System.arraycopy(iNode.getDataBlock(blockNr), (int) blockOffset, dest, off + (int) bytesRead,
+                        if (blockOffset == 0 && copyLength == blockSize) {
+                            long dataBlockNr = iNode.getDataBlockNr(blockNr);
+                            int count = iNode.getContiguousBlockCount(blockNr, dataBlockNr,
+                                (int) ((len - bytesRead) / blockSize));
+                            int runLength = count * blockSize;
+                            if (fs.getBlockCache().hasDirtyBlocks(dataBlockNr, count)) {
+                                // a block of the run waits to be written, read the run through the block cache
+                                for (int i = 0; i < count; i++) {
+                                    destBuf.put(off + (int) bytesRead + i * blockSize, iNode.getDataBlock(blockNr + i),
+                                        0, blockSize);
+                                }
+                            } else {
+                                // read the run of contiguous blocks at once, bypassing the block cache
+                                fs.getApi().read(dataBlockNr * blockSize,
+                                    destBuf.slice(off + (int) bytesRead, runLength));
+                            }
+                            bytesRead += runLength;
+                            continue;
+                        }
+
+                        destBuf.put(off + (int) bytesRead, iNode.getDataBlock(blockNr), (int) blockOffset,
                             (int) copyLength);
 
                         bytesRead += copyLength;
@@ -219,7 +237,7 @@ public class Ext2File extends AbstractFSFile implements FSFileSlackSpace {
             }
         }
 
-        destBA.refreshByteBuffer();
+        destBuf.position(off + len);
     }
 
     @Override
@@ -88,7 +88,7 @@ public class Ext2FileSystem extends AbstractFileSystem<Ext2Entry> {
     public Ext2FileSystem(Device device, boolean readOnly) throws FileSystemException {
         super(device, readOnly);
 
-        blockCache = new BlockCache(50, (float) 0.75);
+        blockCache = new BlockCache();
         inodeCache = new INodeCache(50, (float) 0.75);
 
 //        groupDescriptorLock = new Object();
@@ -320,12 +320,8 @@ public class Ext2FileSystem extends AbstractFileSystem<Ext2Entry> {
         // update the group descriptors and the superblock copies
         updateFS();
 
-        // flush the blocks
-        synchronized (blockCache) {
-            for (Block block : blockCache.values()) {
-                block.flush();
-            }
-        }
+        // flush the blocks on the write back list
+        blockCache.flush();
 
         log.log(Level.INFO, "Filesystem flushed");
     }
@@ -391,44 +387,29 @@ public class Ext2FileSystem extends AbstractFileSystem<Ext2Entry> {
 //        log.log(Level.DEBUG, "blockCache size: "+blockCache.size());
 
         int blockSize = superblock.getBlockSize();
-        Block result;
-
-        Integer key = (int) nr;
-        synchronized (blockCache) {
-            // check if the block has already been retrieved
-            if (blockCache.containsKey(key)) {
-                result = blockCache.get(key);
-                return result.getData();
-            }
+
+        // check if the block has already been retrieved
+        Block result = blockCache.get(nr);
+        if (result != null) {
+            return result.getData();
         }
 
-        // perform the time-consuming disk read outside the synchronized block
+        // perform the time-consuming disk read outside the lock of the cache
         // advantage:
         // -the lock is held for a shorter time, so other blocks that are
         //  already in the cache can be returned immediately and
         //  do not have to wait for a long disk read
         // disadvantage:
         // -a single block can be retrieved more than once. However,
-        //  the block will be put in the cache only once in the second
-        //  synchronized block
+        //  the block will be put in the cache only once
         ByteBuffer data = ByteBuffer.allocate(blockSize);
         log.log(Level.DEBUG, "Reading block " + nr + " (offset: " + nr * blockSize + ") from disk");
         getApi().read(nr * blockSize, data);
 
-        // synchronize again
-        synchronized (blockCache) {
-            // check if the block has already been retrieved
-            if (!blockCache.containsKey(key)) {
-                result = new Block(this, nr, data.array());
-                blockCache.put(key, result);
-                return result.getData();
-            } else {
-                // it is important to ALWAYS return the block that is in
-                // the cache (it is used in synchronization)
-                result = blockCache.get(key);
-                return result.getData();
-            }
-        }
+        // it is important to ALWAYS return the block that is in
+        // the cache (it is used in synchronization)
+        result = blockCache.putIfAbsent(new Block(this, nr, data.array()));
+        return result.getData();
     }
 
     /**
@@ -445,25 +426,25 @@ public class Ext2FileSystem extends AbstractFileSystem<Ext2Entry> {
 
         if (isReadOnly()) throw new ReadOnlyFileSystemException("Filesystem is mounted read-only!");
 
-        Block block;
-
-        Integer key = (int) nr;
         int blockSize = superblock.getBlockSize();
-        // check if the block is in the cache
-        synchronized (blockCache) {
-            if (blockCache.containsKey(key)) {
-                block = blockCache.get(key);
-                // update the data in the cache
-                block.setData(data);
-                if (forceWrite || SYNC_WRITE) {
-                    // write the block to disk
-                    ByteBuffer dataBuf = ByteBuffer.wrap(data, 0, blockSize);
-                    getApi().write(nr * blockSize, dataBuf);
-                    // timedWrite(nr, data);
-                    block.setDirty(false);
-
-                    log.log(Level.DEBUG, "writing block " + nr + " to disk");
-                } else block.setDirty(true);
+        // check if the block is in the cache, holding its lock so it can't be
+        // evicted before it is updated
+        synchronized (blockCache.getLock(nr)) {
+            Block block = blockCache.peek(nr);
+            if (block != null) {
+                synchronized (block) {
+                    // update the data in the cache
+                    block.setData(data);
+                    if (forceWrite || SYNC_WRITE) {
+                        // write the block to disk
+                        ByteBuffer dataBuf = ByteBuffer.wrap(data, 0, blockSize);
+                        getApi().write(nr * blockSize, dataBuf);
+                        // timedWrite(nr, data);
+                        blockCache.markClean(block);
+
+                        log.log(Level.DEBUG, "writing block " + nr + " to disk");
+                    } else blockCache.markDirty(block);
+                }
             } else {
                 // If the block was not in the cache, I see no reason to put it
                 // in the cache when it is written.
@@ -611,10 +592,9 @@ public class Ext2FileSystem extends AbstractFileSystem<Ext2Entry> {
         if (blockNr < firstNonMetadataBlock)
             return new BlockReservation(false, -1, -1);
 
-        // synchronize to the blockCache to avoid flushing the block between
-        // reading it
-        // and synchronizing to it
-        synchronized (blockCache) {
+        // hold the lock of the bitmap block in the cache, so it can't be evicted
+        // between reading it and synchronizing to it
+        synchronized (blockCache.getLock(groupDescriptors[group].getBlockBitmap())) {
             byte[] bitmap = getBlock(groupDescriptors[group].getBlockBitmap());
             synchronized (bitmap) {
                 BlockReservation result = BlockBitmap.testAndSetBlock(bitmap, index);
@@ -694,10 +674,9 @@ public class Ext2FileSystem extends AbstractFileSystem<Ext2Entry> {
     protected INodeReservation findFreeINode(int blockGroup) throws IOException {
         GroupDescriptor gdesc = groupDescriptors[blockGroup];
         if (gdesc.getFreeInodesCount() > 0) {
-            // synchronize to the blockCache to avoid flushing the block between
-            // reading it
-            // and synchronizing to it
-            synchronized (blockCache) {
+            // hold the lock of the bitmap block in the cache, so it can't be evicted
+            // between reading it and synchronizing to it
+            synchronized (blockCache.getLock(gdesc.getInodeBitmap())) {
                 byte[] bitmap = getBlock(gdesc.getInodeBitmap());
 
                 synchronized (bitmap) {
@@ -787,9 +766,9 @@ public class Ext2FileSystem extends AbstractFileSystem<Ext2Entry> {
         if (blockNr < firstNonMetadataBlock)
             throw new FileSystemException("Attempt to free a filesystem metadata block!");
 
-        // synchronize to the blockCache to avoid flushing the block between
-        // reading it and synchronizing to it
-        synchronized (blockCache) {
+        // hold the lock of the bitmap block in the cache, so it can't be evicted
+        // between reading it and synchronizing to it
+        synchronized (blockCache.getLock(gdesc.getBlockBitmap())) {
             byte[] bitmap = getBlock(gdesc.getBlockBitmap());
 
             // at any time, only one copy of the Block exists in the cache, so
@@ -832,9 +811,9 @@ public class Ext2FileSystem extends AbstractFileSystem<Ext2Entry> {
 
         BlockReservation result;
 
-        // synchronize to the blockCache to avoid flushing the block between
-        // reading it and synchronizing to it
-        synchronized (blockCache) {
+        // hold the lock of the bitmap block in the cache, so it can't be evicted
+        // between reading it and synchronizing to it
+        synchronized (blockCache.getLock(gdesc.getBlockBitmap())) {
             byte[] bitmapBlock = getBlock(gdesc.getBlockBitmap());
 
             // at any time, only one copy of the Block exists in the cache, so
@@ -981,12 +960,21 @@ public class Ext2FileSystem extends AbstractFileSystem<Ext2Entry> {
     }
 
     /**
-     * @return Returns the blockCache (outside of this class only used to synchronize to)
+     * @return Returns the blockCache
      */
-    protected synchronized BlockCache getBlockCache() {
+    public BlockCache getBlockCache() {
         return blockCache;
     }
 
+    /**
+     * Changes the byte budget of the block cache.
+     *
+     * @param maxBytes the budget in bytes
+     */
+    public void setBlockCacheSize(long maxBytes) {
+        blockCache.setMaxBytes(maxBytes);
+    }
+
     /**
      * @return Returns the inodeCache (outside of this class only used to syncronized to)
      */
@@ -0,0 +1,208 @@
+/*
+ * $Id$
+ *
+ * Copyright (C) 2003-2015 JNode.org
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public 
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; If not, write to the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jnode.fs.ext2;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Arrays;
+
+import org.jnode.util.LittleEndian;
+
+/**
+ * Read side of the hashed directory index (htree / dir_index).
+ * <p>
+ * A lookup hashes the name, descends from the DX root through the DX nodes
+ * to the leaf block covering the hash and scans only that leaf (and the
+ * following ones while the hash collides).
+ */
+final class HTreeIndex {
+
+    private static final Logger log = System.getLogger(HTreeIndex.class.getName());
+
+    /** the offset of the dx_root_info, after the fake "." and ".." records */
+    private static final int ROOT_INFO_OFFSET = 24;
+
+    /** the offset of the count/limit header in a DX node, after the fake empty record */
+    private static final int NODE_ENTRIES_OFFSET = 8;
+
+    /** the length of a DX entry: hash (4) + block (4) */
+    private static final int ENTRY_LENGTH = 8;
+
+    private final INode iNode;
+
+    private final Ext2FileSystem fs;
+
+    HTreeIndex(INode iNode) {
+        this.iNode = iNode;
+        this.fs = iNode.getExt2FileSystem();
+    }
+
+    /**
+     * Checks whether the directory is indexed with a hash this class can compute.
+     */
+    boolean isSupported() throws IOException {
+        if ((iNode.getFlags() & Ext2Constants.EXT2_INDEX_FL) == 0) {
+            return false;
+        }
+        byte[] root = iNode.getDataBlock(0);
+        return LittleEndian.getUInt32(root, ROOT_INFO_OFFSET) == 0 && getHashVersion(root) <= Ext2Constants.EXT2_HASH_TEA_UNSIGNED;
+    }
+
+    private int getHashVersion(byte[] root) {
+        int hashVersion = LittleEndian.getUInt8(root, ROOT_INFO_OFFSET + 4);
+        if (hashVersion <= Ext2Constants.EXT2_HASH_TEA &&
+                (fs.getSuperblock().getFlags() & Ext2Constants.EXT2_FLAGS_UNSIGNED_HASH) != 0) {
+            hashVersion += 3;
+        }
+        return hashVersion;
+    }
+
+    /**
+     * Looks up a name through the index.
+     *
+     * @param name the name to look for.
+     * @return the record or null if there is no entry with that name.
+     */
+    Ext2DirectoryRecord lookup(String name) throws IOException {
+        byte[] nameBytes = name.getBytes(Ext2FileSystem.ENTRY_NAME_CHARSET);
+
+        // "." and ".." are the fake records of the dx_root
+        if (name.equals(".") || name.equals("..")) {
+            return searchLeaf(0, nameBytes);
+        }
+
+        byte[] root = iNode.getDataBlock(0);
+        int infoLength = LittleEndian.getUInt8(root, ROOT_INFO_OFFSET + 5);
+        int levels = LittleEndian.getUInt8(root, ROOT_INFO_OFFSET + 6);
+        int hash = DirectoryHash.hash(nameBytes, getHashVersion(root), fs.getSuperblock().getHashSeed());
+        log.log(Level.DEBUG, "htree lookup: " + name + ", hash: " + Integer.toHexString(hash) + ", levels: " + levels);
+
+        // the path from the root to the leaf
+        byte[][] nodes = new byte[levels + 1][];
+        int[] offsets = new int[levels + 1];
+        int[] positions = new int[levels + 1];
+
+        byte[] node = root;
+        int offset = ROOT_INFO_OFFSET + infoLength;
+        for (int level = 0; ; level++) {
+            nodes[level] = node;
+            offsets[level] = offset;
+            positions[level] = search(node, offset, hash);
+            if (level == levels) {
+                break;
+            }
+            node = iNode.getDataBlock(getBlock(node, offset, positions[level]));
+            offset = NODE_ENTRIES_OFFSET;
+        }
+
+        while (true) {
+            long leaf = getBlock(nodes[levels], offsets[levels], positions[levels]);
+            Ext2DirectoryRecord record = searchLeaf(leaf, nameBytes);
+            if (record != null) {
+                return record;
+            }
+            if (!nextLeaf(nodes, offsets, positions, hash)) {
+                return null;
+            }
+        }
+    }
+
+    /** finds the last entry with a hash not greater than the given one, the first entry has an implicit hash of 0 */
+    private static int search(byte[] node, int offset, int hash) {
+        int count = LittleEndian.getUInt16(node, offset + 2);
+        int p = 1;
+        int q = count - 1;
+        while (p <= q) {
+            int m = (p + q) >>> 1;
+            if (Integer.compareUnsigned(LittleEndian.getInt32(node, offset + m * ENTRY_LENGTH), hash) > 0) {
+                q = m - 1;
+            } else {
+                p = m + 1;
+            }
+        }
+        return p - 1;
+    }
+
+    private static long getBlock(byte[] node, int offset, int position) {
+        return LittleEndian.getUInt32(node, offset + position * ENTRY_LENGTH + 4) & 0x0fffffff;
+    }
+
+    /**
+     * Advances the path to the next leaf if that leaf may hold names colliding with the hash.
+     *
+     * @return false if there is no such leaf.
+     */
+    private boolean nextLeaf(byte[][] nodes, int[] offsets, int[] positions, int hash) throws IOException {
+        int level = nodes.length - 1;
+        while (true) {
+            positions[level]++;
+            if (positions[level] < LittleEndian.getUInt16(nodes[level], offsets[level] + 2)) {
+                break;
+            }
+            if (level == 0) {
+                return false;
+            }
+            level--;
+        }
+
+        int nextHash = LittleEndian.getInt32(nodes[level], offsets[level] + positions[level] * ENTRY_LENGTH);
+        if ((nextHash & ~1) != hash) {
+            return false;
+        }
+
+        // reload the lower levels from the new position
+        while (level < nodes.length - 1) {
+            byte[] node = iNode.getDataBlock(getBlock(nodes[level], offsets[level], positions[level]));
+            level++;
+            nodes[level] = node;
+            offsets[level] = NODE_ENTRIES_OFFSET;
+            positions[level] = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Scans the records of a directory block.
+     *
+     * @param block the index of the block in the directory.
+     * @return the matching record or null.
+     */
+    private Ext2DirectoryRecord searchLeaf(long block, byte[] nameBytes) throws IOException {
+        byte[] data = iNode.getDataBlock(block);
+        int blockSize = fs.getBlockSize();
+        int offset = 0;
+        while (offset + 8 <= blockSize) {
+            long iNodeNr = LittleEndian.getUInt32(data, offset);
+            int recLen = LittleEndian.getUInt16(data, offset + 4);
+            int nameLen = LittleEndian.getUInt8(data, offset + 6);
+            if (iNodeNr != 0 && nameLen == nameBytes.length &&
+                    Arrays.equals(data, offset + 8, offset + 8 + nameLen, nameBytes, 0, nameLen)) {
+                return new Ext2DirectoryRecord(fs, data, offset, (int) (block * blockSize + offset));
+            }
+            if (recLen < 8) {
+                break;
+            }
+            offset += recLen;
+        }
+        return null;
+    }
+}
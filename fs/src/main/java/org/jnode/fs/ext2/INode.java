@@ -32,6 +32,7 @@ import org.jnode.fs.ext2.exception.UnallocatedBlockException;
 import org.jnode.fs.ext2.xattr.XAttrEntry;
 import org.jnode.fs.ext2.xattr.XAttrHeader;
 import org.jnode.fs.ext4.ExtentHeader;
+import org.jnode.fs.ext4.ExtentMap;
 import org.jnode.fs.util.FSUtils;
 import org.jnode.util.LittleEndian;
 
@@ -68,9 +69,9 @@ public class INode {
     private final Ext2FileSystem fs;
 
     /**
-     * The cached extent header.
+     * The cached extent map, rebuilt after the inode has been changed.
      */
-    private ExtentHeader extentHeader;
+    private volatile ExtentMap extentMap;
 
     /**
      * Create an INode object from an existing inode on the disk.
@@ -400,16 +401,52 @@ public class INode {
      */
     public long getDataBlockNr(long i) throws IOException {
         if ((getFlags() & Ext2Constants.EXT4_INODE_EXTENTS_FLAG) != 0) {
-            if (extentHeader == null) {
-                extentHeader = new ExtentHeader(getINodeBlockData());
-            }
-
-            return extentHeader.getBlockNumber(fs, i);
+            return getExtentMap().getBlockNumber(i);
         } else {
             return getDataBlockNrIndirect(i);
         }
     }
 
+    /**
+     * Gets the extent map, the extent tree is walked only when the map has not been built
+     * yet or the inode has been changed since.
+     *
+     * @return the extent map
+     * @throws IOException when an error occurs
+     */
+    private ExtentMap getExtentMap() throws IOException {
+        ExtentMap map = extentMap;
+        if (map == null) {
+            map = ExtentMap.build(fs, new ExtentHeader(getINodeBlockData()));
+            extentMap = map;
+        }
+        return map;
+    }
+
+    /**
+     * Counts the blocks starting at the ith block of the inode which are stored
+     * contiguously on the device, i.e. the (i + n)th block is stored at
+     * <code>blockNr + n</code>.
+     *
+     * @param i the i
+     * @param blockNr the block number of the ith block, see {@link #getDataBlockNr(long)}
+     * @param maxCount the maximum count to return
+     * @return the count, at least 1
+     * @throws IOException when an error occurs
+     */
+    public int getContiguousBlockCount(long i, long blockNr, int maxCount) throws IOException {
+        if ((getFlags() & Ext2Constants.EXT4_INODE_EXTENTS_FLAG) != 0) {
+            return (int) Math.max(1, Math.min(maxCount, getExtentMap().getRunLength(i)));
+        } else {
+            long count = Math.min(maxCount, getAllocatedBlockCount() - i);
+            int n = 1;
+            while (n < count && getDataBlockNrIndirect(i + n) == blockNr + n) {
+                n++;
+            }
+            return n;
+        }
+    }
+
     /**
      * Return the number of the block in the filesystem that stores the ith
      * block of the inode (i is a sequential index from the beginning of the
@@ -635,6 +672,7 @@ public class INode {
         }
 
         desc.setLastAllocatedBlockIndex(i - 1);
+        extentMap = null;
 
         // preallocated blocks follow the last allocated block: when the last
         // block is freed,
@@ -756,6 +794,7 @@ public class INode {
         desc.setLastAllocatedBlockIndex(i);
 
         registerBlockIndex(i, newBlock);
+        extentMap = null;
     }
 
     /**
@@ -1057,7 +1096,7 @@ public class INode {
         dirty = b;
 
         if (dirty) {
-            extentHeader = null;
+            extentMap = null;
         }
     }
 
@@ -694,6 +694,37 @@ public class Superblock {
         return LittleEndian.getUInt8(data, 232);
     }
 
+    /**
+     * Gets the seed for the directory index hash.
+     *
+     * @return the 4 words of the seed, all zero if no seed has been set.
+     */
+    public int[] getHashSeed() {
+        int[] seed = new int[4];
+        for (int i = 0; i < seed.length; i++) {
+            seed[i] = LittleEndian.getInt32(data, 236 + i * 4);
+        }
+        return seed;
+    }
+
+    /**
+     * Gets the default hash version for the directory index.
+     *
+     * @return the hash version, see {@link Ext2Constants#EXT2_HASH_LEGACY} and so on.
+     */
+    public int getDefaultHashVersion() {
+        return LittleEndian.getUInt8(data, 252);
+    }
+
+    /**
+     * Gets the miscellaneous flags, e.g. {@link Ext2Constants#EXT2_FLAGS_UNSIGNED_HASH}.
+     *
+     * @return the flags.
+     */
+    public long getFlags() {
+        return LittleEndian.getUInt32(data, 352);
+    }
+
     /**
      * Gets the block number that contains the multi-mount protection (MMP) data.
      *
@@ -21,55 +21,269 @@
 package org.jnode.fs.ext2.cache;
 
 import java.io.IOException;
-import java.io.Serial;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Map;
-
-import java.lang.System.Logger.Level;
-import java.lang.System.Logger;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * A byte budgeted LRU cache of file system blocks.
+ * <p>
+ * The cache is split into {@link #STRIPES} independently locked LRU stripes,
+ * so lookups of different blocks do not contend on a single lock. Each stripe
+ * gets an equal share of the byte budget. Blocks marked dirty are kept on a
+ * write back list until they are flushed or evicted. Evicted blocks are
+ * flushed while their stripe is still locked, so a block is never read back
+ * from the disk before its last changes are written.
+ *
  * @author Andras Nagy
  */
-public final class BlockCache extends LinkedHashMap<Object, Block> {
+public final class BlockCache {
 
     private static final Logger log = System.getLogger(BlockCache.class.getName());
 
-    @Serial
-    private static final long serialVersionUID = 1L;
+    /** the default budget in bytes, can be overridden by the system property {@link #SIZE_PROPERTY} */
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    /** system property for the default budget in bytes */
+    public static final String SIZE_PROPERTY = "org.jnode.fs.ext2.blockCacheSize";
+
+    /** the number of lock stripes, must be a power of 2 */
+    static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
 
-    // at most MAX_SIZE blocks fit in the cache
-    static final int MAX_SIZE = 10;
+    /** the write back list by block number, there is one cached block per number */
+    private final ConcurrentNavigableMap<Long, Block> dirtyBlocks = new ConcurrentSkipListMap<>();
 
-    private final ArrayList<CacheListener> cacheListeners;
+    private final List<CacheListener> cacheListeners = new CopyOnWriteArrayList<>();
 
-    public BlockCache(int initialCapacity, float loadFactor) {
-        super(Math.min(MAX_SIZE, initialCapacity), loadFactor, true);
-        cacheListeners = new ArrayList<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile long maxBytes;
+
+    /** one LRU segment, guarded by itself */
+    private static final class Stripe {
+        final LinkedHashMap<Long, Block> blocks = new LinkedHashMap<>(16, 0.75f, true);
+        long bytes;
+    }
+
+    /** creates a cache with the default budget */
+    public BlockCache() {
+        this(Long.getLong(SIZE_PROPERTY, DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * @param maxBytes the budget in bytes
+     */
+    public BlockCache(long maxBytes) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.maxBytes = maxBytes;
     }
 
     public void addCacheListener(CacheListener listener) {
         cacheListeners.add(listener);
     }
 
-    @Override
-    protected synchronized boolean removeEldestEntry(Map.Entry<Object, Block> eldest) {
-        log.log(Level.DEBUG, "BlockCache size: " + size());
-        if (size() > MAX_SIZE) {
-            try {
-                eldest.getValue().flush();
-                // notify the listeners
-                final CacheEvent event = new CacheEvent(eldest.getValue(), CacheEvent.REMOVED);
-                for (CacheListener l : cacheListeners) {
-                    l.elementRemoved(event);
+    private Stripe stripeOf(long nr) {
+        return stripes[(int) (nr ^ (nr >>> 32)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Gets the lock evicting the block takes. While it is held the block
+     * stays in the cache once it is there, so its data can be used for
+     * synchronization. Other blocks may share the lock, it must not be held
+     * while waiting for another one.
+     *
+     * @return the monitor to synchronize on
+     */
+    public Object getLock(long nr) {
+        return stripeOf(nr);
+    }
+
+    /**
+     * @return the cached block or null, counted as a hit or a miss
+     */
+    public Block get(long nr) {
+        Stripe stripe = stripeOf(nr);
+        Block block;
+        synchronized (stripe) {
+            block = stripe.blocks.get(nr);
+        }
+        if (block != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return block;
+    }
+
+    /**
+     * @return the cached block or null, not counted as a hit or a miss
+     */
+    public Block peek(long nr) {
+        Stripe stripe = stripeOf(nr);
+        synchronized (stripe) {
+            return stripe.blocks.get(nr);
+        }
+    }
+
+    /**
+     * Caches the block unless another one with the same number is already cached.
+     * Blocks exceeding the budget are evicted, dirty ones are flushed before
+     * the stripe is unlocked.
+     *
+     * @return the block in the cache, it is important to always use this one
+     *         as the data of it is used for synchronization
+     */
+    public Block putIfAbsent(Block block) {
+        Stripe stripe = stripeOf(block.blockNr);
+        synchronized (stripe) {
+            Block result = stripe.blocks.putIfAbsent(block.blockNr, block);
+            if (result != null) {
+                return result;
+            }
+            stripe.bytes += block.getData().length;
+            long stripeMax = maxBytes / STRIPES;
+            List<Block> evicted = null;
+            Iterator<Block> i = stripe.blocks.values().iterator();
+            while (stripe.bytes > stripeMax && stripe.blocks.size() > 1 && i.hasNext()) {
+                Block eldest = i.next();
+                if (eldest == block) {
+                    continue;
                 }
-            } catch (IOException e) {
-                log.log(Level.ERROR, "Exception when flushing a block from the cache", e);
+                i.remove();
+                stripe.bytes -= eldest.getData().length;
+                if (evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(eldest);
+            }
+            if (evicted != null) {
+                for (Block eldest : evicted) {
+                    evict(eldest);
+                }
+            }
+            return block;
+        }
+    }
+
+    /** flushes the evicted block and notifies the listeners, the stripe of the block is locked */
+    private void evict(Block block) {
+        evictions.increment();
+        try {
+            if (dirtyBlocks.remove(block.blockNr, block)) {
+                block.flush();
+                block.setDirty(false);
+            }
+        } catch (IOException e) {
+            log.log(Level.ERROR, "Exception when flushing a block from the cache", e);
+        }
+        if (!cacheListeners.isEmpty()) {
+            CacheEvent event = new CacheEvent(block, CacheEvent.REMOVED, getHitCount(), getMissCount(), getEvictionCount());
+            for (CacheListener l : cacheListeners) {
+                l.elementRemoved(event);
+            }
+        }
+    }
+
+    /** puts the block on the write back list */
+    public void markDirty(Block block) {
+        block.setDirty(true);
+        dirtyBlocks.put(block.blockNr, block);
+    }
+
+    /** takes the block off the write back list */
+    public void markClean(Block block) {
+        block.setDirty(false);
+        dirtyBlocks.remove(block.blockNr, block);
+    }
+
+    /** @return true if there are blocks on the write back list */
+    public boolean hasDirtyBlocks() {
+        return !dirtyBlocks.isEmpty();
+    }
+
+    /**
+     * @param nr the first block number
+     * @param count the number of blocks
+     * @return true if one of the blocks is on the write back list
+     */
+    public boolean hasDirtyBlocks(long nr, int count) {
+        Long dirty = dirtyBlocks.ceilingKey(nr);
+        return dirty != null && dirty < nr + count;
+    }
+
+    /** writes all blocks on the write back list */
+    public void flush() throws IOException {
+        for (Iterator<Block> i = dirtyBlocks.values().iterator(); i.hasNext(); ) {
+            Block block = i.next();
+            i.remove();
+            block.flush();
+            block.setDirty(false);
+        }
+    }
+
+    /**
+     * Changes the budget, blocks exceeding it are evicted on the next insertion to their stripe.
+     *
+     * @param maxBytes the budget in bytes
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** @return the number of bytes currently cached */
+    public long getBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                bytes += stripe.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    /** @return the number of blocks currently cached */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.blocks.size();
             }
-            return true;
-        } else {
-            return false;
         }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BlockCache{size=" + size() + ", bytes=" + getBytes() + "/" + maxBytes +
+                ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "}";
     }
 }
@@ -26,6 +26,7 @@ import java.util.EventObject;
 /**
  * Event used to notify a CacheListener about events occurring to the cache
  * (currently used only when an element is removed from the cache).
+ * The event also carries a snapshot of the cache statistics.
  * 
  * @author Andras Nagy
  */
@@ -37,6 +38,10 @@ public class CacheEvent extends EventObject {
     public static final int REMOVED = 0;
     private int eventType;
 
+    private long hits;
+    private long misses;
+    private long evictions;
+
     public CacheEvent(Object source) {
         super(source);
     }
@@ -46,6 +51,18 @@ public class CacheEvent extends EventObject {
         this.eventType = type;
     }
 
+    /**
+     * @param hits the hit count of the cache at the time of the event
+     * @param misses the miss count of the cache at the time of the event
+     * @param evictions the eviction count of the cache at the time of the event
+     */
+    public CacheEvent(Object source, int type, long hits, long misses, long evictions) {
+        this(source, type);
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
     /**
      * Returns the eventType.
      * 
@@ -54,4 +71,19 @@ public class CacheEvent extends EventObject {
     public int getEventType() {
         return eventType;
     }
+
+    /** @return the hit count of the cache at the time of the event */
+    public long getHits() {
+        return hits;
+    }
+
+    /** @return the miss count of the cache at the time of the event */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** @return the eviction count of the cache at the time of the event */
+    public long getEvictions() {
+        return evictions;
+    }
 }
@@ -34,6 +34,11 @@ public class Extent {
      */
     public static final int EXTENT_LENGTH = 12;
 
+    /**
+     * The maximum block count of an initialized extent.
+     */
+    public static final int UNINITIALIZED_LENGTH = 32768;
+
     /**
      * The data for the extent.
      */
@@ -62,6 +67,17 @@ public class Extent {
         return LittleEndian.getUInt16(data, 4);
     }
 
+    /**
+     * Gets the number of blocks covered by the extent, an uninitialized extent has
+     * {@link #UNINITIALIZED_LENGTH} added to its block count.
+     *
+     * @return the number of blocks.
+     */
+    public int getLength() {
+        int count = getBlockCount();
+        return count > UNINITIALIZED_LENGTH ? count - UNINITIALIZED_LENGTH : count;
+    }
+
     public long getStartLow() {
         return LittleEndian.getUInt32(data, 8);
     }
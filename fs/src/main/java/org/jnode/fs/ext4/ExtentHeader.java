@@ -127,15 +127,26 @@ public class ExtentHeader {
     }
 
     public long getBlockNumber(Ext2FileSystem fs, long index) throws IOException {
+        Extent extent = getExtent(fs, index);
+        return index - extent.getBlockIndex() + extent.getStartLow();
+    }
+
+    /**
+     * Gets the leaf extent which maps the given block index.
+     *
+     * @param fs    the file system to read index blocks from.
+     * @param index the index of the block in the file.
+     * @return the extent.
+     */
+    public Extent getExtent(Ext2FileSystem fs, long index) throws IOException {
         if (getDepth() > 0) {
             ExtentIndex extentIndex = binarySearchIndexes(index, getIndexEntries());
             byte[] indexData = fs.getBlock(extentIndex.getLeafLow());
 
             ExtentHeader indexHeader = new ExtentHeader(indexData);
-            return indexHeader.getBlockNumber(fs, index);
+            return indexHeader.getExtent(fs, index);
         } else {
-            Extent extent = binarySearchExtents(index, getExtentEntries());
-            return index - extent.getBlockIndex() + extent.getStartLow();
+            return binarySearchExtents(index, getExtentEntries());
         }
     }
 
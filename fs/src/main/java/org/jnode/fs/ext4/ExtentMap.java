@@ -0,0 +1,151 @@
+/*
+ * $Id$
+ *
+ * Copyright (C) 2003-2015 JNode.org
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public 
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; If not, write to the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jnode.fs.ext4;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.jnode.fs.ext2.Ext2FileSystem;
+
+/**
+ * An immutable, flattened copy of the leaf extents of an ext4 extent tree.
+ * <p>
+ * The tree is walked once when the map is built, after that a block lookup is
+ * a binary search over primitive arrays without any further I/O.
+ */
+public final class ExtentMap {
+
+    /**
+     * The logical block index of each extent, in ascending order.
+     */
+    private final long[] logicalStarts;
+
+    /**
+     * The physical block number of each extent.
+     */
+    private final long[] physicalStarts;
+
+    /**
+     * The number of blocks of each extent.
+     */
+    private final int[] lengths;
+
+    private ExtentMap(long[] logicalStarts, long[] physicalStarts, int[] lengths) {
+        this.logicalStarts = logicalStarts;
+        this.physicalStarts = physicalStarts;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Walks the extent tree and builds the map.
+     *
+     * @param fs     the file system to read index blocks from.
+     * @param header the root of the extent tree.
+     * @return the map.
+     */
+    public static ExtentMap build(Ext2FileSystem fs, ExtentHeader header) throws IOException {
+        Builder builder = new Builder();
+        builder.add(fs, header);
+        return new ExtentMap(Arrays.copyOf(builder.logicalStarts, builder.count),
+                             Arrays.copyOf(builder.physicalStarts, builder.count),
+                             Arrays.copyOf(builder.lengths, builder.count));
+    }
+
+    /** collects the leaves depth first, so they come in logical order */
+    private static final class Builder {
+        long[] logicalStarts = new long[4];
+        long[] physicalStarts = new long[4];
+        int[] lengths = new int[4];
+        int count;
+
+        void add(Ext2FileSystem fs, ExtentHeader header) throws IOException {
+            if (header.getDepth() > 0) {
+                for (ExtentIndex extentIndex : header.getIndexEntries()) {
+                    add(fs, new ExtentHeader(fs.getBlock(extentIndex.getLeafLow())));
+                }
+            } else {
+                for (Extent extent : header.getExtentEntries()) {
+                    if (count == lengths.length) {
+                        logicalStarts = Arrays.copyOf(logicalStarts, count * 2);
+                        physicalStarts = Arrays.copyOf(physicalStarts, count * 2);
+                        lengths = Arrays.copyOf(lengths, count * 2);
+                    }
+                    logicalStarts[count] = extent.getBlockIndex();
+                    physicalStarts[count] = extent.getStartLow();
+                    lengths[count] = extent.getLength();
+                    count++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the extent which maps the block index, as the extent tree lookup does this is the last
+     * extent starting at or before the index, or the first extent.
+     */
+    private int find(long index) {
+        int i = Arrays.binarySearch(logicalStarts, index);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return Math.max(0, i);
+    }
+
+    /**
+     * Gets the physical block number for the block index.
+     *
+     * @param index the index of the block in the file.
+     * @return the block number.
+     */
+    public long getBlockNumber(long index) throws IOException {
+        if (lengths.length == 0) {
+            throw new IOException("No extents mapping block " + index);
+        }
+        int i = find(index);
+        return index - logicalStarts[i] + physicalStarts[i];
+    }
+
+    /**
+     * Gets the number of blocks from the block index to the end of its extent.
+     *
+     * @param index the index of the block in the file.
+     * @return the number of blocks, at least 1.
+     */
+    public long getRunLength(long index) {
+        if (lengths.length == 0) {
+            return 1;
+        }
+        int i = find(index);
+        return Math.max(1, logicalStarts[i] + lengths[i] - index);
+    }
+
+    /**
+     * @return the number of extents.
+     */
+    public int size() {
+        return lengths.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExtentMap: extents:%d", size());
+    }
+}
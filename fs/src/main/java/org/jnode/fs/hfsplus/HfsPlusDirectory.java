@@ -36,6 +36,7 @@ import org.jnode.fs.hfsplus.catalog.Catalog;
 import org.jnode.fs.hfsplus.catalog.CatalogFile;
 import org.jnode.fs.hfsplus.catalog.CatalogFolder;
 import org.jnode.fs.hfsplus.catalog.CatalogKey;
+import org.jnode.fs.hfsplus.catalog.CatalogKeyComparator;
 import org.jnode.fs.hfsplus.catalog.CatalogLeafNode;
 import org.jnode.fs.hfsplus.catalog.CatalogNodeId;
 import org.jnode.fs.hfsplus.tree.LeafRecord;
@@ -133,8 +134,28 @@ public class HfsPlusDirectory implements FSDirectory, FSDirectoryId {
         log.log(Level.DEBUG, "Directory flushed.");
     }
 
+    /**
+     * Gets an entry by name. Until the directory has been listed, the entry is looked up with a single descent of
+     * the catalog B-Tree instead of reading every record of the folder.
+     */
     @Override
     public FSEntry getEntry(String name) throws IOException {
+        if (!isEntriesLoaded() && entry.getAccessRights().canRead()) {
+            HfsPlusFileSystem fs = getFileSystem();
+            if (fs.getVolumeHeader().getFolderCount() == 0) {
+                return null;
+            }
+            LeafRecord rec = fs.getCatalog().getRecord(getContentsFolderId(), new HfsUnicodeString(name));
+            if (rec != null && (rec.getType() == CatalogFolder.RECORD_TYPE_FOLDER ||
+                rec.getType() == CatalogFile.RECORD_TYPE_FILE) &&
+                ((CatalogKey) rec.getKey()).getNodeName().getUnicodeString().equals(name)) {
+                return new HfsPlusEntry(fs, this, name, rec);
+            }
+            if (CatalogKeyComparator.isFoldingExact(name)) {
+                return null;
+            }
+            // the name may sort differently on disk than our folding assumes, so fall back to the listing
+        }
         checkEntriesLoaded();
         return entries.get(name);
     }
@@ -220,13 +241,7 @@ public class HfsPlusDirectory implements FSDirectory, FSDirectoryId {
         List<FSEntry> pathList = new LinkedList<>();
         HfsPlusFileSystem fs = getFileSystem();
         if (fs.getVolumeHeader().getFolderCount() > 0) {
-            LeafRecord[] records;
-
-            if ((folder.getFlags() & CatalogFile.FLAGS_HARDLINK_CHAIN) != 0) {
-                records = fs.getCatalog().getRecords(getHardLinkFolder().getFolderId());
-            } else {
-                records = fs.getCatalog().getRecords(folder.getFolderId());
-            }
+            LeafRecord[] records = fs.getCatalog().getRecords(getContentsFolderId());
 
             for (LeafRecord rec : records) {
                 if (rec.getType() == CatalogFolder.RECORD_TYPE_FOLDER ||
@@ -240,6 +255,18 @@ public class HfsPlusDirectory implements FSDirectory, FSDirectoryId {
         return new FSEntryTable(getFileSystem(), pathList);
     }
 
+    /**
+     * @return the id of the folder holding the contents of this directory, which differs from this folder for a
+     * hard linked directory.
+     */
+    private CatalogNodeId getContentsFolderId() {
+        if ((folder.getFlags() & CatalogFile.FLAGS_HARDLINK_CHAIN) != 0) {
+            return getHardLinkFolder().getFolderId();
+        } else {
+            return folder.getFolderId();
+        }
+    }
+
     /**
      * Gets the hard link folder associated with this HFS+ folder.
      *
@@ -35,10 +35,13 @@ import org.jnode.fs.hfsplus.attributes.Attributes;
 import org.jnode.fs.hfsplus.catalog.Catalog;
 import org.jnode.fs.hfsplus.catalog.CatalogKey;
 import org.jnode.fs.hfsplus.catalog.CatalogNodeId;
+import org.jnode.fs.hfsplus.compression.ChunkCache;
+import org.jnode.fs.hfsplus.compression.ChunkReadAhead;
 import org.jnode.fs.hfsplus.compression.CompressedAttributeData;
 import org.jnode.fs.hfsplus.compression.HfsPlusCompressionFactory;
 import org.jnode.fs.hfsplus.extent.Extent;
 import org.jnode.fs.hfsplus.tree.LeafRecord;
+import org.jnode.fs.hfsplus.tree.NodeCache;
 import org.jnode.fs.spi.AbstractFileSystem;
 
 public class HfsPlusFileSystem extends AbstractFileSystem<HfsPlusEntry> {
@@ -65,6 +68,21 @@ public class HfsPlusFileSystem extends AbstractFileSystem<HfsPlusEntry> {
      */
     private Attributes attributes;
 
+    /**
+     * The parsed B-tree nodes of the catalog, extents overflow and attributes files.
+     */
+    private final NodeCache nodeCache = new NodeCache();
+
+    /**
+     * The decompressed chunks of files compressed into their resource fork.
+     */
+    private final ChunkCache chunkCache = new ChunkCache();
+
+    /**
+     * Decompresses chunks ahead of sequential readers of files compressed into their resource fork.
+     */
+    private final ChunkReadAhead chunkReadAhead = new ChunkReadAhead();
+
     /**
      * The HFS+ private data directory. Used by HFS+ to stored hard linked file data.
      */
@@ -147,6 +165,12 @@ public class HfsPlusFileSystem extends AbstractFileSystem<HfsPlusEntry> {
         return null;
     }
 
+    @Override
+    public void close() throws IOException {
+        chunkReadAhead.close();
+        super.close();
+    }
+
     @Override
     public final long getFreeSpace() {
         return volumeHeader.getFreeBlocks() * volumeHeader.getBlockSize();
@@ -184,6 +208,33 @@ public class HfsPlusFileSystem extends AbstractFileSystem<HfsPlusEntry> {
         return volumeHeader;
     }
 
+    /**
+     * Gets the B-tree node cache shared by the catalog, extents overflow and attributes files.
+     *
+     * @return the node cache.
+     */
+    public final NodeCache getNodeCache() {
+        return nodeCache;
+    }
+
+    /**
+     * Gets the cache of decompressed chunks of files compressed into their resource fork.
+     *
+     * @return the chunk cache.
+     */
+    public final ChunkCache getChunkCache() {
+        return chunkCache;
+    }
+
+    /**
+     * Gets the read-ahead of files compressed into their resource fork.
+     *
+     * @return the read-ahead.
+     */
+    public final ChunkReadAhead getChunkReadAhead() {
+        return chunkReadAhead;
+    }
+
     /**
      * Gets the HFS+ private data directory. Used by HFS+ to stored hard linked file data.
      *
@@ -245,6 +296,8 @@ public class HfsPlusFileSystem extends AbstractFileSystem<HfsPlusEntry> {
      */
     public void create(HFSPlusParams params) throws FileSystemException {
         volumeHeader = new SuperBlock(this, true);
+        nodeCache.clear();
+        chunkCache.clear();
         try {
             params.initializeDefaultsValues(this);
             volumeHeader.create(params);
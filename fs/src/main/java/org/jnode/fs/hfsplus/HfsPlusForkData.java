@@ -23,6 +23,7 @@ package org.jnode.fs.hfsplus;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -55,6 +56,11 @@ public class HfsPlusForkData {
      */
     private ExtentDescriptor[] overflowExtents;
 
+    /**
+     * The in-use extents in fork order with the fork offset at which each one starts, built on first read.
+     */
+    private volatile ExtentIndex extentIndex;
+
     /**
      * The catalog node ID that owns this fork.
      */
@@ -142,6 +148,15 @@ public class HfsPlusForkData {
         return totalBlock;
     }
 
+    /**
+     * Gets the catalog node ID that owns this fork.
+     *
+     * @return the owner's ID.
+     */
+    public CatalogNodeId getCatalogNodeId() {
+        return cnid;
+    }
+
     public ExtentDescriptor getExtent(int index) {
         return extents[index];
     }
@@ -154,6 +169,11 @@ public class HfsPlusForkData {
      * @throws IOException if an error occurs.
      */
     public Collection<ExtentDescriptor> getAllExtents(HfsPlusFileSystem fileSystem) throws IOException {
+        ExtentIndex index = extentIndex;
+        if (index != null) {
+            return index.allExtents;
+        }
+
         List<ExtentDescriptor> allExtents = new ArrayList<>();
         Collections.addAll(allExtents, extents);
 
@@ -168,7 +188,7 @@ public class HfsPlusForkData {
             Collections.addAll(allExtents, overflowExtents);
         }
 
-        return allExtents;
+        return Collections.unmodifiableList(allExtents);
     }
 
     /**
@@ -180,46 +200,83 @@ public class HfsPlusForkData {
      * @throws java.io.IOException if an error occurs.
      */
     public void read(HfsPlusFileSystem fileSystem, long offset, ByteBuffer buffer) throws IOException {
-        int blockSize = fileSystem.getVolumeHeader().getBlockSize();
         int limit = buffer.limit();
-        int remaining = buffer.remaining();
-
-        Collection<ExtentDescriptor> allExtents = getAllExtents(fileSystem);
-
-        for (ExtentDescriptor extentDescriptor : allExtents) {
-            if (remaining > 0 && !extentDescriptor.isEmpty()) {
-                long length = extentDescriptor.getSize(blockSize);
+        long position = offset;
 
-                if (offset != 0 && length < offset) {
-                    offset -= length;
-                } else {
-                    long firstOffset = extentDescriptor.getStartOffset(blockSize);
+        ExtentIndex index = getExtentIndex(fileSystem);
 
-                    while (remaining > 0 && offset < length) {
-                        int byteCount = Math.min(remaining, blockSize);
-                        byteCount = Math.min(byteCount, (int) (length - offset));
+        // One device read per extent, the extents are contiguous on disk
+        int i = index.find(position);
+        while (i >= 0 && i < index.extents.length && buffer.hasRemaining()) {
+            long offsetInExtent = position - index.offsets[i];
+            long length = index.offsets[i + 1] - index.offsets[i];
+            int byteCount = (int) Math.min(buffer.remaining(), length - offsetInExtent);
 
-                        buffer.limit(buffer.position() + byteCount);
-                        fileSystem.getApi().read(firstOffset + offset, buffer);
+            buffer.limit(buffer.position() + byteCount);
+            fileSystem.getApi().read(index.extents[i].getStartOffset(index.blockSize) + offsetInExtent, buffer);
+            buffer.limit(limit);
 
-                        offset += byteCount;
-                        remaining -= byteCount;
-                    }
-
-                    offset = 0;
-                }
-            }
+            position += byteCount;
+            i++;
         }
 
-        if (remaining > 0) {
+        if (buffer.hasRemaining()) {
             throw new IOException(String.format("Failed to read in all the data. cnid: %s offset: %d extents: %s",
-                cnid, offset, allExtents));
+                cnid, position, getAllExtents(fileSystem)));
         }
 
         // Reset the limit
         buffer.limit(limit);
     }
 
+    private ExtentIndex getExtentIndex(HfsPlusFileSystem fileSystem) throws IOException {
+        ExtentIndex index = extentIndex;
+        if (index == null) {
+            index = new ExtentIndex(getAllExtents(fileSystem), fileSystem.getVolumeHeader().getBlockSize());
+            extentIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * The in-use extents of a fork with their cumulative start offsets, so an offset maps to its extent by binary
+     * search.
+     */
+    private static final class ExtentIndex {
+
+        private final int blockSize;
+
+        private final Collection<ExtentDescriptor> allExtents;
+
+        private final ExtentDescriptor[] extents;
+
+        /**
+         * The fork offset each extent starts at, with the end of the last extent as the final element.
+         */
+        private final long[] offsets;
+
+        ExtentIndex(Collection<ExtentDescriptor> allExtents, int blockSize) {
+            this.blockSize = blockSize;
+            this.allExtents = allExtents;
+            this.extents = allExtents.stream().filter(e -> !e.isEmpty()).toArray(ExtentDescriptor[]::new);
+            this.offsets = new long[extents.length + 1];
+            for (int i = 0; i < extents.length; i++) {
+                offsets[i + 1] = offsets[i] + extents[i].getSize(blockSize);
+            }
+        }
+
+        /**
+         * @return the extent holding the offset, or {@code -1} if it's beyond the last extent.
+         */
+        int find(long offset) {
+            if (offset < 0 || offset >= offsets[extents.length]) {
+                return -1;
+            }
+            int i = Arrays.binarySearch(offsets, 0, extents.length, offset);
+            return i < 0 ? -i - 2 : i;
+        }
+    }
+
     /**
      *
      * @param index the index
@@ -227,6 +284,7 @@ public class HfsPlusForkData {
      */
     public final void addDescriptor(int index, ExtentDescriptor desc) {
         extents[index] = desc;
+        extentIndex = null;
     }
 
     public ExtentDescriptor[] getExtents() {
@@ -32,6 +32,7 @@ import org.jnode.fs.hfsplus.catalog.CatalogNodeId;
 import org.jnode.fs.hfsplus.tree.BTHeaderRecord;
 import org.jnode.fs.hfsplus.tree.IndexRecord;
 import org.jnode.fs.hfsplus.tree.LeafRecord;
+import org.jnode.fs.hfsplus.tree.Node;
 import org.jnode.fs.hfsplus.tree.NodeDescriptor;
 import org.jnode.util.BigEndian;
 import org.jnode.util.ByteBufferUtils;
@@ -122,16 +123,10 @@ public class Attributes {
         }
 
         LeafRecord leafRecord = null;
-        int nodeSize = bthr.getNodeSize();
-        ByteBuffer nodeData = ByteBuffer.allocate(nodeSize);
-        attributesFile.read(fs, (nodeNumber * nodeSize), nodeData);
-        nodeData.rewind();
-        byte[] data = ByteBufferUtils.toArray(nodeData);
-        NodeDescriptor nodeDescriptor = new NodeDescriptor(data, 0);
+        Node<?> node = fs.getNodeCache().getNode(fs, attributesFile, bthr, nodeNumber, Attributes::parseNode);
 
-        if (nodeDescriptor.isIndexNode()) {
-            AttributeIndexNode node = new AttributeIndexNode(data, nodeSize);
-            IndexRecord[] records = node.findAll(new AttributeKey(fileId, attributeName));
+        if (node instanceof AttributeIndexNode indexNode) {
+            IndexRecord[] records = indexNode.findAll(new AttributeKey(fileId, attributeName));
 
             for (IndexRecord indexRecord : records) {
                 AttributeData attributeData = getAttribute(fileId, attributeName, indexRecord.getIndex());
@@ -140,9 +135,8 @@ public class Attributes {
                 }
             }
 
-        } else if (nodeDescriptor.isLeafNode()) {
-            AttributeLeafNode node = new AttributeLeafNode(data, nodeSize);
-            leafRecord = node.find(new AttributeKey(fileId, attributeName));
+        } else if (node instanceof AttributeLeafNode leafNode) {
+            leafRecord = leafNode.find(new AttributeKey(fileId, attributeName));
         }
 
         if (leafRecord == null) {
@@ -162,4 +156,15 @@ public class Attributes {
             return null;
         }
     }
+
+    private static Node<?> parseNode(byte[] nodeData, int nodeSize) {
+        NodeDescriptor nodeDescriptor = new NodeDescriptor(nodeData, 0);
+        if (nodeDescriptor.isIndexNode()) {
+            return new AttributeIndexNode(nodeData, nodeSize);
+        } else if (nodeDescriptor.isLeafNode()) {
+            return new AttributeLeafNode(nodeData, nodeSize);
+        } else {
+            return null;
+        }
+    }
 }
@@ -36,6 +36,7 @@ import org.jnode.fs.hfsplus.SuperBlock;
 import org.jnode.fs.hfsplus.tree.BTHeaderRecord;
 import org.jnode.fs.hfsplus.tree.IndexRecord;
 import org.jnode.fs.hfsplus.tree.LeafRecord;
+import org.jnode.fs.hfsplus.tree.Node;
 import org.jnode.fs.hfsplus.tree.NodeDescriptor;
 import org.jnode.util.ByteBufferUtils;
 import org.jnode.util.NumberUtils;
@@ -136,6 +137,7 @@ public class Catalog {
         SuperBlock vh = fs.getVolumeHeader();
         long offset = vh.getCatalogFile().getExtent(0).getStartOffset(vh.getBlockSize());
         fs.getApi().write(offset, this.getBytes());
+        fs.getNodeCache().clear();
     }
 
     private CatalogLeafNode createRootNode(HFSPlusParams params) {
@@ -208,39 +210,101 @@ public class Catalog {
         return node;
     }
 
+    /**
+     * Gets a node of the catalog B-Tree through the node cache.
+     *
+     * @param nodeNumber the node number.
+     * @return the index or leaf node, or {@code null} for any other kind of node.
+     * @throws IOException when an error occurs
+     */
+    private Node<?> getNode(long nodeNumber) throws IOException {
+        return fs.getNodeCache().getNode(fs, catalogFile, bthr, nodeNumber, Catalog::parseNode);
+    }
+
+    private static Node<?> parseNode(byte[] nodeData, int nodeSize) {
+        NodeDescriptor nd = new NodeDescriptor(nodeData, 0);
+        if (nd.isIndexNode()) {
+            return new CatalogIndexNode(nodeData, nodeSize);
+        } else if (nd.isLeafNode()) {
+            return new CatalogLeafNode(nodeData, nodeSize);
+        } else {
+            log.log(Level.INFO, String.format("Node wasn't a leaf or index: %s\n%s", nd, NumberUtils.hex(nodeData)));
+            return null;
+        }
+    }
+
     /**
      * @param parentID the parentID
      * @return the leaf record, or possibly {code null}.
      * @throws IOException when an error occurs
      */
     public final LeafRecord getRecord(final CatalogNodeId parentID) throws IOException {
-        long currentOffset = 0;
-        LeafRecord lr = null;
-        int nodeSize = bthr.getNodeSize();
-        ByteBuffer nodeData = ByteBuffer.allocate(nodeSize);
-        catalogFile.read(fs, (bthr.getRootNode() * nodeSize), nodeData);
-        nodeData.rewind();
-        byte[] data = ByteBufferUtils.toArray(nodeData);
-        NodeDescriptor nd = new NodeDescriptor(data, 0);
-
-        while (nd.isIndexNode()) {
-            CatalogIndexNode node = new CatalogIndexNode(data, nodeSize);
-            IndexRecord record = node.find(new CatalogKey(parentID));
-            currentOffset = record.getIndex() * nodeSize;
-            nodeData = ByteBuffer.allocate(nodeSize);
-            catalogFile.read(fs, currentOffset, nodeData);
-            nodeData.rewind();
-            data = ByteBufferUtils.toArray(nodeData);
-            nd = new NodeDescriptor(nodeData.array(), 0);
+        return getRecord(new CatalogKey(parentID));
+    }
+
+    /**
+     * Descends from the root node to the leaf record matching the key.
+     */
+    private LeafRecord getRecord(CatalogKey key) throws IOException {
+        Node<?> node = getNode(bthr.getRootNode());
+
+        while (node instanceof CatalogIndexNode indexNode) {
+            IndexRecord record = indexNode.find(key);
+            node = getNode(record.getIndex());
         }
 
-        if (nd.isLeafNode()) {
-            CatalogLeafNode node = new CatalogLeafNode(data, nodeSize);
-            lr = node.find(new CatalogKey(parentID));
+        LeafRecord lr = null;
+        if (node instanceof CatalogLeafNode leafNode) {
+            lr = leafNode.find(key);
         }
         return lr;
     }
 
+    /**
+     * Descends from the root node to the leaf record with exactly the key, following in each index node the last
+     * record whose key does not sort after the searched one.
+     */
+    private LeafRecord findRecord(CatalogKey key) throws IOException {
+        CatalogKeyComparator comparator = CatalogKeyComparator.forHeader(bthr);
+        Node<?> node = getNode(bthr.getRootNode());
+
+        while (node instanceof CatalogIndexNode indexNode) {
+            int index = floor(indexNode, key, comparator);
+            if (index < 0) {
+                return null;
+            }
+            node = getNode(indexNode.getNodeRecord(index).getIndex());
+        }
+
+        if (node instanceof CatalogLeafNode leafNode) {
+            int index = floor(leafNode, key, comparator);
+            if (index >= 0) {
+                LeafRecord record = leafNode.getNodeRecord(index);
+                if (comparator.compare((CatalogKey) record.getKey(), key) == 0) {
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the last record whose key is less than or equal to the key, or {@code -1}.
+     */
+    private static int floor(Node<?> node, CatalogKey key, CatalogKeyComparator comparator) {
+        int low = 0;
+        int high = node.getNodeDescriptor().getNumRecords() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare((CatalogKey) node.getNodeRecord(mid).getKey(), key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
     /**
      * Find leaf records corresponding to parentID. The search begin at the root
      * node of the tree.
@@ -265,25 +329,19 @@ public class Catalog {
     public final LeafRecord[] getRecords(final CatalogNodeId parentID, final long nodeNumber)
         throws IOException {
         try {
-            int nodeSize = getBTHeaderRecord().getNodeSize();
-            ByteBuffer nodeData = ByteBuffer.allocate(nodeSize);
-            catalogFile.read(fs, (nodeNumber * nodeSize), nodeData);
-            byte[] datas = nodeData.array();
-            NodeDescriptor nd = new NodeDescriptor(datas, 0);
-            if (nd.isIndexNode()) {
-                CatalogIndexNode node = new CatalogIndexNode(datas, nodeSize);
-                IndexRecord[] records = node.findAll(new CatalogKey(parentID));
+            Node<?> node = getNode(nodeNumber);
+            if (node instanceof CatalogIndexNode indexNode) {
+                IndexRecord[] records = indexNode.findAll(new CatalogKey(parentID));
                 List<LeafRecord> lfList = new LinkedList<>();
                 for (IndexRecord rec : records) {
                     LeafRecord[] lfr = getRecords(parentID, rec.getIndex());
                     Collections.addAll(lfList, lfr);
                 }
                 return lfList.toArray(new LeafRecord[0]);
-            } else if (nd.isLeafNode()) {
-                CatalogLeafNode node = new CatalogLeafNode(nodeData.array(), nodeSize);
-                return node.findAll(new CatalogKey(parentID));
+            } else if (node instanceof CatalogLeafNode leafNode) {
+                return leafNode.findAll(new CatalogKey(parentID));
             } else {
-                log.log(Level.INFO, String.format("Node %d wasn't a leaf or index: %s\n%s", nodeNumber, nd, NumberUtils.hex(datas)));
+                log.log(Level.INFO, String.format("Node %d wasn't a leaf or index", nodeNumber));
                 return new LeafRecord[0];
             }
 
@@ -294,6 +352,10 @@ public class Catalog {
     }
 
     /**
+     * Looks up a single record by descending the tree on the full key, without listing the parent folder.
+     * The name is matched as the volume compares names, so on a case-insensitive volume the record found may
+     * differ from the requested name in case.
+     *
      * @param parentID the parent id
      * @param nodeName the node name
      * @return the leaf node or {@code null}
@@ -301,28 +363,7 @@ public class Catalog {
      */
     public final LeafRecord getRecord(final CatalogNodeId parentID, final HfsUnicodeString nodeName)
         throws IOException {
-        long currentNodeNumber = getBTHeaderRecord().getRootNode();
-        int nodeSize = getBTHeaderRecord().getNodeSize();
-        ByteBuffer nodeData = ByteBuffer.allocate(nodeSize);
-        catalogFile.read(fs, (currentNodeNumber * nodeSize), nodeData);
-        NodeDescriptor nd = new NodeDescriptor(nodeData.array(), 0);
-        long currentOffset = 0;
-        CatalogKey cKey = new CatalogKey(parentID, nodeName);
-        while (nd.isIndexNode()) {
-            CatalogIndexNode node = new CatalogIndexNode(nodeData.array(), nodeSize);
-            IndexRecord record = node.find(cKey);
-            currentNodeNumber = record.getIndex();
-            currentOffset = record.getIndex() * nodeSize;
-            nodeData = ByteBuffer.allocate(nodeSize);
-            catalogFile.read(fs, currentOffset, buffer);
-            node = new CatalogIndexNode(nodeData.array(), nodeSize);
-        }
-        LeafRecord lr = null;
-        if (nd.isLeafNode()) {
-            CatalogLeafNode node = new CatalogLeafNode(nodeData.array(), nodeSize);
-            lr = node.find(cKey);
-        }
-        return lr;
+        return findRecord(new CatalogKey(parentID, nodeName));
     }
 
     public final NodeDescriptor getBTNodeDescriptor() {
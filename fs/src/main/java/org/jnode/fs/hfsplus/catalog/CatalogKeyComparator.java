@@ -0,0 +1,127 @@
+/*
+ * $Id$
+ *
+ * Copyright (C) 2003-2015 JNode.org
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public 
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; If not, write to the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jnode.fs.hfsplus.catalog;
+
+import java.util.Comparator;
+
+import org.jnode.fs.hfsplus.HfsUnicodeString;
+import org.jnode.fs.hfsplus.tree.BTHeaderRecord;
+
+/**
+ * Orders catalog keys the way the catalog B-Tree is sorted on disk: by parent id and then by node name, either
+ * case folded (HFS+ and case-insensitive HFSX) or binary (case-sensitive HFSX).
+ * <p>
+ * The case folding follows the FastUnicodeCompare of TN1150: ignorable characters are skipped, {@code U+0000}
+ * sorts after every other character and the remaining characters are compared lower cased. The lower casing is
+ * done with {@link Character#toLowerCase(char)}, which agrees with the Apple table for Latin-1 but not necessarily
+ * for every other script, see {@link #isFoldingExact(String)}.
+ */
+public final class CatalogKeyComparator implements Comparator<CatalogKey> {
+
+    public static final CatalogKeyComparator CASE_FOLDING = new CatalogKeyComparator(true);
+
+    public static final CatalogKeyComparator BINARY = new CatalogKeyComparator(false);
+
+    private final boolean caseFolding;
+
+    private CatalogKeyComparator(boolean caseFolding) {
+        this.caseFolding = caseFolding;
+    }
+
+    /**
+     * Gets the comparator for a catalog B-Tree.
+     *
+     * @param header the B-Tree header record.
+     * @return the comparator matching the key compare type of the tree.
+     */
+    public static CatalogKeyComparator forHeader(BTHeaderRecord header) {
+        return header.getKeyCompareType() == BTHeaderRecord.KEY_COMPARE_TYPE_BINARY ? BINARY : CASE_FOLDING;
+    }
+
+    /**
+     * Checks whether the folding of this class is known to sort a name exactly as the Apple table does.
+     *
+     * @param name the name.
+     * @return {@code true} if all characters of the name are Latin-1.
+     */
+    public static boolean isFoldingExact(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > 0xff) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int compare(CatalogKey key1, CatalogKey key2) {
+        int res = key1.getParentId().compareTo(key2.getParentId());
+        if (res == 0) {
+            String name1 = nameOf(key1);
+            String name2 = nameOf(key2);
+            res = caseFolding ? compareFolded(name1, name2) : name1.compareTo(name2);
+        }
+        return res;
+    }
+
+    private static String nameOf(CatalogKey key) {
+        HfsUnicodeString name = key.getNodeName();
+        return name == null ? "" : name.getUnicodeString();
+    }
+
+    /**
+     * Compares two names as FastUnicodeCompare of TN1150 does.
+     */
+    static int compareFolded(String s1, String s2) {
+        int i1 = 0;
+        int i2 = 0;
+        while (true) {
+            int c1 = 0;
+            while (c1 == 0 && i1 < s1.length()) {
+                c1 = fold(s1.charAt(i1++));
+            }
+            int c2 = 0;
+            while (c2 == 0 && i2 < s2.length()) {
+                c2 = fold(s2.charAt(i2++));
+            }
+            if (c1 != c2) {
+                return c1 < c2 ? -1 : 1;
+            }
+            if (c1 == 0) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return the folded character, or {@code 0} for an ignorable one.
+     */
+    private static int fold(char c) {
+        if (c == 0) {
+            return 0xffff;
+        }
+        if ((c >= 0x200c && c <= 0x200f) || (c >= 0x202a && c <= 0x202e) || (c >= 0x206a && c <= 0x206f) ||
+            c == 0xfeff) {
+            return 0;
+        }
+        return Character.toLowerCase(c);
+    }
+}
@@ -55,13 +55,15 @@ public class AttributeZlibCompression implements HfsPlusCompression {
                 compressed.position(1);
                 uncompressed.put(compressed);
             } else {
-                Inflater inflater = new Inflater();
+                Inflater inflater = InflaterPool.acquire();
                 inflater.setInput(compressed.array());
 
                 try {
                     inflater.inflate(uncompressed.array());
                 } catch (DataFormatException e) {
                     throw new IllegalStateException("Error uncompressing data", e);
+                } finally {
+                    InflaterPool.release(inflater);
                 }
             }
         }
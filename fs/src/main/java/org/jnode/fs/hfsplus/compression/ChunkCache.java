@@ -0,0 +1,102 @@
+package org.jnode.fs.hfsplus.compression;
+
+import org.jnode.fs.util.LruCache;
+
+/**
+ * A cache of decompressed chunks of the files of a volume whose data is compressed into the resource fork, keyed by
+ * the file id and the chunk number. Small sequential reads then decompress each chunk once instead of once per read.
+ * <p>
+ * Chunks are evicted least recently used first once the cache holds more than its size.
+ */
+public final class ChunkCache {
+
+    /**
+     * The default number of chunks, can be overridden by the system property {@link #CACHE_SIZE_PROPERTY}.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    /**
+     * The system property for the number of decompressed chunks kept in memory.
+     */
+    public static final String CACHE_SIZE_PROPERTY = "org.jnode.fs.hfsplus.chunkCacheSize";
+
+    /**
+     * The chunks, no decompression is done while holding the lock.
+     */
+    private final LruCache<Long, byte[]> chunks =
+        new LruCache<>(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+
+    private static Long key(long fileId, int chunk) {
+        return (fileId << 32) | chunk;
+    }
+
+    /**
+     * Gets a decompressed chunk.
+     *
+     * @param fileId the catalog node id of the file.
+     * @param chunk the chunk number.
+     * @return the chunk, or {@code null} if it is not in memory. The array must not be modified.
+     */
+    public byte[] get(long fileId, int chunk) {
+        return chunks.get(key(fileId, chunk));
+    }
+
+    /**
+     * Adds a decompressed chunk.
+     *
+     * @param fileId the catalog node id of the file.
+     * @param chunk the chunk number.
+     * @param data the decompressed data.
+     * @return the chunk in the cache, which is a previously added one if another thread got there first.
+     */
+    public byte[] put(long fileId, int chunk, byte[] data) {
+        byte[] existing = chunks.putIfAbsent(key(fileId, chunk), data);
+        return existing != null ? existing : data;
+    }
+
+    /**
+     * Checks whether a chunk is in memory, without counting as an access.
+     *
+     * @param fileId the catalog node id of the file.
+     * @param chunk the chunk number.
+     * @return {@code true} if cached.
+     */
+    public boolean contains(long fileId, int chunk) {
+        return chunks.containsKey(key(fileId, chunk));
+    }
+
+    /**
+     * Drops all chunks.
+     */
+    public void clear() {
+        chunks.clear();
+    }
+
+    /**
+     * Sets the maximum number of chunks kept in memory, {@code 0} disables the cache.
+     *
+     * @param cacheSize the number of chunks.
+     */
+    public void setCacheSize(int cacheSize) {
+        chunks.setCacheSize(cacheSize);
+    }
+
+    public int getCacheSize() {
+        return chunks.getCacheSize();
+    }
+
+    /**
+     * @return the number of chunks in memory.
+     */
+    public int size() {
+        return chunks.size();
+    }
+
+    public long getHitCount() {
+        return chunks.getHitCount();
+    }
+
+    public long getMissCount() {
+        return chunks.getMissCount();
+    }
+}
@@ -0,0 +1,197 @@
+package org.jnode.fs.hfsplus.compression;
+
+import java.io.Closeable;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decompresses chunks of fork compressed files ahead of a sequential reader on a small pool of daemon threads, so
+ * the chunks following the one being read are decompressed in parallel and are found in the {@link ChunkCache}.
+ * <p>
+ * The pool is created on the first read-ahead and its queue is bounded, chunks which can't be queued are simply
+ * decompressed by the reader itself.
+ */
+public final class ChunkReadAhead implements Closeable {
+
+    private static final Logger log = System.getLogger(ChunkReadAhead.class.getName());
+
+    /**
+     * The default number of decompression threads, the number of processors.
+     */
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The system property for the number of decompression threads.
+     */
+    public static final String THREADS_PROPERTY = "org.jnode.fs.hfsplus.decompressionThreads";
+
+    /**
+     * The default number of chunks decompressed ahead of a sequential reader.
+     */
+    public static final int DEFAULT_CHUNKS = DEFAULT_THREADS;
+
+    /**
+     * The system property for the number of chunks decompressed ahead of a sequential reader, {@code 0} disables the
+     * read-ahead.
+     */
+    public static final String CHUNKS_PROPERTY = "org.jnode.fs.hfsplus.readAheadChunks";
+
+    private volatile int threads = Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS);
+
+    private volatile int chunks = Integer.getInteger(CHUNKS_PROPERTY, DEFAULT_CHUNKS);
+
+    /** created lazily, guarded by this */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * The chunks queued or being decompressed.
+     */
+    private final Map<Long, Future<byte[]>> pending = new ConcurrentHashMap<>();
+
+    private static Long key(long fileId, int chunk) {
+        return (fileId << 32) | chunk;
+    }
+
+    /**
+     * Queues a chunk for decompression unless it is cached or already queued.
+     *
+     * @param cache the cache the chunk is put into.
+     * @param fileId the catalog node id of the file.
+     * @param chunk the chunk number.
+     * @param decompressor decompresses the chunk.
+     */
+    void submit(ChunkCache cache, long fileId, int chunk, Callable<byte[]> decompressor) {
+        Long key = key(fileId, chunk);
+        if (pending.containsKey(key) || cache.contains(fileId, chunk)) {
+            return;
+        }
+        ThreadPoolExecutor executor = getExecutor();
+        if (executor == null) {
+            return;
+        }
+
+        FutureTask<byte[]> task = new FutureTask<>(() -> {
+            try {
+                return cache.put(fileId, chunk, decompressor.call());
+            } finally {
+                pending.remove(key);
+            }
+        });
+        if (pending.putIfAbsent(key, task) != null) {
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            pending.remove(key, task);
+        }
+    }
+
+    /**
+     * Waits for a chunk queued by {@link #submit}.
+     *
+     * @param fileId the catalog node id of the file.
+     * @param chunk the chunk number.
+     * @return the chunk, or {@code null} if it isn't queued or failed to decompress.
+     */
+    byte[] await(long fileId, int chunk) {
+        Future<byte[]> future = pending.get(key(fileId, chunk));
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            log.log(Level.DEBUG, "read-ahead of chunk " + chunk + " failed: " + e.getCause());
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null && threads > 0) {
+            AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(threads * 4), r -> {
+                    Thread thread = new Thread(r, "hfsplus-decompress-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Sets the number of decompression threads, {@code 0} disables the read-ahead.
+     *
+     * @param threads the number of threads.
+     */
+    public synchronized void setThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("threads: " + threads);
+        }
+        this.threads = threads;
+        if (executor != null) {
+            if (threads == 0) {
+                executor.shutdown();
+                executor = null;
+            } else if (threads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            } else {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of chunks decompressed ahead of a sequential reader, {@code 0} disables the read-ahead.
+     *
+     * @param chunks the number of chunks.
+     */
+    public void setChunks(int chunks) {
+        if (chunks < 0) {
+            throw new IllegalArgumentException("chunks: " + chunks);
+        }
+        this.chunks = chunks;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Stops the decompression threads, queued chunks are dropped.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pending.values().forEach(future -> future.cancel(false));
+        pending.clear();
+    }
+}
@@ -0,0 +1,125 @@
+package org.jnode.fs.hfsplus.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.jnode.fs.hfsplus.HfsPlusFile;
+import org.jnode.fs.hfsplus.HfsPlusFileSystem;
+import org.jnode.fs.util.FSUtils;
+
+/**
+ * Base of the compressions storing the data in the file's resource fork as independently compressed chunks of
+ * {@link #CHUNK_SIZE} bytes. Decompressed chunks are kept in the {@link ChunkCache} of the file system, and while
+ * the file is read sequentially the following chunks are decompressed in parallel by its {@link ChunkReadAhead}.
+ */
+public abstract class ForkCompression implements HfsPlusCompression {
+
+    /**
+     * The fork compression chunk size.
+     */
+    protected static final int CHUNK_SIZE = 0x10000;
+
+    /**
+     * The HFS+ file.
+     */
+    protected final HfsPlusFile file;
+
+    /**
+     * The file offset following the previous read, a read starting there is sequential.
+     */
+    private volatile long nextOffset;
+
+    /**
+     * Creates a new decompressor.
+     *
+     * @param file the file to read from.
+     */
+    protected ForkCompression(HfsPlusFile file) {
+        this.file = file;
+    }
+
+    @Override
+    public void read(HfsPlusFileSystem fs, long fileOffset, ByteBuffer dest) throws IOException {
+        boolean sequential = fileOffset == nextOffset;
+        nextOffset = fileOffset + dest.remaining();
+
+        while (dest.remaining() > 0) {
+            int chunk = FSUtils.checkedCast(fileOffset / CHUNK_SIZE);
+            int chunkPosition = (int) (fileOffset % CHUNK_SIZE);
+            if (sequential) {
+                readAhead(fs, chunk);
+            }
+            byte[] data = getChunk(fs, chunk);
+            if (chunkPosition >= data.length) {
+                throw new IOException("Offset " + fileOffset + " is past the decompressed data of chunk " + chunk);
+            }
+
+            int copySize = Math.min(dest.remaining(), data.length - chunkPosition);
+            dest.put(data, chunkPosition, copySize);
+
+            fileOffset += copySize;
+            // a read crossing chunks is sequential from here on
+            sequential = true;
+        }
+    }
+
+    /**
+     * Gets a decompressed chunk from the cache, waiting for it if it is being read ahead and decompressing it
+     * otherwise.
+     *
+     * @param fs the file system.
+     * @param chunk the chunk number.
+     * @return the decompressed chunk, which must not be modified.
+     * @throws IOException if an error occurs.
+     */
+    protected final byte[] getChunk(HfsPlusFileSystem fs, int chunk) throws IOException {
+        ChunkCache cache = fs.getChunkCache();
+        long fileId = file.getCatalogFile().getFileId().getId();
+        byte[] data = cache.get(fileId, chunk);
+        if (data == null) {
+            data = fs.getChunkReadAhead().await(fileId, chunk);
+        }
+        if (data == null) {
+            data = cache.put(fileId, chunk, decompressChunk(fs, chunk));
+        }
+        return data;
+    }
+
+    /**
+     * Queues the chunks following the one being read for decompression, no more than half the cache holds so
+     * they aren't evicted before being read.
+     */
+    private void readAhead(HfsPlusFileSystem fs, int chunk) throws IOException {
+        ChunkReadAhead readAhead = fs.getChunkReadAhead();
+        ChunkCache cache = fs.getChunkCache();
+        int count = Math.min(readAhead.getChunks(), cache.getCacheSize() / 2);
+        if (count == 0 || readAhead.getThreads() == 0) {
+            return;
+        }
+        long fileId = file.getCatalogFile().getFileId().getId();
+        int last = Math.min(chunk + count, getChunkCount(fs) - 1);
+        for (int next = chunk + 1; next <= last; next++) {
+            int c = next;
+            readAhead.submit(cache, fileId, c, () -> decompressChunk(fs, c));
+        }
+    }
+
+    /**
+     * Gets the number of chunks of the file.
+     *
+     * @param fs the file system.
+     * @return the number of chunks.
+     * @throws IOException if an error occurs.
+     */
+    protected abstract int getChunkCount(HfsPlusFileSystem fs) throws IOException;
+
+    /**
+     * Reads and decompresses a chunk, possibly on a read-ahead thread.
+     *
+     * @param fs the file system.
+     * @param chunk the chunk number.
+     * @return the decompressed data, at most {@link #CHUNK_SIZE} bytes.
+     * @throws IOException if an error occurs.
+     */
+    protected abstract byte[] decompressChunk(HfsPlusFileSystem fs, int chunk) throws IOException;
+}
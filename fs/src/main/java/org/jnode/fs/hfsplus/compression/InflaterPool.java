@@ -0,0 +1,47 @@
+package org.jnode.fs.hfsplus.compression;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.Inflater;
+
+/**
+ * A small pool of {@link Inflater}s. An inflater holds native zlib memory until {@link Inflater#end()} is called,
+ * so they are reset and reused rather than created per chunk, and the ones not fitting in the pool are ended.
+ */
+final class InflaterPool {
+
+    private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors();
+
+    /** guarded by itself */
+    private static final Deque<Inflater> pool = new ArrayDeque<>();
+
+    private InflaterPool() {
+    }
+
+    /**
+     * @return a pooled or new inflater, to be handed back by {@link #release(Inflater)}.
+     */
+    static Inflater acquire() {
+        synchronized (pool) {
+            Inflater inflater = pool.poll();
+            if (inflater != null) {
+                return inflater;
+            }
+        }
+        return new Inflater();
+    }
+
+    /**
+     * @param inflater the inflater to return to the pool.
+     */
+    static void release(Inflater inflater) {
+        inflater.reset();
+        synchronized (pool) {
+            if (pool.size() < MAX_POOLED) {
+                pool.push(inflater);
+                return;
+            }
+        }
+        inflater.end();
+    }
+}
@@ -2,6 +2,7 @@ package org.jnode.fs.hfsplus.compression;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import java.lang.System.Logger.Level;
 import java.lang.System.Logger;
@@ -9,7 +10,6 @@ import org.jnode.fs.hfsplus.HfsPlusFile;
 import org.jnode.fs.hfsplus.HfsPlusFileSystem;
 import org.jnode.fs.hfsplus.attributes.AttributeData;
 import org.jnode.fs.util.FSUtils;
-import org.jnode.util.BigEndian;
 import org.jnode.util.LittleEndian;
 
 /**
@@ -19,18 +19,13 @@ import org.jnode.util.LittleEndian;
  *
  * @author Luke Quinane
  */
-public class LzvnForkCompression implements HfsPlusCompression {
+public class LzvnForkCompression extends ForkCompression {
 
     /**
      * The logger for this class.
      */
     private static final Logger log = System.getLogger(LzvnForkCompression.class.getName());
 
-    /**
-     * The LZVN fork compression chunk size.
-     */
-    private static final int LZVN_FORK_CHUNK_SIZE = 0x10000;
-
     /**
      * The LZVN fork compression chunk workspace size.
      */
@@ -74,9 +69,9 @@ public class LzvnForkCompression implements HfsPlusCompression {
     private static final int LZVN_CASE_TABLE = 127;
 
     /**
-     * The HFS+ file.
+     * The per thread workspace chunks are decoded into before being copied out at their decoded length.
      */
-    private final HfsPlusFile file;
+    private static final ThreadLocal<byte[]> workspace = ThreadLocal.withInitial(() -> new byte[LZVN_FORK_WORKSPACE_SIZE]);
 
     /**
      * The detail of the fork compression if it is being used.
@@ -89,37 +84,36 @@ public class LzvnForkCompression implements HfsPlusCompression {
      * @param file the file to read from.
      */
     public LzvnForkCompression(HfsPlusFile file) {
-        this.file = file;
+        super(file);
     }
 
     @Override
-    public void read(HfsPlusFileSystem fs, long fileOffset, ByteBuffer dest) throws IOException {
-        if (lzvnForkCompressionDetails == null) {
-            lzvnForkCompressionDetails = new LzvnForkCompressionDetails(fs, file.getCatalogFile().getResources());
-        }
-
-        while (dest.remaining() > 0) {
-            int chunk = (int) (fileOffset / LZVN_FORK_CHUNK_SIZE);
-            long chunkOffset = lzvnForkCompressionDetails.getChunkOffset(chunk);
-            long nextChunkOffset = lzvnForkCompressionDetails.getChunkOffset(chunk + 1);
-            long chunkLength = nextChunkOffset - chunkOffset;
-
-            // Read in the compressed chunk
-            ByteBuffer compressed = ByteBuffer.allocate((int) chunkLength);
-            file.getCatalogFile().getResources().read(fs, chunkOffset, compressed);
-
-            // Decompress the chunk
-            ByteBuffer uncompressed = ByteBuffer.allocate(LZVN_FORK_WORKSPACE_SIZE);
-            int decodedLength = lzvnDecode(compressed, uncompressed);
+    protected int getChunkCount(HfsPlusFileSystem fs) throws IOException {
+        return getDetails(fs).getChunkCount();
+    }
 
-            // Copy the data into the destination buffer
-            uncompressed.position((int) fileOffset % LZVN_FORK_CHUNK_SIZE);
-            int copySize = Math.min(dest.remaining(), decodedLength);
-            uncompressed.limit(Math.min(uncompressed.capacity(), uncompressed.position() + copySize));
-            dest.put(uncompressed);
+    @Override
+    protected byte[] decompressChunk(HfsPlusFileSystem fs, int chunk) throws IOException {
+        LzvnForkCompressionDetails details = getDetails(fs);
+        long chunkOffset = details.getChunkOffset(chunk);
+        long nextChunkOffset = details.getChunkOffset(chunk + 1);
+        long chunkLength = nextChunkOffset - chunkOffset;
+
+        // Read in the compressed chunk
+        ByteBuffer compressed = ByteBuffer.allocate((int) chunkLength);
+        file.getCatalogFile().getResources().read(fs, chunkOffset, compressed);
+
+        // Decompress the chunk
+        byte[] uncompressed = workspace.get();
+        int decodedLength = lzvnDecode(compressed, ByteBuffer.wrap(uncompressed));
+        return Arrays.copyOf(uncompressed, Math.min(decodedLength, CHUNK_SIZE));
+    }
 
-            fileOffset += copySize;
+    private synchronized LzvnForkCompressionDetails getDetails(HfsPlusFileSystem fs) throws IOException {
+        if (lzvnForkCompressionDetails == null) {
+            lzvnForkCompressionDetails = new LzvnForkCompressionDetails(fs, file.getCatalogFile().getResources());
         }
+        return lzvnForkCompressionDetails;
     }
 
     /**
@@ -487,9 +481,7 @@ public class LzvnForkCompression implements HfsPlusCompression {
      * @return the switched value.
      */
     private static long ReverseInt64(long value) {
-        byte[] swapBuffer = new byte[8];
-        LittleEndian.setInt64(swapBuffer, 0, value);
-        return BigEndian.getInt64(swapBuffer, 0);
+        return Long.reverseBytes(value);
     }
 
     /**
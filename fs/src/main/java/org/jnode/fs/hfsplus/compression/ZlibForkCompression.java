@@ -2,29 +2,19 @@ package org.jnode.fs.hfsplus.compression;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 import org.jnode.fs.hfsplus.HfsPlusFile;
 import org.jnode.fs.hfsplus.HfsPlusFileSystem;
 import org.jnode.fs.hfsplus.attributes.AttributeData;
-import org.jnode.fs.util.FSUtils;
 
 /**
  * ZLIB compressed data stored off in the file's resource fork.
  *
  * @author Luke Quinane
  */
-public class ZlibForkCompression implements HfsPlusCompression {
-
-    /**
-     * The zlib fork compression chunk size.
-     */
-    private static final int ZLIB_FORK_CHUNK_SIZE = 0x10000;
-
-    /**
-     * The HFS+ file.
-     */
-    private final HfsPlusFile file;
+public class ZlibForkCompression extends ForkCompression {
 
     /**
      * The detail of the fork compression if it is being used.
@@ -37,46 +27,52 @@ public class ZlibForkCompression implements HfsPlusCompression {
      * @param file the file to read from.
      */
     public ZlibForkCompression(HfsPlusFile file) {
-        this.file = file;
+        super(file);
     }
 
     @Override
-    public void read(HfsPlusFileSystem fs, long fileOffset, ByteBuffer dest) throws IOException {
-        if (zlibForkCompressionDetails == null) {
-            zlibForkCompressionDetails = new ZlibForkCompressionDetails(fs, file.getCatalogFile().getResources());
-        }
-
-        while (dest.remaining() > 0) {
-            int chunk = FSUtils.checkedCast(fileOffset / ZLIB_FORK_CHUNK_SIZE);
-            int chunkLength = zlibForkCompressionDetails.getChunkLength(chunk);
-            long chunkOffset = zlibForkCompressionDetails.getChunkOffset(chunk);
-            ByteBuffer compressed = ByteBuffer.allocate(chunkLength);
-            file.getCatalogFile().getResources().read(fs, chunkOffset, compressed);
+    protected int getChunkCount(HfsPlusFileSystem fs) throws IOException {
+        return getDetails(fs).getChunkCount();
+    }
 
-            ByteBuffer uncompressed = ByteBuffer.allocate(ZLIB_FORK_CHUNK_SIZE);
+    @Override
+    protected byte[] decompressChunk(HfsPlusFileSystem fs, int chunk) throws IOException {
+        ZlibForkCompressionDetails details = getDetails(fs);
+        int chunkLength = details.getChunkLength(chunk);
+        long chunkOffset = details.getChunkOffset(chunk);
+        byte[] compressed = new byte[chunkLength];
+        file.getCatalogFile().getResources().read(fs, chunkOffset, ByteBuffer.wrap(compressed));
 
-            if (compressed.array()[0] == (byte) 0xff) {
-                // 0xff seems to be a marker for uncompressed data. Skip this byte any just copy the data out.
-                compressed.position(1);
-                uncompressed.put(compressed);
-            } else {
-                Inflater inflater = new Inflater();
-                inflater.setInput(compressed.array());
+        if (compressed[0] == (byte) 0xff) {
+            // 0xff seems to be a marker for uncompressed data. Skip this byte any just copy the data out.
+            return Arrays.copyOfRange(compressed, 1, chunkLength);
+        }
 
-                try {
-                    inflater.inflate(uncompressed.array());
-                } catch (DataFormatException e) {
-                    throw new IllegalStateException("Error uncompressing data", e);
+        Inflater inflater = InflaterPool.acquire();
+        try {
+            inflater.setInput(compressed);
+            byte[] uncompressed = new byte[CHUNK_SIZE];
+            int length = 0;
+            while (length < CHUNK_SIZE && !inflater.finished()) {
+                int count = inflater.inflate(uncompressed, length, CHUNK_SIZE - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
                 }
+                length += count;
             }
+            return length == CHUNK_SIZE ? uncompressed : Arrays.copyOf(uncompressed, length);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Error uncompressing data", e);
+        } finally {
+            InflaterPool.release(inflater);
+        }
+    }
 
-            int copySize = Math.min(dest.remaining(), uncompressed.remaining());
-            uncompressed.position((int) fileOffset % ZLIB_FORK_CHUNK_SIZE);
-            uncompressed.limit(Math.min(uncompressed.capacity(), uncompressed.position() + dest.remaining()));
-            dest.put(uncompressed);
-
-            fileOffset += copySize;
+    private synchronized ZlibForkCompressionDetails getDetails(HfsPlusFileSystem fs) throws IOException {
+        if (zlibForkCompressionDetails == null) {
+            zlibForkCompressionDetails = new ZlibForkCompressionDetails(fs, file.getCatalogFile().getResources());
         }
+        return zlibForkCompressionDetails;
     }
 
     /**
@@ -34,6 +34,7 @@ import org.jnode.fs.hfsplus.HfsPlusForkData;
 import org.jnode.fs.hfsplus.SuperBlock;
 import org.jnode.fs.hfsplus.tree.BTHeaderRecord;
 import org.jnode.fs.hfsplus.tree.IndexRecord;
+import org.jnode.fs.hfsplus.tree.Node;
 import org.jnode.fs.hfsplus.tree.NodeDescriptor;
 import org.jnode.util.ByteBufferUtils;
 import org.jnode.util.NumberUtils;
@@ -119,15 +120,9 @@ public class Extent {
      */
     public final ExtentDescriptor[] getOverflowExtents(final ExtentKey key, long nodeNumber) throws IOException {
         try {
-            int nodeSize = bthr.getNodeSize();
-            ByteBuffer nodeData = ByteBuffer.allocate(nodeSize);
-            extentFile.read(fs, (nodeNumber * nodeSize), nodeData);
-            byte[] data = nodeData.array();
-            NodeDescriptor nd = new NodeDescriptor(data, 0);
-
-            if (nd.isIndexNode()) {
-                ExtentNode extentNode = new ExtentNode(data, nodeSize);
+            Node<?> node = fs.getNodeCache().getNode(fs, extentFile, bthr, nodeNumber, Extent::parseNode);
 
+            if (node instanceof ExtentNode extentNode) {
                 IndexRecord[] records = extentNode.findAll(key);
                 List<ExtentDescriptor> overflowExtents = new LinkedList<>();
                 for (IndexRecord record : records) {
@@ -136,12 +131,11 @@ public class Extent {
 
                 return overflowExtents.toArray(new ExtentDescriptor[0]);
 
-            } else if (nd.isLeafNode()) {
-                ExtentLeafNode node = new ExtentLeafNode(nodeData.array(), nodeSize);
-                return node.getOverflowExtents(key);
+            } else if (node instanceof ExtentLeafNode leafNode) {
+                return leafNode.getOverflowExtents(key);
 
             } else {
-                log.log(Level.INFO, String.format("Node %d wasn't a leaf or index: %s\n%s", nodeNumber, nd, NumberUtils.hex(data)));
+                log.log(Level.INFO, String.format("Node %d wasn't a leaf or index", nodeNumber));
                 return new ExtentDescriptor[0];
             }
 
@@ -150,4 +144,16 @@ public class Extent {
             throw new IOException(e);
         }
     }
+
+    private static Node<?> parseNode(byte[] nodeData, int nodeSize) {
+        NodeDescriptor nd = new NodeDescriptor(nodeData, 0);
+        if (nd.isIndexNode()) {
+            return new ExtentNode(nodeData, nodeSize);
+        } else if (nd.isLeafNode()) {
+            return new ExtentLeafNode(nodeData, nodeSize);
+        } else {
+            log.log(Level.INFO, String.format("Node wasn't a leaf or index: %s\n%s", nd, NumberUtils.hex(nodeData)));
+            return null;
+        }
+    }
 }
@@ -25,6 +25,7 @@ import org.jnode.util.BigEndian;
 public class BTHeaderRecord {
 
     public static final int KEY_COMPARE_TYPE_CASE_FOLDING = 0xCF;
+    public static final int KEY_COMPARE_TYPE_BINARY = 0xBC;
     /**
      * B-Tree was not closed correctly and need check for consistency.
      */
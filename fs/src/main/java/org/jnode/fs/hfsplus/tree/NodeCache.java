@@ -0,0 +1,165 @@
+/*
+ * $Id$
+ *
+ * Copyright (C) 2003-2015 JNode.org
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public 
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; If not, write to the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jnode.fs.hfsplus.tree;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jnode.fs.hfsplus.HfsPlusFileSystem;
+import org.jnode.fs.hfsplus.HfsPlusForkData;
+import org.jnode.fs.util.LruCache;
+
+/**
+ * A cache of parsed B-tree nodes shared by the catalog, extents overflow and attributes trees of a volume, keyed by
+ * the tree file and the node number.
+ * <p>
+ * The root and the index level below it are pinned since every lookup passes through them, all other nodes are
+ * evicted least recently used first once the cache holds more than its size.
+ */
+public final class NodeCache {
+
+    private static final Logger log = System.getLogger(NodeCache.class.getName());
+
+    /**
+     * The default number of unpinned nodes, can be overridden by the system property {@link #CACHE_SIZE_PROPERTY}.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /**
+     * The system property for the number of unpinned nodes kept in memory.
+     */
+    public static final String CACHE_SIZE_PROPERTY = "org.jnode.fs.hfsplus.nodeCacheSize";
+
+    /**
+     * Parses a node read from a tree file.
+     */
+    @FunctionalInterface
+    public interface NodeFactory {
+
+        /**
+         * @param nodeData the node data.
+         * @param nodeSize the node size.
+         * @return the node, or {@code null} if it is neither an index nor a leaf node, which is not cached.
+         */
+        Node<?> create(byte[] nodeData, int nodeSize);
+    }
+
+    /**
+     * The upper index levels, never evicted.
+     */
+    private final Map<Long, Node<?>> pinned = new ConcurrentHashMap<>();
+
+    /**
+     * Everything else, no I/O is done while holding its lock.
+     */
+    private final LruCache<Long, Node<?>> nodes =
+        new LruCache<>(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+
+    /**
+     * The hits on {@link #pinned}, the others are counted by {@link #nodes}.
+     */
+    private final LongAdder pinnedHits = new LongAdder();
+
+    /**
+     * Gets a node, reading and parsing it on a miss.
+     *
+     * @param fs the file system.
+     * @param treeFile the fork of the tree file.
+     * @param header the header record of the tree.
+     * @param nodeNumber the node number.
+     * @param factory parses the node on a miss.
+     * @return the node, or {@code null} if the factory does not handle its kind.
+     * @throws IOException if an error occurs reading the node.
+     */
+    public Node<?> getNode(HfsPlusFileSystem fs, HfsPlusForkData treeFile, BTHeaderRecord header, long nodeNumber,
+                           NodeFactory factory) throws IOException {
+
+        Long key = (treeFile.getCatalogNodeId().getId() << 32) | nodeNumber;
+
+        Node<?> node = pinned.get(key);
+        if (node != null) {
+            pinnedHits.increment();
+            return node;
+        }
+        node = nodes.get(key);
+        if (node != null) {
+            return node;
+        }
+
+        int nodeSize = header.getNodeSize();
+        ByteBuffer nodeData = ByteBuffer.allocate(nodeSize);
+        treeFile.read(fs, nodeNumber * nodeSize, nodeData);
+        node = factory.create(nodeData.array(), nodeSize);
+        if (node == null) {
+            return null;
+        }
+
+        NodeDescriptor descriptor = node.getNodeDescriptor();
+        if (descriptor.isIndexNode() && descriptor.getHeight() >= header.getTreeDepth() - 1) {
+            log.log(Level.DEBUG, "pinning node " + nodeNumber + " of tree " + treeFile.getCatalogNodeId());
+            Node<?> existing = pinned.putIfAbsent(key, node);
+            return existing != null ? existing : node;
+        }
+
+        Node<?> existing = nodes.putIfAbsent(key, node);
+        return existing != null ? existing : node;
+    }
+
+    /**
+     * Drops all nodes, e.g. after a tree has been written.
+     */
+    public void clear() {
+        pinned.clear();
+        nodes.clear();
+    }
+
+    /**
+     * Sets the maximum number of unpinned nodes kept in memory, {@code 0} caches only the pinned levels.
+     *
+     * @param cacheSize the number of nodes.
+     */
+    public void setCacheSize(int cacheSize) {
+        nodes.setCacheSize(cacheSize);
+    }
+
+    public int getCacheSize() {
+        return nodes.getCacheSize();
+    }
+
+    /**
+     * @return the number of nodes in memory, pinned ones included.
+     */
+    public int size() {
+        return nodes.size() + pinned.size();
+    }
+
+    public long getHitCount() {
+        return pinnedHits.sum() + nodes.getHitCount();
+    }
+
+    public long getMissCount() {
+        return nodes.getMissCount();
+    }
+}
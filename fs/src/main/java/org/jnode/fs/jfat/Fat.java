@@ -25,6 +25,7 @@ import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.BitSet;
 
 import org.jnode.driver.block.BlockDeviceAPI;
 import org.jnode.fs.FileSystemException;
@@ -46,6 +47,19 @@ public abstract class Fat {
 
     private int lastfree;
 
+    /**
+     * The bytes of the fat read at once while building the free cluster map, a multiple of the 12 bytes holding
+     * whole fat12, fat16 and fat32 entries.
+     */
+    private static final int FREE_MAP_CHUNK = 12 * 4096;
+
+    /**
+     * The free clusters, built from the fat on first use and kept in sync by {@link #set}.
+     */
+    private BitSet freeMap;
+
+    private int freeCount;
+
     private final ByteBuffer clearbuf;
 
     protected Fat(BootSector bs, BlockDeviceAPI api) {
@@ -55,7 +69,7 @@ public abstract class Fat {
         /*
          * create a suitable cache
          */
-        cache = new FatCache(this, 8192, 512);
+        cache = new FatCache(this, 512);
 
         /*
          * set last-free
@@ -97,6 +111,13 @@ public abstract class Fat {
         return api;
     }
 
+    /**
+     * @return the cache of the fat sectors.
+     */
+    public final FatCache getCache() {
+        return cache;
+    }
+
     public final int getClusterSize() {
         return getBootSector().getBytesPerSector() * getBootSector().getSectorsPerCluster();
     }
@@ -137,26 +158,53 @@ public abstract class Fat {
     }
 
     public void readCluster(int cluster, int offset, ByteBuffer dst) throws IOException {
+        readClusters(cluster, 1, offset, dst);
+    }
+
+    /**
+     * Reads from a run of consecutive clusters with a single device read, the clusters of a run are contiguous
+     * in the data area.
+     *
+     * @param cluster the first cluster of the run.
+     * @param count the number of clusters in the run.
+     * @param offset the offset in the first cluster.
+     * @param dst the buffer to read into, at most the rest of the run.
+     * @throws IOException if an error occurs.
+     */
+    public void readClusters(int cluster, int count, int offset, ByteBuffer dst) throws IOException {
         if (offset < 0) {
             throw new IllegalArgumentException("offset<0");
         }
-logger.log(Logger.Level.TRACE, "cluster: " + cluster);
-        if ((offset + dst.remaining()) > getClusterSize()) {
-            throw new IllegalArgumentException("length[" + (offset + dst.remaining()) + "] " +
-                "exceed clusterSize[" + getClusterSize() + "]");
+logger.log(Logger.Level.TRACE, "cluster: " + cluster + ", count: " + count);
+        if ((offset + (long) dst.remaining()) > (long) count * getClusterSize()) {
+            throw new IllegalArgumentException("length[" + (offset + (long) dst.remaining()) + "] " +
+                "exceed clusterSize[" + getClusterSize() + "] * count[" + count + "]");
         }
 
         getApi().read(getClusterPosition(cluster) + offset, dst);
     }
 
     public void writeCluster(int cluster, int offset, ByteBuffer src) throws IOException {
+        writeClusters(cluster, 1, offset, src);
+    }
+
+    /**
+     * Writes to a run of consecutive clusters with a single device write.
+     *
+     * @param cluster the first cluster of the run.
+     * @param count the number of clusters in the run.
+     * @param offset the offset in the first cluster.
+     * @param src the buffer to write from, at most the rest of the run.
+     * @throws IOException if an error occurs.
+     */
+    public void writeClusters(int cluster, int count, int offset, ByteBuffer src) throws IOException {
         if (offset < 0) {
             throw new IllegalArgumentException("offset<0");
         }
 
-        if ((offset + src.remaining()) > getClusterSize()) {
-            throw new IllegalArgumentException("length[" + (offset + src.remaining()) + "] " +
-                "exceed clusterSize[" + getClusterSize() + "]");
+        if ((offset + (long) src.remaining()) > (long) count * getClusterSize()) {
+            throw new IllegalArgumentException("length[" + (offset + (long) src.remaining()) + "] " +
+                "exceed clusterSize[" + getClusterSize() + "] * count[" + count + "]");
         }
 
         getApi().write(getClusterPosition(cluster) + offset, src);
@@ -247,7 +295,37 @@ logger.log(Level.TRACE, "sector: " + (long) (index - firstCluster()) * (long) bs
 
     public abstract int get(int index) throws IOException;
 
-    public abstract int set(int index, int element) throws IOException;
+    /**
+     * Decodes an entry from raw fat data.
+     *
+     * @param data the fat data.
+     * @param offset the offset of the entry in data.
+     * @param index the entry index.
+     * @return the entry value.
+     */
+    protected abstract int get(byte[] data, int offset, int index);
+
+    /**
+     * Sets an entry and keeps the free cluster map in sync. Both are done holding this fat, otherwise a free map
+     * built in between would already contain the new entry and it would be counted twice.
+     *
+     * @param index the entry index.
+     * @param element the new entry value.
+     * @return the old entry value.
+     * @throws IOException if an error occurs.
+     */
+    public final synchronized int set(int index, int element) throws IOException {
+        int old = setEntry(index, element);
+
+        if (freeMap != null && index >= firstCluster() && isFree(old) != isFree(element)) {
+            freeMap.set(index, isFree(element));
+            freeCount += isFree(element) ? 1 : -1;
+        }
+
+        return old;
+    }
+
+    protected abstract int setEntry(int index, int element) throws IOException;
 
     public void flush() throws IOException {
         cache.flush();
@@ -269,14 +347,77 @@ logger.log(Level.TRACE, "sector: " + (long) (index - firstCluster()) * (long) bs
         lastfree = firstCluster();
     }
 
-    public final int freeEntries() throws IOException {
-        int count = 0;
-        for (int i = 0; i < size(); i++) {
-            if (isFreeEntry(i)) {
-                count++;
+    public final synchronized int freeEntries() throws IOException {
+        getFreeMap();
+        return freeCount;
+    }
+
+    /**
+     * Gets the free clusters, reading the whole fat the first time.
+     */
+    private synchronized BitSet getFreeMap() throws IOException {
+        if (freeMap == null) {
+            // the entries set so far must be on the device
+            flush();
+
+            BitSet map = new BitSet(size());
+            byte[] data = new byte[FREE_MAP_CHUNK];
+            int chunkEntries = (int) (2L * FREE_MAP_CHUNK / offset(2));
+            long first = getFirst(0);
+            long end = first + getBootSector().getSectorsPerFat() * getBootSector().getBytesPerSector();
+
+            for (int base = 0; base < size() && first + offset(base) < end; base += chunkEntries) {
+                long position = first + offset(base);
+                getApi().read(position, ByteBuffer.wrap(data, 0, (int) Math.min(data.length, end - position)));
+
+                int last = Math.min(size(), base + chunkEntries);
+                for (int i = Math.max(base, firstCluster()); i < last; i++) {
+                    if (isFree(get(data, (int) offset(i - base), i))) {
+                        map.set(i);
+                    }
+                }
+            }
+
+            freeCount = map.cardinality();
+            freeMap = map;
+logger.log(Level.DEBUG, "free clusters: " + freeCount + "/" + (size() - firstCluster()));
+        }
+        return freeMap;
+    }
+
+    /**
+     * Finds the next free cluster, wrapping around to the first cluster.
+     *
+     * @param from the cluster to start from.
+     * @return the free cluster, or -1 if there is none.
+     * @throws IOException if an error occurs.
+     */
+    public final synchronized int nextFree(int from) throws IOException {
+        BitSet map = getFreeMap();
+        int i = (from < size()) ? map.nextSetBit(Math.max(from, firstCluster())) : -1;
+        return (i >= 0) ? i : map.nextSetBit(firstCluster());
+    }
+
+    /**
+     * Finds a run of consecutive free clusters, starting from the last free cluster and wrapping around to the
+     * first cluster.
+     *
+     * @param n the number of clusters.
+     * @return the first cluster of the run, or -1 if there is none.
+     * @throws IOException if an error occurs.
+     */
+    public final synchronized int findFreeRun(int n) throws IOException {
+        BitSet map = getFreeMap();
+        for (int from : new int[] {getLastFree(), firstCluster()}) {
+            for (int i = map.nextSetBit(from); i >= 0; ) {
+                int end = map.nextClearBit(i);
+                if (end - i >= n) {
+                    return i;
+                }
+                i = map.nextSetBit(end);
             }
         }
-        return count;
+        return -1;
     }
 
     public final boolean isFat32() {
@@ -22,6 +22,7 @@ package org.jnode.fs.jfat;
 
 import java.io.IOException;
 import org.jnode.driver.block.BlockDeviceAPI;
+import org.jnode.util.LittleEndian;
 
 /**
  * A FAT implementation for FAT-12.
@@ -53,7 +54,20 @@ public class Fat12 extends Fat {
     }
 
     @Override
-    public int set(int index, int element) throws IOException {
+    protected int get(byte[] data, int offset, int index) {
+        int value = LittleEndian.getUInt16(data, offset);
+
+        if ((index % 2) == 0) {
+            value = value & 0xFFF;
+        } else {
+            value = value >> 4;
+        }
+
+        return value;
+    }
+
+    @Override
+    protected int setEntry(int index, int element) throws IOException {
         throw new UnsupportedOperationException("Can't write to FAT-12 yet");
     }
 
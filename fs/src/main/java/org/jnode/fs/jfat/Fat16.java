@@ -25,6 +25,7 @@ import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 
 import org.jnode.driver.block.BlockDeviceAPI;
+import org.jnode.util.LittleEndian;
 
 import static java.lang.System.getLogger;
 
@@ -53,7 +54,12 @@ public class Fat16 extends Fat {
     }
 
     @Override
-    public int set(int index, int element) throws IOException {
+    protected int get(byte[] data, int offset, int index) {
+        return LittleEndian.getUInt16(data, offset);
+    }
+
+    @Override
+    protected int setEntry(int index, int element) throws IOException {
         long old = getUInt16(index);
 
         setInt16(index, element & 0xffff);
@@ -23,6 +23,7 @@ package org.jnode.fs.jfat;
 import java.io.IOException;
 
 import org.jnode.driver.block.BlockDeviceAPI;
+import org.jnode.util.LittleEndian;
 
 /**
  * @author gvt
@@ -48,7 +49,12 @@ public class Fat32 extends Fat {
     }
 
     @Override
-    public int set(int index, int element) throws IOException {
+    protected int get(byte[] data, int offset, int index) {
+        return (int) (LittleEndian.getUInt32(data, offset) & 0x0FFFFFFF);
+    }
+
+    @Override
+    protected int setEntry(int index, int element) throws IOException {
         long old = getUInt32(index);
 
         setInt32(index, (int) ((element & 0x0FFFFFFF) | (old & 0xF0000000)));
@@ -21,17 +21,34 @@
 package org.jnode.fs.jfat;
 
 import java.io.IOException;
-import java.io.Serial;
 import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Stack;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 import org.jnode.driver.block.BlockDeviceAPI;
 import org.jnode.util.LittleEndian;
 
+/**
+ * A byte budgeted LRU cache of fat sectors.
+ * <p>
+ * Any number of readers may get entries at the same time while a writer setting entries or flushing has the
+ * cache to itself. The elements are split into {@link #STRIPES} independently locked LRU stripes, each getting an
+ * equal share of the budget, so readers of different sectors do not contend. Dirty elements are written to all
+ * the fats when they are flushed or evicted.
+ */
 public class FatCache {
 
-    private final float loadFactor = 0.75f;
+    /** the default budget in bytes, can be overridden by the system property {@link #SIZE_PROPERTY} */
+    public static final long DEFAULT_MAX_BYTES = 8192 * 512;
+
+    /** system property for the default budget in bytes */
+    public static final String SIZE_PROPERTY = "org.jnode.fs.jfat.fatCacheSize";
+
+    /** the number of lock stripes, must be a power of 2 */
+    static final int STRIPES = 16;
 
     private final Fat fat;
     private final BlockDeviceAPI api;
@@ -40,116 +57,167 @@ public class FatCache {
 
     private final int elementSize;
 
-    private final CacheMap map;
+    /** shared by the readers of entries, exclusive for the writers */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
-    private long access = 0;
-    private long hit = 0;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongAdder access = new LongAdder();
+    private final LongAdder hit = new LongAdder();
+
+    private volatile long maxBytes;
+
+    /** one LRU segment, guarded by itself */
+    private static final class Stripe {
+        final LinkedHashMap<Long, CacheElement> elements = new LinkedHashMap<>(16, 0.75f, true);
+    }
 
-    public FatCache(Fat fat, int cacheSize, int elementSize) {
+    /**
+     * Creates a cache with the default budget.
+     */
+    public FatCache(Fat fat, int elementSize) {
+        this(fat, Long.getLong(SIZE_PROPERTY, DEFAULT_MAX_BYTES), elementSize);
+    }
+
+    public FatCache(Fat fat, long maxBytes, int elementSize) {
         this.fat = fat;
         this.api = fat.getApi();
         this.fatSize =
             fat.getBootSector().getSectorsPerFat() * fat.getBootSector().getBytesPerSector();
         this.nrFats = fat.getBootSector().getNrFats();
         this.elementSize = elementSize;
+        this.maxBytes = maxBytes;
 
-        // allocate the LinkedHashMap
-        // that do the dirty LRU job
-        this.map = new CacheMap(cacheSize);
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe();
     }
 
+    /**
+     * @return the number of elements the budget holds
+     */
     public int getCacheSize() {
-        return map.getCacheSize();
+        return (int) Math.max(STRIPES, maxBytes / elementSize);
     }
 
     public int usedEntries() {
-        return map.usedEntries();
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.elements.size();
+            }
+        }
+        return size;
     }
 
     public int freeEntries() {
-        return map.freeEntries();
+        return Math.max(0, getCacheSize() - usedEntries());
     }
 
-    private CacheElement put(long address) throws IOException {
-        // get a CacheElement from the stack object pool
-        CacheElement c = map.pop();
-
-        // read the element from the device
-        c.read(address);
-
-        // and insert the element into the LinkedHashMap
-        map.put(c);
+    /**
+     * Changes the budget, elements exceeding it are evicted on the next miss of their stripe.
+     *
+     * @param maxBytes the budget in bytes
+     */
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes: " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
 
-        // stack "must" contains at least one entry the placeholder ... so let
-        // it throw an exception if this is false
-        CacheElement e = map.peek();
-        // if an element was discarded from the LRU cache
-        // now we can free it ... this will send the element
-        // to storage if is marked as dirty
-        if (!e.isFree())
-            e.free();
+    public long getMaxBytes() {
+        return maxBytes;
+    }
 
-        return c;
+    private Stripe stripeOf(long address) {
+        return stripes[(int) (address ^ (address >>> 32)) & (STRIPES - 1)];
     }
 
+    /**
+     * Gets an element, reading it on a miss. The caller holds the read or the write lock.
+     */
     private CacheElement get(long address) throws IOException {
-        CacheElement c = map.get(address);
-        access++;
-
-        // if the cache contains the element just return it, we have a cache hit
-        // this will update the LRU order: the LinkedHashMap will make it the
-        // newest
-        //
-        // the cache element cannot be null so we can avoid to call
-        // containsKey();
-        if (c != null)
-            hit++;
-            // otherwise put a new element inside the cache
-            // possibly flushing and discarding the eldest element
-        else
-            c = put(address);
+        access.increment();
+
+        Stripe stripe = stripeOf(address);
+        synchronized (stripe) {
+            CacheElement c = stripe.elements.get(address);
+            if (c != null) {
+                hit.increment();
+                return c;
+            }
 
-        return c;
+            c = new CacheElement(address);
+            c.read();
+            stripe.elements.put(address, c);
+
+            // the evicted elements are written while the stripe is still locked, otherwise another reader missing
+            // one of them could read it back from the device before it is written
+            int stripeMax = Math.max(1, getCacheSize() / STRIPES);
+            for (Iterator<CacheElement> i = stripe.elements.values().iterator();
+                 stripe.elements.size() > stripeMax && i.hasNext();) {
+                CacheElement eldest = i.next();
+                if (eldest == c)
+                    continue;
+                eldest.flush();
+                i.remove();
+            }
+
+            return c;
+        }
     }
 
     private long getUInt16(long offset) throws IOException {
         long addr = offset / elementSize;
         int ofs = (int) (offset % elementSize);
 
-        byte[] data = get(addr).getData();
-        return LittleEndian.getUInt16(data, ofs);
+        lock.readLock().lock();
+        try {
+            byte[] data = get(addr).getData();
+            return LittleEndian.getUInt16(data, ofs);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     private long getUInt32(long offset) throws IOException {
         long addr = offset / elementSize;
         int ofs = (int) (offset % elementSize);
 
-        byte[] data = get(addr).getData();
-        return LittleEndian.getUInt32(data, ofs);
+        lock.readLock().lock();
+        try {
+            byte[] data = get(addr).getData();
+            return LittleEndian.getUInt32(data, ofs);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     private void setInt16(long offset, int value) throws IOException {
         long addr = offset / elementSize;
         int ofs = (int) (offset % elementSize);
 
-        CacheElement c = get(addr);
-        byte[] data = c.getData();
-
-        LittleEndian.setInt16(data, ofs, value);
-
-        c.setDirty();
+        lock.writeLock().lock();
+        try {
+            CacheElement c = get(addr);
+            LittleEndian.setInt16(c.getData(), ofs, value);
+            c.setDirty();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     private void setInt32(long offset, int value) throws IOException {
         long addr = offset / elementSize;
         int ofs = (int) (offset % elementSize);
 
-        CacheElement c = get(addr);
-        byte[] data = c.getData();
-
-        LittleEndian.setInt32(data, ofs, value);
-
-        c.setDirty();
+        lock.writeLock().lock();
+        try {
+            CacheElement c = get(addr);
+            LittleEndian.setInt32(c.getData(), ofs, value);
+            c.setDirty();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public long getUInt16(int index) throws IOException {
@@ -169,201 +237,97 @@ public class FatCache {
     }
 
     public void flush(long address) throws IOException {
-        CacheElement c = map.get(address);
-        if (c != null)
-            c.flush();
+        lock.writeLock().lock();
+        try {
+            Stripe stripe = stripeOf(address);
+            CacheElement c;
+            synchronized (stripe) {
+                c = stripe.elements.get(address);
+            }
+            if (c != null)
+                c.flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public void flush() throws IOException {
-        for (CacheElement c : map.values()) {
-            c.flush();
+        lock.writeLock().lock();
+        try {
+            for (Stripe stripe : stripes) {
+                for (CacheElement c : stripe.elements.values())
+                    c.flush();
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public long getHit() {
-        return hit;
+        return hit.sum();
     }
 
     public long getAccess() {
-        return access;
+        return access.sum();
     }
 
     public double getRatio() {
+        long access = getAccess();
         if (access > 0)
-            return ((double) hit / (double) access);
+            return ((double) getHit() / (double) access);
         else
             return 0.0f;
     }
 
     public String flushOrder() {
-        return map.flushOrder();
-    }
-
-    public String toString() {
         StrWriter out = new StrWriter();
 
-        out.print(map);
-        out.println("size=" + getCacheSize() + " used=" + usedEntries() + " free=" + freeEntries());
-
-        return out.toString();
-    }
-
-    private class CacheMap extends LinkedHashMap<CacheKey, CacheElement> {
-        @Serial
-        private static final long serialVersionUID = 1L;
-        private final int cacheSize;
-        private final CacheKey key = new CacheKey();
-        private final Stack<CacheElement> free = new Stack<>();
-
-        private CacheMap(int cacheSize) {
-            super((int) Math.ceil(cacheSize / loadFactor) + 1, loadFactor, true);
-            this.cacheSize = cacheSize;
-
-            for (int i = 0; i < cacheSize + 1; i++)
-                free.push(new CacheElement());
-        }
-
-        private int getCacheSize() {
-            return cacheSize;
-        }
-
-        private int usedEntries() {
-            return size();
-        }
-
-        private int freeEntries() {
-            return (free.size() - 1);
-        }
-
-        private CacheElement peek() {
-            return free.peek();
-        }
-
-        private CacheElement push(CacheElement c) {
-            return free.push(c);
-        }
-
-        private CacheElement pop() {
-            return free.pop();
-        }
-
-        private CacheElement get(long address) {
-            key.set(address);
-            return get(key);
-        }
-
-        private CacheElement put(CacheElement c) {
-            return put(c.getAddress(), c);
-        }
-
-        /**
-         * discard the eldest element when the cache is full
-         */
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheElement> eldest) {
-            boolean remove = (size() > cacheSize);
-
-            // before going to discard the eldest push it back on the stacked
-            // object pool
-            if (remove)
-                push(eldest.getValue());
-
-            return remove;
-        }
-
-        public String flushOrder() {
-            StrWriter out = new StrWriter();
-
-            for (CacheElement c : values()) {
-                if (c.isDirty())
-                    out.print("<" + c.getAddress().get() + ">");
+        lock.readLock().lock();
+        try {
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    for (CacheElement c : stripe.elements.values()) {
+                        if (c.isDirty())
+                            out.print("<" + c.getAddress() + ">");
+                    }
+                }
             }
-
-            return out.toString();
+        } finally {
+            lock.readLock().unlock();
         }
 
-        public String toString() {
-            StrWriter out = new StrWriter();
-
-            for (CacheElement c : values())
-                out.println(c);
-
-            return out.toString();
-        }
+        return out.toString();
     }
 
-    /**
-     * Here we need to "wrap" a long because Java Long wrapper is an "immutable"
-     * type
-     */
-    private static class CacheKey {
-        private static final long FREE = -1;
-
-        private long key;
-
-        private CacheKey(long key) {
-            this.key = key;
-        }
-
-        private CacheKey() {
-            free();
-        }
-
-        private void free() {
-            key = FREE;
-        }
-
-        private boolean isFree() {
-            return (key == FREE);
-        }
-
-        private long get() {
-            return key;
-        }
-
-        private void set(long value) {
-            key = value;
-        }
-
-        public int hashCode() {
-            return Long.hashCode(key);
-        }
+    public String toString() {
+        StrWriter out = new StrWriter();
 
-        public boolean equals(Object obj) {
-            return obj instanceof CacheKey && key == ((CacheKey) obj).get();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (CacheElement c : stripe.elements.values())
+                    out.println(c);
+            }
         }
+        out.println("size=" + getCacheSize() + " used=" + usedEntries() + " free=" + freeEntries());
 
-        public String toString() {
-            return String.valueOf(key);
-        }
+        return out.toString();
     }
 
     private class CacheElement {
-        /**
-         * CacheKey element is allocated and its reference is stored here to
-         * avoid to allocate new CacheKey objects at runtime
-         * <p/>
-         * In this way .. just one global key will be enough to access
-         * CacheElements
-         */
-        private boolean dirty;
-        private final CacheKey address;
+        private volatile boolean dirty;
+        private final long address;
         private final ByteBuffer elem;
 
-        private CacheElement() {
+        private CacheElement(long address) {
             this.dirty = false;
-            this.address = new CacheKey();
+            this.address = address;
 
             // FAT-12 reads in two byte chunks so add an extra element to prevent an array index out of bounds exception
             // when reading in the last element
             this.elem = ByteBuffer.wrap(new byte[elementSize + 1]);
         }
 
-        private boolean isFree() {
-            return address.isFree();
-        }
-
-        private CacheKey getAddress() {
+        private long getAddress() {
             return address;
         }
 
@@ -376,28 +340,17 @@ public class FatCache {
          * availability we have to correctly handle the exception to be sure that
          * if we have at least a correct fat we get it - gvt
          */
-        private void read(long address) throws IOException {
-            if (!isFree())
-                throw new IllegalArgumentException("cannot read a busy element");
-
-            this.address.set(address);
-            elem.clear();
-            api.read(address * elementSize, elem);
-            elem.clear();
+        private void read() throws IOException {
+            ByteBuffer buf = ByteBuffer.wrap(elem.array());
+            api.read(address * elementSize, buf);
         }
 
         private void write() throws IOException {
-            if (isFree())
-                throw new IllegalArgumentException("cannot write a free element");
-
-            elem.clear();
-
-            long addr = address.get() * elementSize;
+            long addr = address * elementSize;
 
             for (int i = 0; i < nrFats; i++) {
-                api.write(addr, elem);
+                api.write(addr, ByteBuffer.wrap(elem.array(), 0, elementSize + 1));
                 addr += fatSize;
-                elem.clear();
             }
         }
 
@@ -409,24 +362,17 @@ public class FatCache {
             dirty = true;
         }
 
-        private void flush() throws IOException {
+        private synchronized void flush() throws IOException {
             if (isDirty()) {
                 write();
                 dirty = false;
             }
         }
 
-        private void free() throws IOException {
-            if (isFree())
-                throw new IllegalArgumentException("cannot free a free element");
-            flush();
-            address.free();
-        }
-
         public String toString() {
             StrWriter out = new StrWriter();
 
-            out.print("address=" + address.get() + " dirty=" + dirty);
+            out.print("address=" + address + " dirty=" + dirty);
 
             return out.toString();
         }
@@ -23,6 +23,7 @@ package org.jnode.fs.jfat;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 import java.lang.System.Logger.Level;
@@ -44,14 +45,18 @@ public class FatChain {
 
     private final boolean dolog = false;
 
-    private final ChainPosition position;
     private final ChainIterator iterator;
 
+    /**
+     * the chain as runs of consecutive clusters, built on first use and kept
+     * in sync when clusters are appended or freed
+     */
+    private volatile ClusterRuns runs;
+
     public FatChain(FatFileSystem fs, int startEntry) {
         this.fs = fs;
         this.fat = fs.getFat();
 
-        this.position = new ChainPosition();
         this.iterator = listIterator();
 
         setStartCluster(startEntry);
@@ -76,9 +81,9 @@ public class FatChain {
             throw new IllegalArgumentException("illegal head: " + value);
 
         head = value;
+        runs = null;
 
         iterator.reset();
-        position.setPosition(0);
 
         dirty = true;
     }
@@ -99,25 +104,57 @@ public class FatChain {
         return new ChainIterator(index);
     }
 
-    private int getEndCluster() throws IOException {
-        int last = 0;
-        // not cheap: we have to follow the whole chain to get the last cluster
-        // value
-        for (ChainIterator i = listIterator(0); i.hasNext(); last = i.next())
-            ;
+    /**
+     * follows the whole chain only the first time, later calls and the
+     * appended or freed clusters use the runs
+     */
+    private ClusterRuns getRuns() throws IOException {
+        if (runs == null) {
+            ClusterRuns r = new ClusterRuns();
+            for (ChainIterator i = new ChainIterator(); i.hasNext();)
+                r.add(i.next());
+            runs = r;
+        }
+        return runs;
+    }
+
+    /**
+     * links the newly allocated chain starting at start after cluster, the
+     * end of this chain, or makes it this chain when it is empty
+     */
+    private void appendChain(ChainIterator i, int cluster, int start) throws IOException {
+        if (cluster != 0) {
+            fat.set(cluster, start);
+            if (i != null)
+                i.appendChain(start);
+            if (runs != null) {
+                for (int l = start; fat.hasNext(l); l = fat.get(l))
+                    runs.add(l);
+            }
+        } else {
+            setStartCluster(start);
+        }
+    }
 
-        return last;
+    private int getEndCluster() throws IOException {
+        ClusterRuns r = getRuns();
+        return r.size() == 0 ? 0 : r.get(r.size() - 1);
     }
 
     public int size() throws IOException {
-        int count = 0;
-        // not cheap: we have to follow the whole chain to know the chain size
-        for (ChainIterator i = listIterator(0); i.hasNext(); i.next())
-            count++;
-
-        return count;
+        return getRuns().size();
     }
 
+    /**
+     * allocates a chain of n clusters, one run of free clusters when there is
+     * one and the next free clusters otherwise
+     * <p>
+     * the first m clusters, the gap before the data, are zeroed, as is the
+     * part before offset of the cluster following them, and the last cluster
+     * when zero is set
+     *
+     * @return the first cluster of the chain
+     */
     private int allocateTail(int n, int m, int offset, boolean zero) throws IOException {
         if (n <= 0)
             throw new IllegalArgumentException("n<=0");
@@ -131,101 +168,46 @@ public class FatChain {
         if (dolog)
             mylog("n[" + n + "] m[" + m + "] offset[" + offset + "]");
 
-        final int last;
-        int i, found = 0, l = 0;
-        int k = (offset > 0) ? 2 : 1;
-
-        for (i = fat.getLastFree(); i < fat.size(); i++) {
-            if (fat.isFreeEntry(i)) {
-                l = i;
-                found++;
-            }
-            if (found == n)
-                break;
-        }
-
-        if (found < n) {
-            for (i = fat.firstCluster(); i < fat.getLastFree(); i++) {
-                if (fat.isFreeEntry(i))
-                    found++;
-                if (found == n)
-                    break;
-            }
-        }
-
-        if (found < n)
+        if (fat.freeEntries() < n)
             throw new FileSystemFullException("no free clusters");
 
-        last = l;
+        int first = fat.findFreeRun(n);
+        if (first < 0)
+            first = fat.nextFree(fat.getLastFree());
 
         if (dolog)
-            mylog("found[" + found + "] last[" + last + "]");
+            mylog("first[" + first + "]");
 
-        fat.set(last, fat.eofChain());
-        if (dolog)
-            mylog(n + "\t|allo|\t" + last + " " + fat.eofChain());
+        int prev = 0;
+        for (int j = 0; j < n; j++) {
+            int l = (j == 0) ? first : fat.nextFree(prev + 1);
 
-        if (zero) {
-            if (dolog)
-                mylog(n + "\t|ZERO|\t" + last + " " + fat.eofChain());
-            fat.clearCluster(last);
-        }
-
-        //
-        found = 0;
-        l = last;
-        i = last;
-        //
-        for (; found < (n - m - k); i--) {
-            if (fat.isFreeEntry(i)) {
-                fat.set(i, l);
-                if (dolog)
-                    mylog((n - found - 1) + "\t|allo|\t" + i + " " + l);
-                l = i;
-                found++;
-            }
-        }
-        //
-        if (offset > 0) {
-            for (;; i--) {
-                if (fat.isFreeEntry(i)) {
-                    fat.clearCluster(i, 0, offset);
-                    fat.set(i, l);
-                    if (dolog)
-                        mylog((n - found - 1) + "\t|part|\t" + i + " " + l);
-                    l = i;
-                    found++;
-                    break;
-                }
+            fat.set(l, fat.eofChain());
+            if (prev != 0)
+                fat.set(prev, l);
 
-            }
-        }
-        //
-        for (; found < (n - 1); i--) {
-            if (fat.isFreeEntry(i)) {
-                fat.clearCluster(i);
-                fat.set(i, l);
+            if (j < m || (zero && j == n - 1)) {
+                if (dolog)
+                    mylog(j + "\t|zero|\t" + l);
+                fat.clearCluster(l);
+            } else if (j == m && offset > 0) {
                 if (dolog)
-                    mylog((n - found - 1) + "\t|zero|\t" + i + " " + l);
-                l = i;
-                found++;
+                    mylog(j + "\t|part|\t" + l);
+                fat.clearCluster(l, 0, offset);
+            } else if (dolog) {
+                mylog(j + "\t|allo|\t" + l);
             }
-        }
 
-        //
-        fat.rewindFree();
-        //
-        for (i = last; i < fat.size(); i++) {
-            if (fat.isFreeEntry(i)) {
-                fat.setLastFree(i);
-                break;
-            }
+            prev = l;
         }
 
+        // the next allocation continues after this one
+        fat.setLastFree(prev + 1 < fat.size() ? prev + 1 : fat.firstCluster());
+
         if (dolog)
             mylog("LastFree: " + fat.getLastFree());
 
-        return l;
+        return first;
     }
 
     private int allocateTail(int n, int m, int offset) throws IOException {
@@ -244,13 +226,7 @@ public class FatChain {
             if (dolog)
                 mylog(first + ":" + last);
 
-            if (first != 0)
-                fat.set(first, last);
-            else {
-                if (dolog)
-                    mylog("allocate chain");
-                setStartCluster(last);
-            }
+            appendChain(null, first, last);
         } finally {
             fat.flush();
         }
@@ -275,6 +251,7 @@ public class FatChain {
                 i = listIterator(count - n - 1);
                 int l = i.next();
                 fat.set(l, fat.eofChain());
+                runs.truncate(count - n);
                 if (dolog)
                     mylog(l + ":" + fat.eofChain());
             } else
@@ -323,10 +300,9 @@ public class FatChain {
         if (dst.remaining() == 0)
             return;
 
-        ChainPosition p = position;
-        ChainIterator i = iterator;
-
-        p.setPosition(offset);
+        // readers get their own position, so a chain can be read concurrently
+        ChainPosition p = new ChainPosition(offset);
+        ChainIterator i = new ChainIterator();
 
         try {
             i.setPosition(p.getIndex());
@@ -338,17 +314,18 @@ public class FatChain {
                 size, sz = p.getSize(), ofs = 0) {
 
             int cluster = i.next();
+            int count = 1 + i.skipContiguous(remainingClusters(l, sz, p.getSize()));
 
-            size = Math.min(sz, l);
+            size = (int) Math.min(sz + (long) (count - 1) * p.getSize(), l);
 
             if (dolog)
-                mylog("read " + size + " bytes from cluster " + cluster + " at offset " + ofs);
+                mylog("read " + size + " bytes from " + count + " clusters at " + cluster + " at offset " + ofs);
 
             int limit = dst.limit();
 
             try {
                 dst.limit(dst.position() + size);
-                fat.readCluster(cluster, ofs, dst);
+                fat.readClusters(cluster, count, ofs, dst);
             } finally {
                 dst.limit(limit);
             }
@@ -370,9 +347,8 @@ public class FatChain {
         if (offset < 0)
             throw new IllegalArgumentException("offset<0");
 
-//        ChainPosition p = new ChainPosition(offset);
-        ChainPosition p = position;
-        p.setPosition(offset);
+        // a position of its own, appending to an empty chain resets the shared iterator
+        ChainPosition p = new ChainPosition(offset);
         int clsize = p.getSize();
         int clidx = p.getIndex();
 
@@ -404,13 +380,7 @@ public class FatChain {
 
                 last = allocateTail(n, m, p.getOffset());
 
-                if (cluster != 0) {
-                    fat.set(cluster, last);
-                    i.appendChain(last);
-                } else {
-                    setStartCluster(last);
-                    // i = listIterator (clidx);
-                }
+                appendChain(i, cluster, last);
 
                 // here length is used to decide if we have to zero the data
                 // inside the last cluster tail
@@ -418,6 +388,9 @@ public class FatChain {
 
                 if (ofs != 0)
                     fat.clearCluster(cluster, ofs, clsize);
+
+                // the write starts after the gap just allocated
+                i.setPosition(clidx);
             }
         } finally {
             fat.flush();
@@ -434,36 +407,41 @@ public class FatChain {
                 try {
                     last = allocateTail(n);
 
-                    if (cluster != 0) {
-                        fat.set(cluster, last);
-                        i.appendChain(last);
-                    } else {
-                        setStartCluster(last);
-                        // i = listIterator ( 0 );
-                    }
+                    appendChain(i, cluster, last);
                 } finally {
                     fat.flush();
                 }
             }
 
-            cluster = i.next();
+            int first = i.next();
+            int count = 1 + i.skipContiguous(remainingClusters(l, sz, clsize));
+            // the allocation above appends to the last cluster of the run
+            cluster = first + count - 1;
 
-            size = Math.min(sz, l);
+            size = (int) Math.min(sz + (long) (count - 1) * clsize, l);
 
             if (dolog)
-                mylog("write " + size + " bytes to cluster " + cluster + " at offset " + ofs);
+                mylog("write " + size + " bytes to " + count + " clusters at " + first + " at offset " + ofs);
 
             int limit = src.limit();
 
             try {
                 src.limit(src.position() + size);
-                fat.writeCluster(cluster, ofs, src);
+                fat.writeClusters(first, count, ofs, src);
             } finally {
                 src.limit(limit);
             }
         }
     }
 
+    /**
+     * the number of clusters still needed for length bytes after a first
+     * cluster holding partial bytes of them
+     */
+    private static int remainingClusters(int length, int partial, int clsize) {
+        return (int) ((Math.max(0L, (long) length - partial) + clsize - 1) / clsize);
+    }
+
     /**
      * used when we don't need to zero the data inside the last cluster tail
      */
@@ -472,7 +450,6 @@ public class FatChain {
     }
 
     public long getLength() throws IOException {
-        // not cheap: we have to follow the whole chain to know the chain length
         return (long) size() * fat.getClusterSize();
     }
 
@@ -562,10 +539,6 @@ public class FatChain {
         private int offset;
         private final int size;
 
-        private ChainPosition() {
-            this(0);
-        }
-
         private ChainPosition(long pos) {
             this.size = fat.getClusterSize();
             setPosition(pos);
@@ -601,6 +574,55 @@ public class FatChain {
         }
     }
 
+    /**
+     * runs of consecutive clusters with the chain index each of them starts
+     * at, so the cluster at an index is found by binary search
+     */
+    private static class ClusterRuns {
+        /** the first cluster of each run */
+        private int[] starts = new int[8];
+        /** the chain index of the first cluster of each run, followed by the chain size */
+        private int[] indices = new int[9];
+        private int count;
+
+        private int size() {
+            return indices[count];
+        }
+
+        private int get(int index) {
+            int r = Arrays.binarySearch(indices, 0, count, index);
+            if (r < 0)
+                r = -r - 2;
+            return starts[r] + (index - indices[r]);
+        }
+
+        private void add(int cluster) {
+            if (count > 0 && cluster == starts[count - 1] + (indices[count] - indices[count - 1])) {
+                indices[count]++;
+                return;
+            }
+
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                indices = Arrays.copyOf(indices, count * 2 + 1);
+            }
+
+            starts[count] = cluster;
+            indices[count + 1] = indices[count] + 1;
+            count++;
+        }
+
+        private void truncate(int size) {
+            if (size == 0) {
+                count = 0;
+            } else {
+                int r = Arrays.binarySearch(indices, 0, count, size - 1);
+                count = (r < 0) ? -r - 1 : r + 1;
+            }
+            indices[count] = size;
+        }
+    }
+
     public class ChainIterator {
         private int address;
         private int cursor;
@@ -621,40 +643,37 @@ public class FatChain {
             index = 0;
         }
 
+        /**
+         * seeks with the runs of the chain instead of following it
+         */
         private void setPosition(int position) throws IOException {
             if (position < 0)
                 throw new IllegalArgumentException("negative index: " + position);
 
-            if (position > index) {
-                for (int i = index; i < position; i++)
-                    next();
-            } else if (position < index) {
+            ClusterRuns r = getRuns();
+
+            if (position > r.size())
+                throw new NoSuchElementException();
+
+            if (position == 0) {
                 reset();
-                for (int i = 0; i < position; i++)
-                    next();
+            } else {
+                address = r.get(position - 1);
+                cursor = (position < r.size()) ? r.get(position) : fat.get(address);
+                index = position;
             }
         }
 
+        /**
+         * seeks to position, or to the end of chain when the chain is
+         * shorter
+         *
+         * @return the cluster before position, the last cluster of the chain
+         *         when it is shorter, the head for position 0
+         */
         private int getCluster(int position) throws IOException {
-            int cluster = 0;
-
-            if (position > index) {
-                for (int i = index; i < position; i++)
-                    if (hasNext())
-                        cluster = next();
-                    else
-                        break;
-            } else if (position < index) {
-                reset();
-                for (int i = 0; i < position; i++)
-                    if (hasNext())
-                        cluster = next();
-                    else
-                        break;
-            } else
-                cluster = address;
-
-            return cluster;
+            setPosition(Math.min(position, getRuns().size()));
+            return address;
         }
 
         /**
@@ -677,6 +696,22 @@ public class FatChain {
             return (fat.hasNext(cursor));
         }
 
+        /**
+         * moves over the clusters following the one last returned by next()
+         * as long as their numbers are consecutive, so the whole run can be
+         * transferred with a single device request
+         *
+         * @return the number of clusters moved over, at most max
+         */
+        private int skipContiguous(int max) throws IOException {
+            int count = 0;
+            while (count < max && hasNext() && cursor == address + 1) {
+                next();
+                count++;
+            }
+            return count;
+        }
+
         public int next() throws IOException {
             if (!hasNext())
                 throw new NoSuchElementException();
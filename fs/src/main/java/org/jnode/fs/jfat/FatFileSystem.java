@@ -102,21 +102,18 @@ public class FatFileSystem extends AbstractFileSystem<FatRootDirectory> {
     }
 
     @Override
-    public long getFreeSpace() {
-        // TODO implement me
-        return -1;
+    public long getFreeSpace() throws IOException {
+        return (long) fat.freeEntries() * getClusterSize();
     }
 
     @Override
     public long getTotalSpace() {
-        // TODO implement me
-        return -1;
+        return getBootSector().getCountOfClusters() * getClusterSize();
     }
 
     @Override
-    public long getUsableSpace() {
-        // TODO implement me
-        return -1;
+    public long getUsableSpace() throws IOException {
+        return getFreeSpace();
     }
 
     @Override
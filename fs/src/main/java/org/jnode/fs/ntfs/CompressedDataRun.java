@@ -21,10 +21,12 @@
 package org.jnode.fs.ntfs;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import java.lang.System.Logger.Level;
 import java.lang.System.Logger;
+import org.jnode.fs.util.LruCache;
 import org.jnode.util.LittleEndian;
 
 /**
@@ -52,6 +54,21 @@ public final class CompressedDataRun implements DataRunInterface {
      */
     private final int compressionUnitSize;
 
+    /**
+     * The uncompressed units of the attribute this run belongs to, {@code null} when not cached.
+     */
+    private final UnitCache unitCache;
+
+    /**
+     * The compressed data of a unit being read, per thread.
+     */
+    private static final ThreadLocal<byte[]> COMPRESSED_SCRATCH = new ThreadLocal<>();
+
+    /**
+     * The uncompressed data of a unit being read without a cache, per thread.
+     */
+    private static final ThreadLocal<byte[]> UNCOMPRESSED_SCRATCH = new ThreadLocal<>();
+
     /**
      * Constructs a compressed run which when read, will decrypt data found
      * in the provided data run.
@@ -60,8 +77,21 @@ public final class CompressedDataRun implements DataRunInterface {
      * @param compressionUnitSize the number of clusters which make up a compression unit.
      */
     public CompressedDataRun(DataRun compressedRun, int compressionUnitSize) {
+        this(compressedRun, compressionUnitSize, null);
+    }
+
+    /**
+     * Constructs a compressed run which keeps its uncompressed data in a cache shared with the other runs of the
+     * attribute.
+     *
+     * @param compressedRun       the compressed data run.
+     * @param compressionUnitSize the number of clusters which make up a compression unit.
+     * @param unitCache           the cache of uncompressed units, or {@code null}.
+     */
+    public CompressedDataRun(DataRun compressedRun, int compressionUnitSize, UnitCache unitCache) {
         this.compressedRun = compressedRun;
         this.compressionUnitSize = compressionUnitSize;
+        this.unitCache = unitCache;
     }
 
     /**
@@ -101,34 +131,17 @@ public final class CompressedDataRun implements DataRunInterface {
             return 0;
         }
 
-        // Now we know it's in our data run, here's the actual fragment to read.
-        final long actFirstVcn = Math.max(myFirstVcn, vcn);
-        final int actLength = (int) (Math.min(myLastVcn, reqLastVcn) - actFirstVcn + 1);
-
-        // This is the actual number of stored clusters after compression.
         // If the number of stored clusters is the same as the compression unit size,
         // then the data can be read directly without decompressing it.
-        final int compClusters = compressedRun.getLength();
-        if (compClusters == compressionUnitSize) {
-            return compressedRun.readClusters(vcn, dst, dstOffset, compClusters, clusterSize, volume);
-        }
-
-        // Now we know the data is compressed.  Read in the compressed block...
-        final int vcnOffsetWithinUnit = (int) (actFirstVcn % compressionUnitSize);
-        final byte[] tempCompressed = new byte[compressionUnitSize * clusterSize];
-        final int read = compressedRun.readClusters(myFirstVcn, tempCompressed, 0,
-            compClusters, clusterSize, volume);
-        if (read != compClusters) {
-            throw new IOException("Needed " + compClusters + " clusters but could " + "only read " + read);
+        if (compressedRun.getLength() == compressionUnitSize) {
+            return compressedRun.readClusters(vcn, dst, dstOffset, nrClusters, clusterSize, volume);
         }
 
-        // Uncompresses it, and copy into the destination.
-        final byte[] tempUncompressed = new byte[compressionUnitSize * clusterSize];
-        // XXX: We could potentially reduce the overhead by modifying the compression
-        //      routine such that it's capable of skipping chunks that aren't needed.
-        unCompressUnit(tempCompressed, tempUncompressed);
+        // Now we know it's in our data run, here's the actual fragment to read.
+        final long actFirstVcn = Math.max(myFirstVcn, vcn);
+        final int actLength = (int) (Math.min(myLastVcn, reqLastVcn) - actFirstVcn + 1);
 
-        int copySource = vcnOffsetWithinUnit * clusterSize;
+        int copySource = (int) (actFirstVcn - myFirstVcn) * clusterSize;
         int copyDest = dstOffset + (int) (actFirstVcn - vcn) * clusterSize;
         int copyLength = actLength * clusterSize;
 
@@ -138,26 +151,114 @@ public final class CompressedDataRun implements DataRunInterface {
                     .format("Copy dest %d length %d is too big for destination %d", copyDest, copyLength, dst.length));
         }
 
-        if (copySource + copyLength > tempUncompressed.length) {
-            throw new ArrayIndexOutOfBoundsException(
-                String.format("Copy source %d length %d is too big for source %d", copySource, copyLength,
-                    tempUncompressed.length));
+        final byte[] uncompressed = readUnit(copySource + copyLength, clusterSize, volume);
+        System.arraycopy(uncompressed, copySource, dst, copyDest, copyLength);
+
+        return actLength;
+    }
+
+    @Override
+    public int readClusters(long vcn, ByteBuffer dst, int dstOffset, int nrClusters, int clusterSize,
+                            NTFSVolume volume) throws IOException {
+
+        final long myFirstVcn = compressedRun.getFirstVcn();
+        final long myLastVcn = getLastVcn();
+        final long reqLastVcn = vcn + nrClusters - 1;
+        if ((vcn > myLastVcn) || (myFirstVcn > reqLastVcn)) {
+            // Not my region
+            return 0;
         }
 
-        System.arraycopy(tempUncompressed, copySource, dst, copyDest, copyLength);
+        if (compressedRun.getLength() == compressionUnitSize) {
+            return compressedRun.readClusters(vcn, dst, dstOffset, nrClusters, clusterSize, volume);
+        }
+
+        final long actFirstVcn = Math.max(myFirstVcn, vcn);
+        final int actLength = (int) (Math.min(myLastVcn, reqLastVcn) - actFirstVcn + 1);
+
+        int copySource = (int) (actFirstVcn - myFirstVcn) * clusterSize;
+        int copyLength = actLength * clusterSize;
+
+        final byte[] uncompressed = readUnit(copySource + copyLength, clusterSize, volume);
+        ByteBuffer slice = dst.duplicate();
+        slice.position(dstOffset + (int) (actFirstVcn - vcn) * clusterSize);
+        slice.put(uncompressed, copySource, copyLength);
 
         return actLength;
     }
 
     /**
-     * Uncompresses a single unit of multiple compressed blocks.
+     * Gets the uncompressed data of this unit. With a cache the whole unit is uncompressed and kept, as the rest of
+     * it is likely to be read next. Without one, only the blocks up to {@code end} are uncompressed into a scratch
+     * buffer of the calling thread, which stays valid until its next read of a compressed unit.
+     *
+     * @param end         the number of bytes from the start of the unit which are needed.
+     * @param clusterSize size of each cluster.
+     * @param volume      reference to the NTFS volume structure.
+     * @return the uncompressed data, at least {@code end} bytes of it valid.
+     * @throws IOException if an error occurs reading.
+     */
+    private byte[] readUnit(int end, int clusterSize, NTFSVolume volume) throws IOException {
+        final long myFirstVcn = compressedRun.getFirstVcn();
+        final int unitLength = compressionUnitSize * clusterSize;
+        if (unitCache != null) {
+            final byte[] cached = unitCache.get(myFirstVcn);
+            if (cached != null && cached.length == unitLength) {
+                return cached;
+            }
+        }
+
+        // Read in the compressed block...
+        final int compClusters = compressedRun.getLength();
+        final byte[] compressed = scratch(COMPRESSED_SCRATCH, unitLength);
+        final int read = compressedRun.readClusters(myFirstVcn, compressed, 0,
+            compClusters, clusterSize, volume);
+        if (read != compClusters) {
+            throw new IOException("Needed " + compClusters + " clusters but could " + "only read " + read);
+        }
+        // The scratch buffer is reused, anything past the stored clusters has to read as the end of the sequence.
+        Arrays.fill(compressed, compClusters * clusterSize, unitLength, (byte) 0);
+
+        // ... and uncompresses it.
+        if (unitCache != null && unitCache.getCacheSize() > 0) {
+            final byte[] uncompressed = new byte[unitLength];
+            unCompressUnit(compressed, uncompressed, unitLength);
+            unitCache.put(myFirstVcn, uncompressed);
+            return uncompressed;
+        } else {
+            final byte[] uncompressed = scratch(UNCOMPRESSED_SCRATCH, unitLength);
+            unCompressUnit(compressed, uncompressed, end);
+            return uncompressed;
+        }
+    }
+
+    /**
+     * Gets a scratch buffer of the calling thread, growing it if needed.
+     *
+     * @param scratch the scratch buffers.
+     * @param length  the needed length.
+     * @return the buffer, at least {@code length} long with undefined contents.
+     */
+    private static byte[] scratch(ThreadLocal<byte[]> scratch, int length) {
+        byte[] buffer = scratch.get();
+        if (buffer == null || buffer.length < length) {
+            buffer = new byte[length];
+            scratch.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Uncompresses a single unit of multiple compressed blocks, stopping after the block holding the last needed
+     * byte.
      *
      * @param compressed   the compressed data (in.)
      * @param uncompressed the uncompressed data (out.)
+     * @param end          the number of bytes from the start of the unit which are needed.
      * @throws IOException if the decompression fails.
      */
     private static void unCompressUnit(final byte[] compressed,
-                                       final byte[] uncompressed) throws IOException {
+                                       final byte[] uncompressed, final int end) throws IOException {
 
         // This is just a convenient way to simulate the original code's pointer arithmetic.
         // I tried using buffers but positions in those are always from the beginning and
@@ -165,15 +266,14 @@ public final class CompressedDataRun implements DataRunInterface {
         final OffsetByteArray compressedData = new OffsetByteArray(compressed);
         final OffsetByteArray uncompressedData = new OffsetByteArray(uncompressed);
 
-        for (int i = 0; i * BLOCK_SIZE < uncompressed.length; i++) {
+        for (int i = 0; i * BLOCK_SIZE < end; i++) {
             final int consumed = uncompressBlock(compressedData, uncompressedData);
 
             // Apple's code had this as an error but to me, it looks like this simply
             // terminates the sequence of compressed blocks.
             if (consumed == 0) {
-                // At the current point in time this is already zero but if the code
-                // changes in the future to reuse the temp buffer, this is a good idea.
-                uncompressedData.zero(0, uncompressed.length - uncompressedData.offset);
+                // The output buffer may be reused so the rest of the needed range is zeroed.
+                uncompressedData.zero(0, end - uncompressedData.offset);
                 break;
             }
 
@@ -197,8 +297,10 @@ public final class CompressedDataRun implements DataRunInterface {
         final int rawLen = compressed.getShort(cpos);
         cpos += 2;
         final int len = rawLen & 0xFFF;
-        log.log(Level.DEBUG, "ntfs_uncompblock: block length: " + len + " + 3, 0x" +
-            Integer.toHexString(len) + ",0x" + Integer.toHexString(rawLen));
+        if (log.isLoggable(Level.DEBUG)) {
+            log.log(Level.DEBUG, "ntfs_uncompblock: block length: " + len + " + 3, 0x" +
+                Integer.toHexString(len) + ",0x" + Integer.toHexString(rawLen));
+        }
 
         if (rawLen == 0) {
             // End of sequence, rest is zero.  For some reason there is nothing
@@ -246,6 +348,9 @@ public final class CompressedDataRun implements DataRunInterface {
             }
         }
 
+        // A block may end early, its rest reads as zero.
+        uncompressed.zero(pos, BLOCK_SIZE - pos);
+
         return len + 3;
     }
 
@@ -377,6 +482,28 @@ public final class CompressedDataRun implements DataRunInterface {
         }
     }
 
+    /**
+     * A least recently used cache of the uncompressed units of one attribute, keyed by the first VCN of the unit.
+     * The cached units must not be changed.
+     */
+    public static final class UnitCache extends LruCache<Long, byte[]> {
+
+        /**
+         * The default number of units kept per attribute, can be overridden by the system property
+         * {@link #CACHE_SIZE_PROPERTY}.
+         */
+        public static final int DEFAULT_CACHE_SIZE = 4;
+
+        /**
+         * The system property for the number of uncompressed units kept per attribute.
+         */
+        public static final String CACHE_SIZE_PROPERTY = "org.jnode.fs.ntfs.compressionUnitCacheSize";
+
+        public UnitCache() {
+            super(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("[compressed-run vcn:%d-%d %s]", getFirstVcn(), getLastVcn(), compressedRun);
@@ -21,6 +21,7 @@
 package org.jnode.fs.ntfs;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import java.lang.System.Logger.Level;
@@ -249,6 +250,66 @@ public final class DataRun implements DataRunInterface {
         return count;
     }
 
+    /**
+     * Read clusters from this datarun straight into a buffer.
+     *
+     * @param vcn the vcn
+     * @param dst the dst, its position is not changed
+     * @param dstOffset the absolute index into dst of the requested vcn
+     * @param nrClusters the nrClusters
+     * @param clusterSize the clusterSize
+     * @param volume the volume
+     * @return The number of clusters read.
+     * @throws IOException when an error occurs
+     */
+    @Override
+    public int readClusters(long vcn, ByteBuffer dst, int dstOffset, int nrClusters, int clusterSize,
+                            NTFSVolume volume) throws IOException {
+
+        final long myFirstVcn = getFirstVcn();
+        final int myLength = getLength();
+        final long myLastVcn = getLastVcn();
+
+        final long reqLastVcn = vcn + nrClusters - 1;
+
+        if ((vcn > myLastVcn) || (myFirstVcn > reqLastVcn)) {
+            // Not my region
+            return 0;
+        }
+
+        final long actCluster; // Starting cluster
+        final int count; // #clusters to read
+        final int actDstOffset; // Actual dst offset
+        if (vcn < myFirstVcn) {
+            final int vcnDelta = (int) (myFirstVcn - vcn);
+            count = Math.min(nrClusters - vcnDelta, myLength);
+            actDstOffset = dstOffset + (vcnDelta * clusterSize);
+            actCluster = getCluster();
+        } else {
+            // vcn >= myFirstVcn
+            final int vcnDelta = (int) (vcn - myFirstVcn);
+            count = Math.min(nrClusters, myLength - vcnDelta);
+            actDstOffset = dstOffset;
+            actCluster = getCluster() + vcnDelta;
+        }
+
+        if (isSparse()) {
+            // Zero the area
+            final int end = actDstOffset + count * clusterSize;
+            if (dst.hasArray()) {
+                Arrays.fill(dst.array(), dst.arrayOffset() + actDstOffset, dst.arrayOffset() + end, (byte) 0);
+            } else {
+                for (int i = actDstOffset; i < end; i++) {
+                    dst.put(i, (byte) 0);
+                }
+            }
+        } else {
+            volume.readClusters(actCluster, dst, actDstOffset, count);
+        }
+
+        return count;
+    }
+
     /**
      * Maps a virtual cluster to a logical cluster.
      *
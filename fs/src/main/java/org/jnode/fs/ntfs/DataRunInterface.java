@@ -21,6 +21,7 @@
 package org.jnode.fs.ntfs;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * @author Daniel Noll (daniel@noll.id.au)
@@ -49,6 +50,39 @@ public interface DataRunInterface {
     int readClusters(long vcn, byte[] dst, int dstOffset, int nrClusters, int clusterSize, NTFSVolume volume)
         throws IOException;
 
+    /**
+     * Reads clusters from this datarun into a buffer. This default reads the clusters this datarun holds through
+     * {@link #readClusters(long, byte[], int, int, int, NTFSVolume)} and copies them, runs stored as is override it
+     * to read from the device straight into the buffer.
+     *
+     * @param vcn         the VCN to read, offset from the start of the entire file.
+     * @param dst         destination buffer, its position is not changed.
+     * @param dstOffset   absolute index into the destination buffer of the requested VCN.
+     * @param nrClusters  number of clusters to read.
+     * @param clusterSize size of each cluster.
+     * @param volume      reference to the NTFS volume structure.
+     * @return the number of clusters read.
+     * @throws IOException if an error occurs reading.
+     */
+    default int readClusters(long vcn, ByteBuffer dst, int dstOffset, int nrClusters, int clusterSize,
+                             NTFSVolume volume) throws IOException {
+        final long reqLastVcn = vcn + nrClusters - 1;
+        if ((vcn > getLastVcn()) || (getFirstVcn() > reqLastVcn)) {
+            // Not my region
+            return 0;
+        }
+
+        final long actFirstVcn = Math.max(getFirstVcn(), vcn);
+        final int actLength = (int) (Math.min(getLastVcn(), reqLastVcn) - actFirstVcn + 1);
+        final byte[] tmp = new byte[actLength * clusterSize];
+        final int read = readClusters(actFirstVcn, tmp, 0, actLength, clusterSize, volume);
+
+        ByteBuffer slice = dst.duplicate();
+        slice.position(dstOffset + (int) (actFirstVcn - vcn) * clusterSize);
+        slice.put(tmp, 0, read * clusterSize);
+        return read;
+    }
+
     /**
      * Gets the first virtual cluster in this data run.
      *
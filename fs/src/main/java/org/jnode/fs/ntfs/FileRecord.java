@@ -21,6 +21,7 @@
 package org.jnode.fs.ntfs;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.lang.System.Logger.Level;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -547,6 +548,39 @@ public class FileRecord extends NTFSRecord {
                          boolean limitToInitialised)
         throws IOException {
 
+        readData(attributeType, streamName, fileOffset, ByteBuffer.wrap(dest, off, len), limitToInitialised);
+    }
+
+    /**
+     * Reads data from the file into the remaining space of a buffer.
+     *
+     * @param fileOffset the offset into the file.
+     * @param dest       the destination buffer, its position is advanced by the bytes read.
+     * @throws IOException if an error occurs reading from the filesystem.
+     */
+    public void readData(long fileOffset, ByteBuffer dest) throws IOException {
+        // Explicitly look for the attribute with no name, to avoid getting alternate streams.
+        readData(NTFSAttribute.Types.DATA, null, fileOffset, dest, true);
+    }
+
+    /**
+     * Reads data from the file into the remaining space of a buffer. Whole clusters of non-resident data are read
+     * from the device straight into the buffer, only a partial cluster at the head or the tail is staged.
+     *
+     * @param attributeType the attribute type to read from.
+     * @param streamName the stream name to read from, or {@code null} to read from the default stream.
+     * @param fileOffset the offset into the file.
+     * @param dest       the destination buffer, its position is advanced by the bytes read.
+     * @param limitToInitialised {@code true} if the data read in should be limited to the initialised part of the
+     *                    attribute.
+     * @throws IOException if an error occurs reading from the filesystem.
+     */
+    public void readData(int attributeType, String streamName, long fileOffset, ByteBuffer dest,
+                         boolean limitToInitialised)
+        throws IOException {
+
+        final int len = dest.remaining();
+
         log.log(Level.DEBUG, "readData: offset " + fileOffset + " attr:" + attributeType + " stream: " + streamName +
                 " length " + len + ", file record = " + this);
 
@@ -571,7 +605,15 @@ public class FileRecord extends NTFSRecord {
             if (attrLength < len) {
                 throw new IOException("File data(" + attrLength + "b) is not large enough to read:" + len + "b");
             }
-            resData.getData(resData.getAttributeOffset() + (int) fileOffset, dest, off, len);
+            if (dest.hasArray()) {
+                resData.getData(resData.getAttributeOffset() + (int) fileOffset, dest.array(),
+                    dest.arrayOffset() + dest.position(), len);
+                dest.position(dest.position() + len);
+            } else {
+                final byte[] tmp = new byte[len];
+                resData.getData(resData.getAttributeOffset() + (int) fileOffset, tmp, 0, len);
+                dest.put(tmp);
+            }
 
             log.log(Level.DEBUG, "readData: read from resident data");
 
@@ -579,63 +621,96 @@ public class FileRecord extends NTFSRecord {
         }
 
         // At this point we know that at least the first attribute is non-resident...
+        final List<NTFSNonResidentAttribute> nresAttrList = new ArrayList<>();
+        while (true) {
+            if (attr.isResident()) {
+                throw new IOException("Resident attribute should be by itself, file record = " + this);
+            }
+            nresAttrList.add((NTFSNonResidentAttribute) attr);
+            if (!dataAttrs.hasNext()) {
+                break;
+            }
+            attr = dataAttrs.next();
+        }
+
+        // When there are multiple attributes, the data in each one claims to start at VCN 0.
+        // Clearly this is not the case, so keep where each one really starts.
+        final NTFSNonResidentAttribute[] nresAttrs = nresAttrList.toArray(new NTFSNonResidentAttribute[0]);
+        final long[] nresAttrVcns = new long[nresAttrs.length];
+        for (int i = 1; i < nresAttrs.length; i++) {
+            nresAttrVcns[i] = nresAttrVcns[i - 1] + nresAttrs[i - 1].getNumberOfVCNs();
+        }
 
         // Grab the initialised size (if that is itself initialised)
-        long initialisedSize = ((NTFSNonResidentAttribute) attr).getAttributeInitializedSize();
+        long initialisedSize = nresAttrs[0].getAttributeInitializedSize();
         if (initialisedSize == 0)
         {
             limitToInitialised = false;
         }
 
-        // calculate start and end cluster
         final int clusterSize = getClusterSize();
-        final long startCluster = fileOffset / clusterSize;
-        final long endCluster = (fileOffset + len - 1) / clusterSize;
-        final int nrClusters = (int) (endCluster - startCluster + 1);
-        final byte[] tmp = new byte[nrClusters * clusterSize];
-
-        long clusterOffset = 0;
-        long clusterWithinNresData = startCluster;
-        int readClusters = 0;
-        while (true) {
-            if (attr.isResident()) {
-                throw new IOException("Resident attribute should be by itself, file record = " + this);
+        final int start = dest.position();
+        long cluster = fileOffset / clusterSize;
+        int offsetInCluster = (int) (fileOffset % clusterSize);
+        ByteBuffer staging = null;
+
+        for (int done = 0; done < len; ) {
+            final int remaining = len - done;
+            if (offsetInCluster == 0 && remaining >= clusterSize) {
+                final int nrClusters = remaining / clusterSize;
+                readVCNs(nresAttrs, nresAttrVcns, cluster, dest, start + done, nrClusters, fileOffset);
+                done += nrClusters * clusterSize;
+                cluster += nrClusters;
+            } else {
+                if (staging == null) {
+                    staging = ByteBuffer.allocate(clusterSize);
+                }
+                readVCNs(nresAttrs, nresAttrVcns, cluster, staging, 0, 1, fileOffset);
+                final int n = Math.min(clusterSize - offsetInCluster, remaining);
+                dest.put(start + done, staging, offsetInCluster, n);
+                done += n;
+                cluster++;
+                offsetInCluster = 0;
             }
+        }
 
-            final NTFSNonResidentAttribute nresData = (NTFSNonResidentAttribute) attr;
-
-            readClusters += nresData.readVCN(clusterWithinNresData, tmp, 0, nrClusters);
+        // If the data is past the 'initialised' part of the attribute. If it is uninitialised then it must
+        // be read as zeros. Annoyingly the initialised portion isn't even cluster aligned...
+        if (limitToInitialised && fileOffset + len > initialisedSize) {
+            for (int i = start + (int) Math.max(0, initialisedSize - fileOffset); i < start + len; i++) {
+                dest.put(i, (byte) 0);
+            }
+        }
 
-            if (readClusters > 0) {
-                // If the data is past the 'initialised' part of the attribute. If it is uninitialised then it must
-                // be read as zeros. Annoyingly the initialised portion isn't even cluster aligned...
-                long endOffset = (clusterOffset + clusterWithinNresData + nrClusters) * clusterSize;
+        dest.position(start + len);
+    }
 
-                if (endOffset > initialisedSize && limitToInitialised) {
-                    int delta = (int)(endOffset - initialisedSize);
-                    int startIndex = Math.max(tmp.length - delta, 0);
+    /**
+     * Reads clusters spread over the attributes making up the data, starting from the attribute holding the first
+     * cluster.
+     */
+    private void readVCNs(NTFSNonResidentAttribute[] nresAttrs, long[] nresAttrVcns, long startCluster,
+                          ByteBuffer dst, int dstOffset, int nrClusters, long fileOffset) throws IOException {
 
-                    if (startIndex < tmp.length) {
-                        Arrays.fill(tmp, startIndex, tmp.length, (byte) 0);
-                    }
-                }
+        int i = Arrays.binarySearch(nresAttrVcns, startCluster);
+        if (i < 0) {
+            i = Math.max(0, -i - 2);
+        } else {
+            // attributes without VCNs share their start with the next one
+            while (i > 0 && nresAttrVcns[i - 1] == startCluster) {
+                i--;
             }
+        }
+
+        final long lastCluster = startCluster + nrClusters - 1;
+        int readClusters = 0;
+        for (; i < nresAttrs.length && nresAttrVcns[i] <= lastCluster; i++) {
+            readClusters += nresAttrs[i].readVCN(startCluster - nresAttrVcns[i], dst, dstOffset, nrClusters);
 
             if (readClusters == nrClusters) {
                 // Already done.
                 break;
             }
-
-            // When there are multiple attributes, the data in each one claims to start at VCN 0.
-            // Clearly this is not the case, so we need to offset when we read.
-            clusterWithinNresData -= nresData.getNumberOfVCNs();
-            clusterOffset += nresData.getNumberOfVCNs();
-
-            if (dataAttrs.hasNext()) {
-                attr = dataAttrs.next();
-            } else {
-                break;
-            }
         }
 
         log.log(Level.DEBUG, "readData: read " + readClusters + " from non-resident attributes");
@@ -644,8 +719,6 @@ public class FileRecord extends NTFSRecord {
             throw new IOException("Requested " + nrClusters + " clusters but only read " + readClusters +
                 ", file offset = " + fileOffset + ", file record = " + this);
         }
-
-        System.arraycopy(tmp, (int) (fileOffset % clusterSize), dest, off, len);
     }
 
     @Override
@@ -690,7 +763,7 @@ public class FileRecord extends NTFSRecord {
                     MasterFileTable mft = getVolume().getMFT();
                     FileRecord holdingRecord = getReferenceNumber() == MasterFileTable.SystemFiles.MFT
                         ? mft.getRecordUnchecked(entry.getFileReferenceNumber())
-                        : mft.getRecord(entry.getFileReferenceNumber());
+                        : mft.getRecord(entry.getFileReferenceNumber(), (int) entry.getFileSequenceNumber());
 
                     attribute = holdingRecord.findStoredAttributeByID(entry.getAttributeID());
 
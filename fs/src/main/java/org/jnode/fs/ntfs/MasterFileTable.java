@@ -22,9 +22,20 @@ package org.jnode.fs.ntfs;
 
 import java.io.IOException;
 import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 import org.jnode.fs.ntfs.attribute.NTFSAttribute;
+import org.jnode.fs.ntfs.attribute.NTFSNonResidentAttribute;
 import org.jnode.fs.ntfs.index.IndexEntry;
+import org.jnode.fs.util.LruCache;
 
 /**
  * @author Ewout Prangsma (epr@users.sourceforge.net)
@@ -126,11 +137,46 @@ public class MasterFileTable extends FileRecord {
         public static final int FIRST_USER = 16;
     }
 
+    /**
+     * The default number of decoded file records kept in memory, can be overridden by the system property
+     * {@link #CACHE_SIZE_PROPERTY}.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /**
+     * The system property for the number of decoded file records kept in memory.
+     */
+    public static final String CACHE_SIZE_PROPERTY = "org.jnode.fs.ntfs.recordCacheSize";
+
     /**
      * The cached length of the MFT.
      */
     private long mftLength;
 
+    /**
+     * Decoded file records by MFT index, no I/O is done while holding its lock.
+     */
+    private final LruCache<Long, FileRecord> recordCache =
+        new LruCache<>(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+
+    /**
+     * The data runs of the MFT flattened over all of its data attributes: first VCN, LCN and length in clusters of
+     * each run, sorted by VCN. {@code null} until built.
+     */
+    private long[] runVcns;
+    private long[] runLcns;
+    private int[] runLengths;
+
+    /**
+     * The number of bytes that can be read through the run map, anything after this is uninitialised.
+     */
+    private long runMapLimit;
+
+    /**
+     * Set while the run map is being built or once it turned out the MFT can't be mapped (e.g. sparse runs).
+     */
+    private boolean runMapUnavailable;
+
     /**
      * @param volume the volume
      * @param buffer the buffer
@@ -183,10 +229,114 @@ public class MasterFileTable extends FileRecord {
 
         // read the buffer
         final byte[] buffer = new byte[bytesPerFileRecord];
-        readData(offset, buffer, 0, bytesPerFileRecord);
+        readRecords(offset, buffer, bytesPerFileRecord);
         return buffer;
     }
 
+    /**
+     * Reads a range of the MFT, straight from the device when the run map is available.
+     */
+    private void readRecords(long offset, byte[] buffer, int length) throws IOException {
+        if (!readMapped(offset, buffer, length)) {
+            readData(offset, buffer, 0, length);
+        }
+    }
+
+    /**
+     * Reads a range of the MFT through the run map, one device read per data run touched.
+     *
+     * @return {@code false} if the range can't be read through the run map, the buffer contents are undefined then.
+     */
+    private boolean readMapped(long offset, byte[] buffer, int length) throws IOException {
+        if (!buildRunMap() || offset + length > runMapLimit) {
+            return false;
+        }
+
+        final NTFSVolume volume = getVolume();
+        final int clusterSize = getClusterSize();
+        int done = 0;
+        while (done < length) {
+            long position = offset + done;
+            long vcn = position / clusterSize;
+            int run = Arrays.binarySearch(runVcns, vcn);
+            if (run < 0) {
+                run = -run - 2;
+                if (run < 0) {
+                    return false;
+                }
+            }
+            long runEnd = (runVcns[run] + runLengths[run]) * (long) clusterSize;
+            if (position >= runEnd) {
+                return false;
+            }
+            int n = (int) Math.min(length - done, runEnd - position);
+            long deviceOffset = (runLcns[run] + vcn - runVcns[run]) * clusterSize + position % clusterSize;
+            volume.readBytes(deviceOffset, buffer, done, n);
+            done += n;
+        }
+        return true;
+    }
+
+    /**
+     * Builds the run map from the data attributes of the MFT.
+     *
+     * @return {@code true} if the run map is available.
+     */
+    private synchronized boolean buildRunMap() {
+        if (runVcns != null) {
+            return true;
+        }
+        if (runMapUnavailable) {
+            // either not mappable or we are re-entered while resolving the attribute list of the MFT itself
+            return false;
+        }
+        runMapUnavailable = true;
+
+        List<long[]> runs = new ArrayList<>();
+        long limit = Long.MAX_VALUE;
+        long vcnOffset = 0;
+        Iterator<NTFSAttribute> dataAttrs = findAttributesByTypeAndName(NTFSAttribute.Types.DATA, null);
+        while (dataAttrs.hasNext()) {
+            NTFSAttribute attr = dataAttrs.next();
+            if (attr.isResident()) {
+                return false;
+            }
+            NTFSNonResidentAttribute nresData = (NTFSNonResidentAttribute) attr;
+            if (runs.isEmpty() && vcnOffset == 0 && nresData.getAttributeInitializedSize() != 0) {
+                limit = nresData.getAttributeInitializedSize();
+            }
+            for (DataRunInterface dataRun : nresData.getDataRuns()) {
+                if (!(dataRun instanceof DataRun run) || run.isSparse()) {
+                    log.log(Level.DEBUG, "MFT has a sparse or compressed run, not mapping it: " + dataRun);
+                    return false;
+                }
+                // like readData, the runs of each attribute claim to start at VCN 0
+                runs.add(new long[] {vcnOffset + run.getFirstVcn(), run.getCluster(), run.getLength()});
+            }
+            vcnOffset += nresData.getNumberOfVCNs();
+        }
+        if (runs.isEmpty()) {
+            return false;
+        }
+
+        runs.sort((a, b) -> Long.compare(a[0], b[0]));
+        long[] lcns = new long[runs.size()];
+        int[] lengths = new int[runs.size()];
+        long[] vcns = new long[runs.size()];
+        for (int i = 0; i < vcns.length; i++) {
+            vcns[i] = runs.get(i)[0];
+            lcns[i] = runs.get(i)[1];
+            lengths[i] = (int) runs.get(i)[2];
+        }
+        runLcns = lcns;
+        runLengths = lengths;
+        runMapLimit = limit;
+        runVcns = vcns;
+        runMapUnavailable = false;
+        log.log(Level.DEBUG, "MFT run map: " + vcns.length + " runs");
+        return true;
+    }
+
     /**
      * Gets an MFT record with a given index but does not check if it is a valid file record.
      *
@@ -194,13 +344,18 @@ public class MasterFileTable extends FileRecord {
      * @return the file record.
      */
     public FileRecord getRecordUnchecked(long index) throws IOException {
+        FileRecord fileRecord = getCachedRecord(index);
+        if (fileRecord != null) {
+            return fileRecord;
+        }
+
         log.log(Level.DEBUG, "getRecord(" + index + ")");
 
         final NTFSVolume volume = getVolume();
 
         // read the buffer
         final byte[] buffer = readRecord(index);
-        return new FileRecord(volume, index, buffer, 0);
+        return cacheRecord(new FileRecord(volume, index, buffer, 0));
     }
 
     /**
@@ -224,7 +379,323 @@ public class MasterFileTable extends FileRecord {
         return fileRecord;
     }
 
+    /**
+     * Gets an MFT record with a given index, making sure a cached copy still carries the expected sequence number.
+     *
+     * @param index the index to get.
+     * @param sequenceNumber the sequence number from the file reference.
+     * @return the file record, its sequence number may still differ if the record has been reused on disk.
+     * @throws IOException if the record at the index is not valid or there is an error reading in the data.
+     */
+    public FileRecord getRecord(long index, int sequenceNumber) throws IOException {
+        FileRecord fileRecord = getRecord(index);
+        if (fileRecord.getSequenceNumber() != sequenceNumber) {
+            recordCache.remove(index, fileRecord);
+            fileRecord = getRecord(index);
+        }
+        return fileRecord;
+    }
+
     public FileRecord getIndexedFileRecord(IndexEntry indexEntry) throws IOException {
-        return getRecord(indexEntry.getFileReferenceNumber());
+        return getRecord(indexEntry.getFileReferenceNumber(), indexEntry.getFileSequenceNumber());
+    }
+
+    /**
+     * Reads a range of MFT records with a single pass over the device and puts them into the record cache. Records
+     * which fail to decode are skipped, they will fail again when asked for individually.
+     *
+     * @param start the index of the first record.
+     * @param count the number of records, clamped to the length of the MFT and the cache size.
+     * @return the number of records cached.
+     * @throws IOException if an error occurs reading the MFT.
+     */
+    public int preloadRecords(long start, int count) throws IOException {
+        final NTFSVolume volume = getVolume();
+        final int bytesPerFileRecord = volume.getBootRecord().getFileRecordSize();
+        final long available = getMftLength() / bytesPerFileRecord - start;
+        count = (int) Math.min(Math.min(count, available), recordCache.getCacheSize());
+        if (count <= 0) {
+            return 0;
+        }
+
+        // bounded chunks, so a large range doesn't need one huge buffer
+        final int recordsPerChunk = Math.max(1, (1024 * 1024) / bytesPerFileRecord);
+        int cached = 0;
+        for (int i = 0; i < count; i += recordsPerChunk) {
+            int n = Math.min(recordsPerChunk, count - i);
+            byte[] buffer = new byte[n * bytesPerFileRecord];
+            readRecords((start + i) * bytesPerFileRecord, buffer, buffer.length);
+            for (int j = 0; j < n; j++) {
+                long index = start + i + j;
+                try {
+                    FileRecord fileRecord = new FileRecord(volume, index,
+                        Arrays.copyOfRange(buffer, j * bytesPerFileRecord, (j + 1) * bytesPerFileRecord), 0);
+                    fileRecord.checkIfValid();
+                    cacheRecord(fileRecord);
+                    cached++;
+                } catch (IOException e) {
+                    log.log(Level.DEBUG, "preload: skipping record " + index + ": " + e.getMessage());
+                }
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * A file found by {@link #scan(ForkJoinPool, Consumer)}. The timestamps are NTFS file times from the standard
+     * information attribute, {@link NTFSUTIL#filetimeToMillis(long)} converts them.
+     */
+    public static final class ScanEntry {
+
+        private final long referenceNumber;
+        private final int sequenceNumber;
+        private final String name;
+        private final long parentReferenceNumber;
+        private final int parentSequenceNumber;
+        private final boolean directory;
+        private final long size;
+        private final long creationTime;
+        private final long modificationTime;
+        private final long mftChangeTime;
+        private final long accessTime;
+
+        private ScanEntry(FileRecord fileRecord) {
+            referenceNumber = fileRecord.getReferenceNumber();
+            sequenceNumber = fileRecord.getSequenceNumber();
+            directory = fileRecord.isDirectory();
+
+            FileNameAttribute fileName = fileRecord.getFileNameAttribute();
+            name = fileName != null ? fileName.getFileName() : null;
+            parentReferenceNumber = fileName != null ? fileName.getParentMftIndex() : -1;
+            parentSequenceNumber = fileName != null ? fileName.getParentSequenceNumber() : 0;
+
+            size = !directory && fileRecord.findAttributesByTypeAndName(NTFSAttribute.Types.DATA, null).hasNext() ?
+                fileRecord.getAttributeTotalSize(NTFSAttribute.Types.DATA, null) : 0;
+
+            StandardInformationAttribute info = fileRecord.getStandardInformationAttribute();
+            creationTime = info != null ? info.getCreationTime() : 0;
+            modificationTime = info != null ? info.getModificationTime() : 0;
+            mftChangeTime = info != null ? info.getMftChangeTime() : 0;
+            accessTime = info != null ? info.getAccessTime() : 0;
+        }
+
+        /**
+         * @return the MFT index of the file.
+         */
+        public long getReferenceNumber() {
+            return referenceNumber;
+        }
+
+        public int getSequenceNumber() {
+            return sequenceNumber;
+        }
+
+        /**
+         * @return the Win32 name if the file has one, else any of its names, {@code null} if it has none.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the MFT index of the directory holding {@link #getName()}, {@code -1} if the file has no name.
+         */
+        public long getParentReferenceNumber() {
+            return parentReferenceNumber;
+        }
+
+        public int getParentSequenceNumber() {
+            return parentSequenceNumber;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * @return the length of the unnamed data stream, {@code 0} for directories.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public long getCreationTime() {
+            return creationTime;
+        }
+
+        public long getModificationTime() {
+            return modificationTime;
+        }
+
+        public long getMftChangeTime() {
+            return mftChangeTime;
+        }
+
+        public long getAccessTime() {
+            return accessTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[scan-entry %d %s parent:%d size:%d]", referenceNumber, name,
+                parentReferenceNumber, size);
+        }
+    }
+
+    /**
+     * Scans all files in the MFT on the common pool.
+     *
+     * @see #scan(ForkJoinPool, Consumer)
+     */
+    public void scan(Consumer<? super ScanEntry> consumer) throws IOException {
+        scan(ForkJoinPool.commonPool(), consumer);
+    }
+
+    /**
+     * Scans all files in the MFT without going through the directories. The MFT is read here in large sequential
+     * chunks, skipping the records its {@code $BITMAP} marks as unused, while the records are decoded on the pool.
+     * Extension records are not reported on their own and nothing goes into the record cache.
+     *
+     * @param pool     the pool decoding the records.
+     * @param consumer receives the in use base records in no particular order, concurrently from the pool threads.
+     * @throws IOException if an error occurs reading the MFT. Records which fail to decode are skipped.
+     */
+    public void scan(ForkJoinPool pool, Consumer<? super ScanEntry> consumer) throws IOException {
+        final NTFSVolume volume = getVolume();
+        final int bytesPerFileRecord = volume.getBootRecord().getFileRecordSize();
+        final byte[] bitmap = readMftBitmap();
+        long count = getMftLength() / bytesPerFileRecord;
+        if (bitmap != null) {
+            count = Math.min(count, bitmap.length * 8L);
+        }
+
+        // a few chunks in flight, so reading overlaps decoding without holding the whole MFT
+        final int recordsPerChunk = Math.max(1, (1024 * 1024) / bytesPerFileRecord);
+        final int maxPending = pool.getParallelism() * 2;
+        final Deque<ForkJoinTask<?>> pending = new ArrayDeque<>();
+        try {
+            for (long start = 0; start < count; start += recordsPerChunk) {
+                long end = Math.min(count, start + recordsPerChunk);
+
+                // only the span from the first to the last record in use is read
+                long first = start;
+                long last = end - 1;
+                if (bitmap != null) {
+                    while (first <= last && !isInUse(bitmap, first)) {
+                        first++;
+                    }
+                    while (last >= first && !isInUse(bitmap, last)) {
+                        last--;
+                    }
+                    if (first > last) {
+                        continue;
+                    }
+                }
+
+                final long chunkStart = first;
+                final int n = (int) (last - first + 1);
+                final byte[] buffer = new byte[n * bytesPerFileRecord];
+                readRecords(chunkStart * bytesPerFileRecord, buffer, buffer.length);
+
+                while (pending.size() >= maxPending) {
+                    pending.removeFirst().join();
+                }
+                pending.addLast(pool.submit(() -> {
+                    for (int j = 0; j < n; j++) {
+                        long index = chunkStart + j;
+                        if (bitmap != null && !isInUse(bitmap, index)) {
+                            continue;
+                        }
+                        ScanEntry entry = decodeScanEntry(volume, index, buffer, j * bytesPerFileRecord);
+                        if (entry != null) {
+                            consumer.accept(entry);
+                        }
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                pending.removeFirst().join();
+            }
+        } finally {
+            for (ForkJoinTask<?> task : pending) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * @return the entry of an in use base record, {@code null} if the record is not one or fails to decode.
+     */
+    private static ScanEntry decodeScanEntry(NTFSVolume volume, long index, byte[] buffer, int offset) {
+        try {
+            FileRecord fileRecord = new FileRecord(volume, index, buffer, offset);
+            fileRecord.checkIfValid();
+            if (!fileRecord.isInUse() || fileRecord.getBaseReferenceNumber() != 0) {
+                return null;
+            }
+            return new ScanEntry(fileRecord);
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.DEBUG, "scan: skipping record " + index + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the {@code $BITMAP} attribute of the MFT, which has a bit set for each record in use.
+     *
+     * @return the bitmap, or {@code null} if it can't be read.
+     */
+    private byte[] readMftBitmap() {
+        try {
+            if (!findAttributesByTypeAndName(NTFSAttribute.Types.BITMAP, null).hasNext()) {
+                return null;
+            }
+            byte[] bitmap = new byte[(int) getAttributeTotalSize(NTFSAttribute.Types.BITMAP, null)];
+            readData(NTFSAttribute.Types.BITMAP, null, 0, bitmap, 0, bitmap.length, true);
+            return bitmap;
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.DEBUG, "scan: can't read the MFT bitmap, reading all records: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isInUse(byte[] bitmap, long index) {
+        return (bitmap[(int) (index >>> 3)] & (1 << (index & 7))) != 0;
+    }
+
+    /**
+     * Sets the maximum number of decoded records kept in memory, {@code 0} disables caching.
+     *
+     * @param cacheSize the number of records.
+     */
+    public void setRecordCacheSize(int cacheSize) {
+        recordCache.setCacheSize(cacheSize);
+    }
+
+    /**
+     * @return the maximum number of decoded records kept in memory.
+     */
+    public int getRecordCacheSize() {
+        return recordCache.getCacheSize();
+    }
+
+    /**
+     * @return the number of decoded records currently kept in memory.
+     */
+    public int getCachedRecordCount() {
+        return recordCache.size();
+    }
+
+    private FileRecord getCachedRecord(long index) {
+        return recordCache.get(index);
+    }
+
+    /** @return the record already cached by a concurrent reader, or the given one */
+    private FileRecord cacheRecord(FileRecord fileRecord) {
+        if (recordCache.getCacheSize() == 0) {
+            return fileRecord;
+        }
+        FileRecord existing = recordCache.putIfAbsent(fileRecord.getReferenceNumber(), fileRecord);
+        return existing != null ? existing : fileRecord;
     }
 }
@@ -30,6 +30,8 @@ import org.jnode.fs.FSDirectoryId;
 import org.jnode.fs.FSEntry;
 import org.jnode.fs.FileSystem;
 import org.jnode.fs.ReadOnlyFileSystemException;
+import org.jnode.fs.ntfs.index.IndexEntry;
+import org.jnode.fs.ntfs.index.IndexSearchCallback;
 import org.jnode.fs.ntfs.index.NTFSIndex;
 
 /**
@@ -90,10 +92,65 @@ public class NTFSDirectory implements FSDirectory, FSDirectoryId {
 
     /**
      * Gets an entry with a given name.
+     * <p>
+     * The name is looked up by descending the $I30 index with the file name collation,
+     * the index is scanned linearly only if that is not possible.
      */
     @Override
     public FSEntry getEntry(String name) {
         log.log(Level.DEBUG, "getEntry(" + name + ")");
+        try {
+            FileNameSearchCallback callback = new FileNameSearchCallback(name, fs.getNTFSVolume().getUpcaseTable());
+            IndexEntry indexEntry = index.search(callback);
+            if (indexEntry != null) {
+                FileNameAttribute.Structure fileName = new FileNameAttribute.Structure(indexEntry, IndexEntry.CONTENT_OFFSET);
+                // DOS file name entries are not listed, see DirectoryEntryIterator
+                return fileName.getNameSpace() != FileNameAttribute.NameSpace.DOS ? new NTFSEntry(fs, indexEntry) : null;
+            }
+            if (!callback.ambiguous) {
+                return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "index search failed, falling back to a linear scan: " + name, e);
+        }
+        return scanEntry(name);
+    }
+
+    /**
+     * Compares the searched name with the file names of the index entries.
+     */
+    private static class FileNameSearchCallback implements IndexSearchCallback {
+
+        final String name;
+
+        final UpcaseTable upcaseTable;
+
+        /** true if a name only differing in case was visited, the collation of such names is not reliable */
+        boolean ambiguous;
+
+        FileNameSearchCallback(String name, UpcaseTable upcaseTable) {
+            this.name = name;
+            this.upcaseTable = upcaseTable;
+        }
+
+        @Override
+        public int visitAndCompareEntry(IndexEntry entry) {
+            String entryName = new FileNameAttribute.Structure(entry, IndexEntry.CONTENT_OFFSET).getFileName();
+            int result = upcaseTable.compareIgnoreCase(name, entryName);
+            if (result == 0) {
+                result = name.compareTo(entryName);
+                if (result != 0) {
+                    ambiguous = true;
+                }
+            }
+            return Integer.signum(result);
+        }
+    }
+
+    /**
+     * Gets an entry with a given name by scanning all entries.
+     */
+    private FSEntry scanEntry(String name) {
         for (Iterator<FSEntry> it = this.iterator(); it.hasNext(); ) {
             final NTFSEntry entry = (NTFSEntry) it.next();
             if (entry.getName().equals(name)) {
@@ -36,7 +36,6 @@ import org.jnode.fs.FSFileStreams;
 import org.jnode.fs.FileSystem;
 import org.jnode.fs.ntfs.attribute.NTFSAttribute;
 import org.jnode.fs.ntfs.index.IndexEntry;
-import org.jnode.util.ByteBufferUtils;
 
 import static java.lang.System.getLogger;
 
@@ -105,11 +104,7 @@ public class NTFSFile implements FSFile, FSFileSlackSpace, FSFileStreams {
 
     @Override
     public void read(long fileOffset, ByteBuffer destBuf) throws IOException {
-        // TODO optimize it also to use ByteBuffer at lower level
-        final ByteBufferUtils.ByteArray destBA = ByteBufferUtils.toByteArray(destBuf);
-        final byte[] dest = destBA.toArray();
-        getFileRecord().readData(fileOffset, dest, 0, dest.length);
-        destBA.refreshByteBuffer();
+        getFileRecord().readData(fileOffset, destBuf);
     }
 
     @Override
@@ -256,16 +251,11 @@ public class NTFSFile implements FSFile, FSFileSlackSpace, FSFileStreams {
 
         @Override
         public void read(long fileOffset, ByteBuffer dest) throws IOException {
-            ByteBufferUtils.ByteArray destByteArray = ByteBufferUtils.toByteArray(dest);
-            byte[] destBuffer = destByteArray.toArray();
-
-            if (fileOffset + destBuffer.length > getLength()) {
+            if (fileOffset + dest.remaining() > getLength()) {
                 throw new IOException("Attempt to read past the end of stream, offset: " + fileOffset);
             }
 
-            getFileRecord().readData(NTFSAttribute.Types.DATA, attributeName, fileOffset, destBuffer, 0,
-                destBuffer.length, true);
-            destByteArray.refreshByteBuffer();
+            getFileRecord().readData(NTFSAttribute.Types.DATA, attributeName, fileOffset, dest, true);
         }
 
         @Override
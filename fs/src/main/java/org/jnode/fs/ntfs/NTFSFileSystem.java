@@ -113,6 +113,27 @@ public class NTFSFileSystem extends AbstractFileSystem<FSEntry> {
         return null;
     }
 
+    /**
+     * Gets a reader of the USN journal.
+     *
+     * @param startUsn the USN of the first entry to read, {@code 0} for the oldest entry still in the journal.
+     * @return the reader, or {@code null} if the volume has no journal.
+     * @throws IOException if an error occurs.
+     */
+    public UsnJournalReader getUsnJournal(long startUsn) throws IOException {
+        FSEntry extend = getRootEntry().getDirectory().getEntry("$Extend");
+        if (extend == null || !extend.isDirectory()) {
+            return null;
+        }
+
+        NTFSEntry entry = (NTFSEntry) extend.getDirectory().getEntry("$UsnJrnl");
+        if (entry == null) {
+            return null;
+        }
+
+        return new UsnJournalReader(entry.getFileRecord(), startUsn);
+    }
+
     /**
      * Flush all data.
      */
@@ -51,6 +51,8 @@ public class NTFSVolume {
 
     private FileRecord rootDirectory;
 
+    private UpcaseTable upcaseTable;
+
     /**
      * Initialize this instance.
      */
@@ -103,6 +105,37 @@ public class NTFSVolume {
         api.read(clusterOffset, ByteBuffer.wrap(dst, dstOffset, nrClusters * clusterSize));
     }
 
+    /**
+     * Read a number of clusters straight into a buffer.
+     *
+     * @param firstCluster the first cluster number
+     * @param dst          the buffer, its position is not changed
+     * @param dstOffset    the absolute index in the buffer of the first byte read
+     * @param nrClusters   The number of clusters to read.
+     * @throws IOException when an error occurs
+     */
+    public void readClusters(long firstCluster, ByteBuffer dst, int dstOffset, int nrClusters) throws IOException {
+        log.log(Level.DEBUG, "readClusters(" + firstCluster + ", " + nrClusters + ") " + (readClustersCount++));
+        final int clusterSize = getClusterSize();
+        final long clusterOffset = firstCluster * clusterSize;
+        ByteBuffer slice = dst.duplicate();
+        slice.limit(dstOffset + nrClusters * clusterSize).position(dstOffset);
+        api.read(clusterOffset, slice);
+    }
+
+    /**
+     * Reads bytes at an absolute device offset, not necessarily cluster aligned.
+     *
+     * @param offset    the byte offset on the device.
+     * @param dst       the destination buffer.
+     * @param dstOffset the offset into the destination buffer.
+     * @param length    the number of bytes to read.
+     * @throws IOException when an error occurs
+     */
+    void readBytes(long offset, byte[] dst, int dstOffset, int length) throws IOException {
+        api.read(offset, ByteBuffer.wrap(dst, dstOffset, length));
+    }
+
     /**
      * Gets the size of a cluster.
      *
@@ -154,6 +187,19 @@ public class NTFSVolume {
         return rootDirectory;
     }
 
+    /**
+     * Gets the upcase table of this volume.
+     *
+     * @return the upcase table
+     * @throws IOException when an error occurs
+     */
+    public synchronized UpcaseTable getUpcaseTable() throws IOException {
+        if (upcaseTable == null) {
+            upcaseTable = new UpcaseTable(getMFT().getRecord(MasterFileTable.SystemFiles.UPCASE));
+        }
+        return upcaseTable;
+    }
+
     /**
      * @return Returns the currentNameSpace.
      */
@@ -0,0 +1,83 @@
+/*
+ * $Id$
+ *
+ * Copyright (C) 2003-2015 JNode.org
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public 
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; If not, write to the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jnode.fs.ntfs;
+
+import java.io.IOException;
+
+import org.jnode.fs.ntfs.attribute.NTFSAttribute;
+import org.jnode.util.LittleEndian;
+
+/**
+ * The volume's $UpCase table, used to collate file names in the $I30 indexes.
+ */
+public final class UpcaseTable {
+
+    /** the number of characters in the table */
+    private static final int SIZE = 0x10000;
+
+    private final char[] table = new char[SIZE];
+
+    /**
+     * Reads the table from the $UpCase file.
+     *
+     * @param fileRecord the $UpCase file record.
+     */
+    public UpcaseTable(FileRecord fileRecord) throws IOException {
+        int length = (int) Math.min(SIZE * 2L, fileRecord.getAttributeTotalSize(NTFSAttribute.Types.DATA, null));
+        byte[] data = new byte[length];
+        fileRecord.readData(0, data, 0, length);
+        for (int i = 0; i < SIZE; i++) {
+            table[i] = i * 2 + 1 < length ? (char) LittleEndian.getUInt16(data, i * 2) : (char) i;
+        }
+    }
+
+    public char toUpperCase(char c) {
+        return table[c];
+    }
+
+    /**
+     * Compares two names the way NTFS collates file names: case-insensitively through the
+     * upcase table, ties broken by comparing the code units as they are.
+     *
+     * @return a negative number, zero or a positive number as a is less than, equal to, or greater than b.
+     */
+    public int compare(String a, String b) {
+        int result = compareIgnoreCase(a, b);
+        return result != 0 ? result : a.compareTo(b);
+    }
+
+    /**
+     * Compares two names case-insensitively through the upcase table.
+     *
+     * @return a negative number, zero or a positive number as a is less than, equal to, or greater than b.
+     */
+    public int compareIgnoreCase(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char ca = table[a.charAt(i)];
+            char cb = table[b.charAt(i)];
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return a.length() - b.length();
+    }
+}
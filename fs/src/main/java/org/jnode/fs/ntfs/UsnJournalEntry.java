@@ -90,6 +90,15 @@ public class UsnJournalEntry extends NTFSStructure {
         return getInt48(0x10);
     }
 
+    /**
+     * Gets the update sequence number of this entry, which is its offset in the journal stream.
+     *
+     * @return the USN.
+     */
+    public long getUsn() {
+        return getInt64(0x18);
+    }
+
     /**
      * Gets the timestamp for this entry.
      *
@@ -0,0 +1,272 @@
+/*
+ * $Id$
+ *
+ * Copyright (C) 2003-2015 JNode.org
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public 
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; If not, write to the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jnode.fs.ntfs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.jnode.fs.ntfs.attribute.NTFSAttribute;
+import org.jnode.fs.ntfs.attribute.NTFSNonResidentAttribute;
+import org.jnode.util.LittleEndian;
+
+/**
+ * Reads the entries of the USN journal ($Extend\$UsnJrnl:$J) in order of their USN, which is their offset in the
+ * stream. The journal is read ahead in large chunks starting from the given USN, the sparse clusters the journal has
+ * dropped in front of it are skipped without being read. The entries are parsed in place in the chunks, which are
+ * kept alive by the entries referring to them.
+ * <p>
+ * Errors reading the journal are thrown as {@link UncheckedIOException} while iterating.
+ */
+public class UsnJournalReader implements Iterator<UsnJournalEntry> {
+
+    /**
+     * The name of the data stream holding the journal entries.
+     */
+    public static final String JOURNAL_STREAM = "$J";
+
+    /**
+     * The default number of bytes read ahead.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The size of a version 2 entry without its file name.
+     */
+    private static final int MIN_ENTRY_SIZE = 0x3c;
+
+    /**
+     * Anything bigger isn't taken as an entry.
+     */
+    private static final int MAX_ENTRY_SIZE = 0x10000;
+
+    /**
+     * The entries are aligned to this.
+     */
+    private static final int ALIGNMENT = 8;
+
+    private final FileRecord fileRecord;
+
+    private final String streamName;
+
+    private final long length;
+
+    private final int bufferSize;
+
+    /**
+     * The current chunk, {@code null} before the first read.
+     */
+    private byte[] buffer;
+
+    /**
+     * The stream offset of the start of {@link #buffer}.
+     */
+    private long bufferOffset;
+
+    private int bufferPos;
+
+    private int bufferEnd;
+
+    private UsnJournalEntry next;
+
+    /**
+     * Creates a reader of the {@value #JOURNAL_STREAM} stream.
+     *
+     * @param fileRecord the file record of $UsnJrnl.
+     * @param startUsn   the USN of the first entry to read, {@code 0} for the oldest entry still in the journal.
+     * @throws IOException if the journal stream can't be found.
+     */
+    public UsnJournalReader(FileRecord fileRecord, long startUsn) throws IOException {
+        this(fileRecord, JOURNAL_STREAM, startUsn, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param fileRecord the file record holding the journal.
+     * @param streamName the name of the data stream holding the journal, or {@code null} for the unnamed one.
+     * @param startUsn   the USN of the first entry to read, {@code 0} for the oldest entry still in the journal.
+     * @param bufferSize the number of bytes read ahead.
+     * @throws IOException if the journal stream can't be found.
+     */
+    public UsnJournalReader(FileRecord fileRecord, String streamName, long startUsn, int bufferSize)
+        throws IOException {
+
+        if (bufferSize < MIN_ENTRY_SIZE) {
+            throw new IllegalArgumentException("bufferSize: " + bufferSize);
+        }
+        if (!fileRecord.findAttributesByTypeAndName(NTFSAttribute.Types.DATA, streamName).hasNext()) {
+            throw new IOException("Journal stream " + streamName + " not found, file record = " + fileRecord);
+        }
+
+        this.fileRecord = fileRecord;
+        this.streamName = streamName;
+        this.length = fileRecord.getAttributeTotalSize(NTFSAttribute.Types.DATA, streamName);
+        this.bufferSize = bufferSize;
+        this.bufferOffset = Math.max(startUsn - startUsn % ALIGNMENT, getDataStart());
+    }
+
+    /**
+     * Gets the offset of the first cluster of the journal stream which isn't sparse.
+     *
+     * @return the offset, the length of the stream if it is all sparse.
+     */
+    private long getDataStart() {
+        Iterator<NTFSAttribute> attributes =
+            fileRecord.findAttributesByTypeAndName(NTFSAttribute.Types.DATA, streamName);
+        NTFSAttribute attribute = attributes.next();
+        if (attribute.isResident()) {
+            return 0;
+        }
+
+        // as in FileRecord.readData, the runs of each attribute claim to start at VCN 0
+        long vcnOffset = 0;
+        while (true) {
+            NTFSNonResidentAttribute nresAttribute = (NTFSNonResidentAttribute) attribute;
+            for (DataRunInterface dataRun : nresAttribute.getDataRuns()) {
+                if (!(dataRun instanceof DataRun run) || !run.isSparse()) {
+                    return (vcnOffset + dataRun.getFirstVcn()) * fileRecord.getClusterSize();
+                }
+            }
+            vcnOffset += nresAttribute.getNumberOfVCNs();
+            if (!attributes.hasNext()) {
+                return length;
+            }
+            attribute = attributes.next();
+            if (attribute.isResident()) {
+                return length;
+            }
+        }
+    }
+
+    /**
+     * Gets the USN the next entry is looked for at, after the last entry returned. Keeping it allows reading on
+     * from there later.
+     *
+     * @return the USN.
+     */
+    public long getNextUsn() {
+        return next != null ? next.getUsn() : bufferOffset + bufferPos;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public UsnJournalEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        UsnJournalEntry result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * @return the entries from here on, in order.
+     */
+    public Spliterator<UsnJournalEntry> spliterator() {
+        return Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    /**
+     * @return the entries from here on, in order.
+     */
+    public Stream<UsnJournalEntry> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Finds the next entry, skipping the zero padding at the end of journal pages and entries of other versions.
+     *
+     * @return the entry, or {@code null} at the end of the journal.
+     * @throws IOException if an error occurs reading the journal.
+     */
+    private UsnJournalEntry readNext() throws IOException {
+        while (ensure(ALIGNMENT)) {
+            long size = LittleEndian.getUInt32(buffer, bufferPos);
+            if (size < ALIGNMENT || size > MAX_ENTRY_SIZE || size % ALIGNMENT != 0) {
+                // padding, or garbage to step over until things line up again
+                bufferPos += ALIGNMENT;
+                continue;
+            }
+            if (!ensure((int) size)) {
+                return null;
+            }
+
+            int offset = bufferPos;
+            bufferPos += (int) size;
+            if (size >= MIN_ENTRY_SIZE && LittleEndian.getUInt16(buffer, offset + 4) == 2) {
+                return new UsnJournalEntry(buffer, offset);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Makes sure the given number of bytes from the current position are in the buffer, reading the next chunk if
+     * needed. A new array is used for each chunk as the entries returned refer to the old one.
+     *
+     * @param needed the number of bytes.
+     * @return {@code false} if the journal ends before.
+     * @throws IOException if an error occurs reading the journal.
+     */
+    private boolean ensure(int needed) throws IOException {
+        if (bufferEnd - bufferPos >= needed) {
+            return true;
+        }
+        long offset = bufferOffset + bufferPos;
+        if (offset + needed > length) {
+            return false;
+        }
+
+        int carried = bufferEnd - bufferPos;
+        int size = (int) Math.min(Math.max(bufferSize, needed), length - offset);
+        byte[] chunk = new byte[size];
+        if (carried > 0) {
+            System.arraycopy(buffer, bufferPos, chunk, 0, carried);
+        }
+        fileRecord.readData(NTFSAttribute.Types.DATA, streamName, offset + carried,
+            ByteBuffer.wrap(chunk, carried, size - carried), true);
+
+        buffer = chunk;
+        bufferOffset = offset;
+        bufferPos = 0;
+        bufferEnd = size;
+        return true;
+    }
+}
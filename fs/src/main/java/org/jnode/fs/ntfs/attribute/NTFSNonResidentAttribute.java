@@ -21,8 +21,11 @@
 package org.jnode.fs.ntfs.attribute;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.lang.System.Logger.Level;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import org.jnode.fs.ntfs.CompressedDataRun;
@@ -46,6 +49,49 @@ public class NTFSNonResidentAttribute extends NTFSAttribute {
 
     private final List<DataRunInterface> dataRuns = new ArrayList<>();
 
+    /**
+     * The data runs indexed by VCN for reads, {@code null} until the first read.
+     */
+    private volatile RunIndex runIndex;
+
+    /**
+     * The data runs sorted by first VCN, with the highest last VCN up to each run, so the first run a VCN can be in
+     * is found by a binary search.
+     */
+    private static final class RunIndex {
+        final DataRunInterface[] runs;
+        final long[] maxLastVcns;
+
+        RunIndex(List<DataRunInterface> dataRuns) {
+            runs = dataRuns.toArray(new DataRunInterface[0]);
+            // the runs are read in ascending VCN order, this only guards against odd run lists
+            Arrays.sort(runs, Comparator.comparingLong(DataRunInterface::getFirstVcn));
+            maxLastVcns = new long[runs.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < runs.length; i++) {
+                max = Math.max(max, runs[i].getLastVcn());
+                maxLastVcns[i] = max;
+            }
+        }
+
+        /**
+         * @return the index of the first run which may hold the vcn.
+         */
+        int first(long vcn) {
+            int low = 0;
+            int high = runs.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (maxLastVcns[mid] < vcn) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
     /**
      * Creates a new non-resident attribute and reads in the associated data runs.
      *
@@ -157,6 +203,7 @@ public class NTFSNonResidentAttribute extends NTFSAttribute {
         boolean firstDataRun = true;
         int lastCompressedSize = 0;
         int compUnitSize = compressed ? getCompressionUnitSize(fallbackCompressionUnit) : 1;
+        CompressedDataRun.UnitCache unitCache = compressed ? new CompressedDataRun.UnitCache() : null;
 
         while (getUInt8(offset) != 0x0) {
             final DataRun dataRun = new DataRun(this, offset, vcn, previousLCN);
@@ -201,7 +248,7 @@ public class NTFSNonResidentAttribute extends NTFSAttribute {
                         // Next add in the compressed portion
                         DataRun compressedRun =
                             new DataRun(dataRun.getCluster() + uncompressedLength, remainder, false, 0, vcn);
-                        dataRuns.add(new CompressedDataRun(compressedRun, compUnitSize));
+                        dataRuns.add(new CompressedDataRun(compressedRun, compUnitSize, unitCache));
                         expectingSparseRunNext = true;
                         lastCompressedSize = remainder;
 
@@ -215,7 +262,7 @@ public class NTFSNonResidentAttribute extends NTFSAttribute {
                     }
 
                 } else {
-                    dataRuns.add(new CompressedDataRun(dataRun, compUnitSize));
+                    dataRuns.add(new CompressedDataRun(dataRun, compUnitSize, unitCache));
                     expectingSparseRunNext = true;
                     lastCompressedSize = dataRun.getLength();
 
@@ -258,6 +305,15 @@ public class NTFSNonResidentAttribute extends NTFSAttribute {
         return dataRuns;
     }
 
+    private RunIndex getRunIndex() {
+        RunIndex index = runIndex;
+        if (index == null) {
+            index = new RunIndex(getDataRuns());
+            runIndex = index;
+        }
+        return index;
+    }
+
     /**
      * Read a number of clusters starting from a given virtual cluster number
      * (vcn).
@@ -278,9 +334,11 @@ public class NTFSNonResidentAttribute extends NTFSAttribute {
 
         final NTFSVolume volume = getFileRecord().getVolume();
         final int clusterSize = volume.getClusterSize();
+        final long reqLastVcn = vcn + nrClusters - 1;
+        final RunIndex index = getRunIndex();
         int readClusters = 0;
-        for (DataRunInterface dataRun : this.getDataRuns()) {
-            readClusters += dataRun.readClusters(vcn, dst, dstOffset, nrClusters, clusterSize, volume);
+        for (int i = index.first(vcn); i < index.runs.length && index.runs[i].getFirstVcn() <= reqLastVcn; i++) {
+            readClusters += index.runs[i].readClusters(vcn, dst, dstOffset, nrClusters, clusterSize, volume);
             if (readClusters == nrClusters) {
                 break;
             }
@@ -291,6 +349,38 @@ public class NTFSNonResidentAttribute extends NTFSAttribute {
         return readClusters;
     }
 
+    /**
+     * Read a number of clusters starting from a given virtual cluster number
+     * (vcn) straight into a buffer.
+     *
+     * @param vcn the vcn
+     * @param dst the buffer, its position is not changed
+     * @param dstOffset the absolute index into dst of the vcn
+     * @param nrClusters the nrClusters
+     * @return The number of clusters read.
+     * @throws IOException when an error occurs
+     */
+    public int readVCN(long vcn, ByteBuffer dst, int dstOffset, int nrClusters) throws IOException {
+        final int flags = getFlags();
+        if ((flags & 0x4000) != 0) {
+            throw new IOException("Reading encrypted files is not supported");
+        }
+
+        final NTFSVolume volume = getFileRecord().getVolume();
+        final int clusterSize = volume.getClusterSize();
+        final long reqLastVcn = vcn + nrClusters - 1;
+        final RunIndex index = getRunIndex();
+        int readClusters = 0;
+        for (int i = index.first(vcn); i < index.runs.length && index.runs[i].getFirstVcn() <= reqLastVcn; i++) {
+            readClusters += index.runs[i].readClusters(vcn, dst, dstOffset, nrClusters, clusterSize, volume);
+            if (readClusters == nrClusters) {
+                break;
+            }
+        }
+
+        return readClusters;
+    }
+
     /**
      * @return Returns the numberOfVNCs.
      */
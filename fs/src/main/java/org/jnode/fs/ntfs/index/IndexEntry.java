@@ -96,6 +96,16 @@ public final class IndexEntry extends NTFSStructure {
         return getUInt48(0x00);
     }
 
+    /**
+     * Gets the file sequence number, which is the highest 16 bits of the MFT
+     * reference.
+     *
+     * @return the file sequence number.
+     */
+    public int getFileSequenceNumber() {
+        return getUInt16(0x06);
+    }
+
     /**
      * @return Returns the parentFileRecord.
      */
@@ -103,7 +103,7 @@ public abstract class AbstractFSDirectory extends AbstractFSObject implements FS
     }
 
     @Override
-    public final FSEntry getEntry(String name) throws IOException {
+    public FSEntry getEntry(String name) throws IOException {
         // ensure entries are loaded from BlockDevice
         checkEntriesLoaded();
 
@@ -233,7 +233,7 @@ public abstract class AbstractFSDirectory extends AbstractFSObject implements FS
      * 
      * @return if the entries are already loaded from the device
      */
-    private boolean isEntriesLoaded() {
+    protected boolean isEntriesLoaded() {
         return (entries != FSEntryTable.EMPTY_TABLE);
     }
 
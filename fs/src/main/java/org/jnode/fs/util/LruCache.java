@@ -0,0 +1,194 @@
+/*
+ * $Id$
+ *
+ * Copyright (C) 2003-2015 JNode.org
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public 
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; If not, write to the Free Software Foundation, Inc., 
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jnode.fs.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * A bounded map evicting the least recently used entries once it holds more than its size, counting the hits and
+ * misses of {@link #get(Object)}.
+ * <p>
+ * All methods are thread safe, the values are neither created nor released while holding the lock.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+public class LruCache<K, V> {
+
+    /**
+     * The maximum number of entries.
+     */
+    private volatile int cacheSize;
+
+    /**
+     * The entries, least recently used first. Guarded by itself.
+     */
+    private final Map<K, V> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param cacheSize the maximum number of entries, {@code 0} disables the cache.
+     */
+    public LruCache(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize: " + cacheSize);
+        }
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Gets an entry, counting a hit or a miss.
+     *
+     * @param key the key.
+     * @return the value, or {@code null} if it is not cached.
+     */
+    public V get(K key) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Checks whether an entry is cached, without counting as an access.
+     *
+     * @param key the key.
+     * @return {@code true} if cached.
+     */
+    public boolean containsKey(K key) {
+        synchronized (entries) {
+            return entries.containsKey(key);
+        }
+    }
+
+    /**
+     * @param key the key.
+     * @param value the value.
+     */
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    /**
+     * Adds an entry unless another thread got there first.
+     *
+     * @param key the key.
+     * @param value the value.
+     * @return the value already cached, or {@code null} if the given one was added.
+     */
+    public V putIfAbsent(K key, V value) {
+        synchronized (entries) {
+            return entries.putIfAbsent(key, value);
+        }
+    }
+
+    /**
+     * Drops an entry if it still maps to the given value.
+     *
+     * @param key the key.
+     * @param value the value.
+     * @return {@code true} if dropped.
+     */
+    public boolean remove(K key, V value) {
+        synchronized (entries) {
+            return entries.remove(key, value);
+        }
+    }
+
+    /**
+     * Drops the entries matching a filter, which is called while holding the lock.
+     *
+     * @param filter the filter.
+     */
+    public void removeIf(BiPredicate<? super K, ? super V> filter) {
+        synchronized (entries) {
+            entries.entrySet().removeIf(e -> filter.test(e.getKey(), e.getValue()));
+        }
+    }
+
+    /**
+     * Drops all entries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Sets the maximum number of entries, dropping the least recently used ones over it.
+     *
+     * @param cacheSize the number of entries, {@code 0} disables the cache.
+     */
+    public void setCacheSize(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize: " + cacheSize);
+        }
+        this.cacheSize = cacheSize;
+        synchronized (entries) {
+            Iterator<K> i = entries.keySet().iterator();
+            while (entries.size() > cacheSize && i.hasNext()) {
+                i.next();
+                i.remove();
+            }
+        }
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @return the number of entries in memory.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.nio.file.jnode;
+
+import java.nio.file.NoSuchFileException;
+
+import org.jnode.fs.util.LruCache;
+
+
+/**
+ * EntryCache.
+ * <p>
+ * a bounded least recently used cache from normalized absolute path strings to resolved entries, also
+ * remembering paths that do not exist. entries are dropped with their descendants when a path is created,
+ * removed or renamed.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/16 umjammer initial version <br>
+ */
+public final class EntryCache<T> {
+
+    /** the default number of paths, can be overridden by the system property {@link #CACHE_SIZE_PROPERTY} */
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /** the system property for the number of paths kept in memory */
+    public static final String CACHE_SIZE_PROPERTY = "vavi.nio.file.jnode.entryCacheSize";
+
+    /** the value of a path known not to exist */
+    private static final Object NEGATIVE = new Object();
+
+    /** entries or {@link #NEGATIVE} */
+    private final LruCache<String, Object> entries =
+        new LruCache<>(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+
+    /**
+     * @param key a normalized absolute path
+     * @return the entry, or {@code null} on a miss
+     * @throws NoSuchFileException if the path is known not to exist
+     */
+    @SuppressWarnings("unchecked")
+    public T get(String key) throws NoSuchFileException {
+        Object value = entries.get(key);
+        if (value == NEGATIVE) {
+            throw new NoSuchFileException(key);
+        }
+        return (T) value;
+    }
+
+    public void put(String key, T entry) {
+        entries.put(key, entry);
+    }
+
+    /** remembers that the path does not exist */
+    public void putNegative(String key) {
+        entries.put(key, NEGATIVE);
+    }
+
+    /**
+     * drops the path and everything below it. paths are compared ignoring case, so that a file system ignoring
+     * case does not keep a stale spelling, which only costs a lookup on the others.
+     * negative entries in the same directory are dropped for the same reason.
+     */
+    public void invalidate(String key) {
+        String parent = parentOf(key);
+        entries.removeIf((k, v) -> isSameOrBelow(k, key) ||
+            (v == NEGATIVE && parent != null && parent.equalsIgnoreCase(parentOf(k))));
+    }
+
+    private static boolean isSameOrBelow(String k, String key) {
+        if (key.equals("/")) {
+            return true;
+        }
+        return k.regionMatches(true, 0, key, 0, key.length()) &&
+            (k.length() == key.length() || k.charAt(key.length()) == '/');
+    }
+
+    private static String parentOf(String key) {
+        int p = key.lastIndexOf('/');
+        return p < 0 ? null : p == 0 ? "/" : key.substring(0, p);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @param cacheSize the number of paths, {@code 0} disables the cache
+     */
+    public void setCacheSize(int cacheSize) {
+        entries.setCacheSize(cacheSize);
+    }
+
+    public int getCacheSize() {
+        return entries.getCacheSize();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return entries.getHitCount();
+    }
+
+    public long getMissCount() {
+        return entries.getMissCount();
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.nio.file.jnode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jnode.fs.FSFile;
+
+
+/**
+ * JNodeFileChannel.
+ * <p>
+ * a position tracking channel directly on {@link FSFile#read(long, ByteBuffer)} and
+ * {@link FSFile#write(long, ByteBuffer)}, reads are clamped to the file length.
+ * <p>
+ * file locks are in-process only, they are checked against the other locks of this channel
+ * and nothing is locked on the device. {@link #map(MapMode, long, long)} is not supported,
+ * it throws {@link UnsupportedOperationException}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/16 umjammer initial version <br>
+ */
+final class JNodeFileChannel extends FileChannel {
+
+    /** the buffer size used by transfers and the streams */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FSFile file;
+
+    private final boolean readable;
+
+    private final boolean writable;
+
+    private final boolean append;
+
+    private long position;
+
+    /** lazily allocated for transfers */
+    private ByteBuffer transferBuffer;
+
+    /** the valid locks acquired through this channel, guarded by itself */
+    private final List<Lock> locks = new ArrayList<>();
+
+    /**
+     * @param append every write goes to the end of the file
+     */
+    JNodeFileChannel(FSFile file, boolean readable, boolean writable, boolean append) {
+        this.file = file;
+        this.readable = readable;
+        this.writable = writable;
+        this.append = append;
+        this.position = append ? file.getLength() : 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!isOpen()) throw new ClosedChannelException();
+    }
+
+    private void ensureReadable() throws IOException {
+        ensureOpen();
+        if (!readable) throw new NonReadableChannelException();
+    }
+
+    private void ensureWritable() throws IOException {
+        ensureOpen();
+        if (!writable) throw new NonWritableChannelException();
+    }
+
+    /** reads at most to the end of the file without moving the channel position */
+    private int readAt(ByteBuffer dst, long position) throws IOException {
+        long rem = file.getLength() - position;
+        if (rem <= 0) return -1;
+
+        int n = (int) Math.min(dst.remaining(), rem);
+        if (n == 0) return 0;
+
+        // not every file system advances the buffer, so do it here
+        ByteBuffer slice = dst.duplicate();
+        slice.limit(slice.position() + n);
+        file.read(position, slice);
+        dst.position(dst.position() + n);
+        return n;
+    }
+
+    /** writes the whole buffer without moving the channel position */
+    private int writeAt(ByteBuffer src, long position) throws IOException {
+        int n = src.remaining();
+        if (n == 0) return 0;
+
+        ByteBuffer slice = src.duplicate();
+        file.write(position, slice);
+        src.position(src.position() + n);
+        return n;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureReadable();
+        int n = readAt(dst, position);
+        if (n > 0) position += n;
+        return n;
+    }
+
+    @Override
+    public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        ensureReadable();
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int n = readAt(dsts[i], position);
+            if (n < 0) return total == 0 ? -1 : total;
+            position += n;
+            total += n;
+            if (dsts[i].hasRemaining()) break;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        ensureWritable();
+        if (append) position = file.getLength();
+        int n = writeAt(src, position);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public synchronized long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        ensureWritable();
+        if (append) position = file.getLength();
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int n = writeAt(srcs[i], position);
+            position += n;
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized FileChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) throw new IllegalArgumentException("position: " + newPosition);
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return file.getLength();
+    }
+
+    @Override
+    public synchronized FileChannel truncate(long size) throws IOException {
+        ensureWritable();
+        if (size < 0) throw new IllegalArgumentException("size: " + size);
+        if (size < file.getLength()) file.setLength(size);
+        if (position > size) position = size;
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        ensureOpen();
+        file.flush();
+    }
+
+    private ByteBuffer transferBuffer() {
+        if (transferBuffer == null) transferBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        transferBuffer.clear();
+        return transferBuffer;
+    }
+
+    @Override
+    public synchronized long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        ensureReadable();
+        ByteBuffer buffer = transferBuffer();
+        long total = 0;
+        while (total < count) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), count - total));
+            int n = readAt(buffer, position + total);
+            if (n <= 0) break;
+            buffer.flip();
+            while (buffer.hasRemaining()) target.write(buffer);
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+        ensureWritable();
+        ByteBuffer buffer = transferBuffer();
+        long total = 0;
+        while (total < count) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), count - total));
+            int n = src.read(buffer);
+            if (n <= 0) break;
+            buffer.flip();
+            writeAt(buffer, position + total);
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        ensureReadable();
+        if (position < 0) throw new IllegalArgumentException("position: " + position);
+        return readAt(dst, position);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+        ensureWritable();
+        if (position < 0) throw new IllegalArgumentException("position: " + position);
+        return writeAt(src, position);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+        throw new UnsupportedOperationException("map");
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+        // there is nothing to wait for, an overlapping lock could only be held by this channel
+        return tryLock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        if (shared) {
+            ensureReadable();
+        } else {
+            ensureWritable();
+        }
+        Lock lock = new Lock(position, size, shared);
+        synchronized (locks) {
+            for (Lock l : locks) {
+                if (l.overlaps(position, size)) throw new OverlappingFileLockException();
+            }
+            locks.add(lock);
+        }
+        return lock;
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        synchronized (locks) {
+            locks.clear();
+        }
+        if (writable) file.flush();
+    }
+
+    /** an in-process lock, valid while it is held in {@link #locks} */
+    private final class Lock extends FileLock {
+
+        Lock(long position, long size, boolean shared) {
+            super(JNodeFileChannel.this, position, size, shared);
+        }
+
+        @Override
+        public boolean isValid() {
+            synchronized (locks) {
+                return locks.contains(this);
+            }
+        }
+
+        @Override
+        public void release() throws IOException {
+            synchronized (locks) {
+                locks.remove(this);
+            }
+        }
+    }
+}
@@ -6,16 +6,23 @@
 
 package vavi.nio.file.jnode;
 
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.CopyOption;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileStore;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -28,7 +35,6 @@ import java.util.stream.StreamSupport;
 import org.jnode.fs.FSEntry;
 import org.jnode.fs.FSFile;
 import org.jnode.fs.FileSystem;
-import org.jnode.util.FileUtils;
 
 import com.github.fge.filesystem.driver.ExtendedFileSystemDriver;
 import com.github.fge.filesystem.exceptions.IsDirectoryException;
@@ -36,8 +42,6 @@ import com.github.fge.filesystem.provider.FileSystemFactoryProvider;
 
 import vavi.nio.file.Util;
 
-import static vavi.nio.file.Util.toPathString;
-
 
 /**
  * ExFatFileSystemDriver.
@@ -49,6 +53,8 @@ public final class JNodeFileSystemDriver<T extends FSEntry> extends ExtendedFile
 
     private final FileSystem<T> fs;
 
+    private final EntryCache<T> entryCache = new EntryCache<>();
+
     public JNodeFileSystemDriver(final FileStore fileStore,
             FileSystemFactoryProvider provider,
             FileSystem<T> fs,
@@ -56,10 +62,9 @@ public final class JNodeFileSystemDriver<T extends FSEntry> extends ExtendedFile
         super(fileStore, provider);
         this.fs = fs;
         setEnv(env);
-    }
-
-    private static String toJNodePathString(Path path) throws IOException {
-        return toPathString(path).replace(File.separator, "\\").substring(1);
+        if (env.containsKey(JNodeFileSystemRepository.ENV_ENTRY_CACHE_SIZE)) {
+            entryCache.setCacheSize(Integer.parseInt(String.valueOf(env.get(JNodeFileSystemRepository.ENV_ENTRY_CACHE_SIZE))));
+        }
     }
 
     @Override
@@ -83,60 +88,121 @@ public final class JNodeFileSystemDriver<T extends FSEntry> extends ExtendedFile
     }
 
     @Override
-    protected T getEntry(Path path)throws IOException {
-        T parent = fs.getRootEntry();
-        for (int i = 0; i < path.getNameCount(); i++) {
-            Path name = path.getName(i);
-            try {
-                @SuppressWarnings("unchecked")
-                T entry = (T) parent.getDirectory().getEntry(name.toString());
-                if (i < path.getNameCount() - 1) {
-                    parent = entry;
-                } else {
-                    if (ignoreAppleDouble && path.getFileName() != null && Util.isAppleDouble(path)) {
-                        throw new NoSuchFileException("ignore apple double file: " + path);
-                    }
-                    return entry;
-                }
-            } catch (IOException e) {
-                throw new NoSuchFileException(path.toString());
-            }
+    protected T getEntry(Path path) throws IOException {
+        if (ignoreAppleDouble && path.getFileName() != null && Util.isAppleDouble(path)) {
+            throw new NoSuchFileException("ignore apple double file: " + path);
         }
-        return fs.getRootEntry();
+        return resolve(path.toAbsolutePath().normalize());
+    }
+
+    /** resolves a normalized absolute path through the cache, looking up only the last name on a miss */
+    private T resolve(Path path) throws IOException {
+        if (path.getNameCount() == 0) {
+            return fs.getRootEntry();
+        }
+        String key = path.toString();
+        T entry = entryCache.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        T parent;
+        try {
+            parent = resolve(path.getParent());
+        } catch (NoSuchFileException e) {
+            entryCache.putNegative(key);
+            throw new NoSuchFileException(path.toString());
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            T child = (T) parent.getDirectory().getEntry(path.getFileName().toString());
+            entry = child;
+        } catch (IOException e) {
+            entry = null;
+        }
+        if (entry == null) {
+            entryCache.putNegative(key);
+            throw new NoSuchFileException(path.toString());
+        }
+        entryCache.put(key, entry);
+        return entry;
+    }
+
+    /** drops the cached path and its descendants after it was created, removed or renamed */
+    private void invalidate(Path path) {
+        entryCache.invalidate(path.toAbsolutePath().normalize().toString());
+    }
+
+    /** the cache of resolved paths, for tuning and its hit rate */
+    public EntryCache<T> getEntryCache() {
+        return entryCache;
     }
 
     @Override
     protected InputStream downloadEntry(T entry, Path path, Set<? extends OpenOption> options) throws IOException {
-        FSFile file = entry.getFile();
-        return new InputStream() {
-            @Override
-            public int read() throws IOException {
-                byte[] b = new byte[1];
-                return read(b ,0, 1);
-            }
-            @Override
-            public int read(byte[] b, int ofs, int len) throws IOException {
-                ByteBuffer bb = ByteBuffer.wrap(b, ofs, len);
-                file.read(0, bb);
-                return len;
-            }
-        };
+        FileChannel channel = new JNodeFileChannel(entry.getFile(), true, false, false);
+        return new BufferedInputStream(Channels.newInputStream(channel), JNodeFileChannel.BUFFER_SIZE);
     }
 
     @Override
     protected OutputStream uploadEntry(T parentEntry, Path path, Set<? extends OpenOption> options) throws IOException {
-        FSFile file = parentEntry.getDirectory().addFile(toJNodePathString(path)).getFile();
-        return new OutputStream() {
-            @Override
-            public void write(int b) throws IOException {
-                write(new byte[] { (byte) b } ,0, 1);
+        boolean append = options != null && options.contains(StandardOpenOption.APPEND);
+        FSFile file = getOrAddFile(parentEntry, path, !append);
+        FileChannel channel = new JNodeFileChannel(file, false, true, append);
+        return new BufferedOutputStream(Channels.newOutputStream(channel), JNodeFileChannel.BUFFER_SIZE);
+    }
+
+    /** some file systems return null, others throw for a missing entry */
+    private static FSEntry findEntry(FSEntry parentEntry, String name) throws IOException {
+        try {
+            return parentEntry.getDirectory().getEntry(name);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** gets the file named by the path in the parent, creating it when it does not exist */
+    private FSFile getOrAddFile(T parentEntry, Path path, boolean truncate) throws IOException {
+        String name = path.getFileName().toString();
+        FSEntry entry = findEntry(parentEntry, name);
+        if (entry == null) {
+            FSFile file = parentEntry.getDirectory().addFile(name).getFile();
+            invalidate(path);
+            return file;
+        }
+        if (entry.isDirectory()) {
+            throw new IsDirectoryException(path.toString());
+        }
+        FSFile file = entry.getFile();
+        if (truncate && file.getLength() > 0) {
+            file.setLength(0);
+        }
+        return file;
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        boolean append = options.contains(StandardOpenOption.APPEND);
+        boolean writable = append || options.contains(StandardOpenOption.WRITE);
+        FSFile file;
+        if (writable) {
+            boolean create = options.contains(StandardOpenOption.CREATE) || options.contains(StandardOpenOption.CREATE_NEW);
+            T parentEntry = getEntry(path.toAbsolutePath().getParent());
+            FSEntry entry = findEntry(parentEntry, path.getFileName().toString());
+            if (entry != null && options.contains(StandardOpenOption.CREATE_NEW)) {
+                throw new FileAlreadyExistsException(path.toString());
             }
-            @Override
-            public void write(byte[] b, int ofs, int len) throws IOException {
-                ByteBuffer bb = ByteBuffer.wrap(b, ofs, len);
-                file.write(0, bb);
+            if (entry == null && !create) {
+                throw new NoSuchFileException(path.toString());
             }
-        };
+            file = getOrAddFile(parentEntry, path, options.contains(StandardOpenOption.TRUNCATE_EXISTING));
+        } else {
+            T entry = getEntry(path);
+            if (isFolder(entry)) {
+                throw new IsDirectoryException(path.toString());
+            }
+            file = entry.getFile();
+        }
+        return new JNodeFileChannel(file, !writable || options.contains(StandardOpenOption.READ), writable, append);
     }
 
     @Override
@@ -153,6 +219,7 @@ public final class JNodeFileSystemDriver<T extends FSEntry> extends ExtendedFile
     @Override
     protected T createDirectoryEntry(T parentEntry, Path dir) throws IOException {
         parentEntry.getDirectory().addDirectory(dir.getFileName().toString());
+        invalidate(dir);
         return getEntry(dir);
     }
 
@@ -164,19 +231,31 @@ public final class JNodeFileSystemDriver<T extends FSEntry> extends ExtendedFile
     @Override
     protected void removeEntry(T entry, Path path) throws IOException {
         entry.getParent().remove(path.getFileName().toString());
+        invalidate(path);
     }
 
     @Override
     protected T copyEntry(T sourceEntry, T targetParentEntry, Path source, Path target, Set<CopyOption> options) throws IOException {
-        OutputStream out = uploadEntry(sourceEntry, source, null); // TODO options
-        InputStream in = downloadEntry(targetParentEntry, target, null); // TODO options
-        FileUtils.copy(in, out, new byte[8192], false);
+        // an existing file is replaced only when asked to, the other options don't apply to a file system
+        // without links or attributes to copy
+        if ((options == null || !options.contains(StandardCopyOption.REPLACE_EXISTING)) &&
+            findEntry(targetParentEntry, target.getFileName().toString()) != null) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+        FSFile file = getOrAddFile(targetParentEntry, target, true);
+        try (FileChannel in = new JNodeFileChannel(sourceEntry.getFile(), true, false, false);
+             FileChannel out = new JNodeFileChannel(file, false, true, false)) {
+            for (long position = 0, size = in.size(); position < size; ) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
         return getEntry(target);
     }
 
     @Override
     protected T moveEntry(T sourceEntry, T targetParentEntry, Path source, Path target, boolean targetIsParent) throws IOException {
-        copyEntry(sourceEntry, targetParentEntry, source, target, null);
+        // no options are passed for a move, the caller has already dealt with an existing target
+        copyEntry(sourceEntry, targetParentEntry, source, target, Set.of(StandardCopyOption.REPLACE_EXISTING));
         removeEntry(sourceEntry, source);
         if (targetIsParent) {
             return getEntry(target.resolve(source.getFileName()));
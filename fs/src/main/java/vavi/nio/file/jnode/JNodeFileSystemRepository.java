@@ -20,6 +20,10 @@ import org.jnode.driver.block.VirtualDisk;
 import org.jnode.driver.block.VirtualDiskDevice;
 import org.jnode.fs.FileSystem;
 import org.jnode.fs.FileSystemType;
+import org.jnode.fs.ext2.Ext2FileSystem;
+import org.jnode.fs.hfsplus.HfsPlusFileSystem;
+import org.jnode.fs.jfat.FatFileSystem;
+import org.jnode.fs.ntfs.NTFSFileSystem;
 import org.jnode.partitions.PartitionTable;
 
 import com.github.fge.filesystem.driver.FileSystemDriver;
@@ -33,6 +37,14 @@ import static java.lang.System.getLogger;
  * <p>
  * env
  * <ul>
+ *  <li>{@link #ENV_BLOCK_CACHE_SIZE} ... ext2/3/4 block cache budget in bytes</li>
+ *  <li>{@link #ENV_RECORD_CACHE_SIZE} ... ntfs mft record cache size in records</li>
+ *  <li>{@link #ENV_NODE_CACHE_SIZE} ... hfs+ b-tree node cache size in nodes</li>
+ *  <li>{@link #ENV_CHUNK_CACHE_SIZE} ... hfs+ decompressed chunk cache size in chunks</li>
+ *  <li>{@link #ENV_DECOMPRESSION_THREADS} ... hfs+ decompression threads, 0 disables read-ahead</li>
+ *  <li>{@link #ENV_READ_AHEAD_CHUNKS} ... hfs+ chunks decompressed ahead of sequential reads</li>
+ *  <li>{@link #ENV_FAT_CACHE_SIZE} ... fat sector cache budget in bytes</li>
+ *  <li>{@link #ENV_ENTRY_CACHE_SIZE} ... resolved path cache size in paths, 0 disables it</li>
  * </ul>
  * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
  * @version 0.00 2021/12/19 umjammer initial version <br>
@@ -41,6 +53,30 @@ public final class JNodeFileSystemRepository extends FileSystemRepositoryBase {
 
     private static final Logger logger = getLogger(JNodeFileSystemRepository.class.getName());
 
+    /** env key for the ext2/3/4 block cache budget in bytes */
+    public static final String ENV_BLOCK_CACHE_SIZE = "blockCacheSize";
+
+    /** env key for the ntfs mft record cache size in records */
+    public static final String ENV_RECORD_CACHE_SIZE = "recordCacheSize";
+
+    /** env key for the hfs+ b-tree node cache size in nodes */
+    public static final String ENV_NODE_CACHE_SIZE = "nodeCacheSize";
+
+    /** env key for the hfs+ decompressed chunk cache size in chunks */
+    public static final String ENV_CHUNK_CACHE_SIZE = "chunkCacheSize";
+
+    /** env key for the number of hfs+ decompression threads */
+    public static final String ENV_DECOMPRESSION_THREADS = "decompressionThreads";
+
+    /** env key for the number of hfs+ chunks decompressed ahead of sequential reads */
+    public static final String ENV_READ_AHEAD_CHUNKS = "readAheadChunks";
+
+    /** env key for the fat sector cache budget in bytes */
+    public static final String ENV_FAT_CACHE_SIZE = "fatCacheSize";
+
+    /** env key for the resolved path cache size in paths */
+    public static final String ENV_ENTRY_CACHE_SIZE = "entryCacheSize";
+
     /** */
     public JNodeFileSystemRepository() {
         super("jnode", new JNodeFileSystemFactoryProvider());
@@ -86,10 +122,51 @@ logger.log(Level.DEBUG, "path: " + path + ", " + Files.exists(path));
             fs = type.create(device, true); // TODO read only
         }
 
+        configure(fs, env);
+
         final JNodeFileStore fileStore = new JNodeFileStore(fs, factoryProvider.getAttributesFactory());
         return new JNodeFileSystemDriver<>(fileStore, factoryProvider, fs, env);
     }
 
+    /** applies file system specific settings in the env */
+    private static void configure(FileSystem<?> fs, Map<String, ?> env) throws IOException {
+        if (fs instanceof Ext2FileSystem ext2 && env.containsKey(ENV_BLOCK_CACHE_SIZE)) {
+            long size = Long.parseLong(String.valueOf(env.get(ENV_BLOCK_CACHE_SIZE)));
+logger.log(Level.DEBUG, "block cache size: " + size);
+            ext2.setBlockCacheSize(size);
+        }
+        if (fs instanceof NTFSFileSystem ntfs && env.containsKey(ENV_RECORD_CACHE_SIZE)) {
+            int size = Integer.parseInt(String.valueOf(env.get(ENV_RECORD_CACHE_SIZE)));
+logger.log(Level.DEBUG, "record cache size: " + size);
+            ntfs.getNTFSVolume().getMFT().setRecordCacheSize(size);
+        }
+        if (fs instanceof HfsPlusFileSystem hfsplus && env.containsKey(ENV_NODE_CACHE_SIZE)) {
+            int size = Integer.parseInt(String.valueOf(env.get(ENV_NODE_CACHE_SIZE)));
+logger.log(Level.DEBUG, "node cache size: " + size);
+            hfsplus.getNodeCache().setCacheSize(size);
+        }
+        if (fs instanceof HfsPlusFileSystem hfsplus && env.containsKey(ENV_CHUNK_CACHE_SIZE)) {
+            int size = Integer.parseInt(String.valueOf(env.get(ENV_CHUNK_CACHE_SIZE)));
+logger.log(Level.DEBUG, "chunk cache size: " + size);
+            hfsplus.getChunkCache().setCacheSize(size);
+        }
+        if (fs instanceof HfsPlusFileSystem hfsplus && env.containsKey(ENV_DECOMPRESSION_THREADS)) {
+            int threads = Integer.parseInt(String.valueOf(env.get(ENV_DECOMPRESSION_THREADS)));
+logger.log(Level.DEBUG, "decompression threads: " + threads);
+            hfsplus.getChunkReadAhead().setThreads(threads);
+        }
+        if (fs instanceof HfsPlusFileSystem hfsplus && env.containsKey(ENV_READ_AHEAD_CHUNKS)) {
+            int chunks = Integer.parseInt(String.valueOf(env.get(ENV_READ_AHEAD_CHUNKS)));
+logger.log(Level.DEBUG, "read ahead chunks: " + chunks);
+            hfsplus.getChunkReadAhead().setChunks(chunks);
+        }
+        if (fs instanceof FatFileSystem fat && env.containsKey(ENV_FAT_CACHE_SIZE)) {
+            long size = Long.parseLong(String.valueOf(env.get(ENV_FAT_CACHE_SIZE)));
+logger.log(Level.DEBUG, "fat cache size: " + size);
+            fat.getFat().getCache().setMaxBytes(size);
+        }
+    }
+
     // ad-hoc hack for ignoring checking opacity
     @Override
     protected void checkURI(URI uri) {
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2024 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package org.jnode.test.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.jnode.driver.block.FileDevice;
+import org.jnode.util.StopWatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * FileDeviceTest.
+ */
+public class FileDeviceTest {
+
+    static final int SIZE = 4 * 1024 * 1024;
+
+    Path path;
+    byte[] expected;
+
+    @BeforeEach
+    void before() throws IOException {
+        path = Files.createTempFile("filedevice", ".img");
+        expected = new byte[SIZE];
+        new Random(1234).nextBytes(expected);
+        Files.write(path, expected);
+    }
+
+    @AfterEach
+    void after() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    void assertRead(FileDevice device) throws IOException {
+        for (ByteBuffer buf : new ByteBuffer[] {ByteBuffer.allocate(4096), ByteBuffer.allocateDirect(4096)}) {
+            for (long offset : new long[] {0, 513, SIZE - 4096}) {
+                buf.clear();
+                device.read(offset, buf);
+                assertEquals(buf.limit(), buf.position());
+                byte[] actual = new byte[4096];
+                buf.flip();
+                buf.get(actual);
+                byte[] e = new byte[4096];
+                System.arraycopy(expected, (int) offset, e, 0, 4096);
+                assertArrayEquals(e, actual, "offset: " + offset);
+            }
+        }
+    }
+
+    @Test
+    void testChannelRead() throws Exception {
+        FileDevice device = new FileDevice(path.toFile(), "r");
+        assertRead(device);
+        device.close();
+    }
+
+    @Test
+    void testMappedRead() throws Exception {
+        FileDevice device = new FileDevice(path.toFile(), "r", true);
+        assertRead(device);
+        device.close();
+    }
+
+    @Test
+    void testWrite() throws Exception {
+        FileDevice device = new FileDevice(path.toFile(), "rw", true);
+        byte[] data = new byte[1000];
+        new Random(5678).nextBytes(data);
+        device.write(12345, ByteBuffer.wrap(data));
+        System.arraycopy(data, 0, expected, 12345, data.length);
+        assertRead(device);
+        device.close();
+    }
+
+    /** run with -Dbenchmark=true */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() throws Exception {
+        File file = path.toFile();
+        int blockSize = 4096;
+        int loops = 20;
+        Random random = new Random(0);
+        long[] offsets = new long[SIZE / blockSize];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = (long) random.nextInt(offsets.length) * blockSize;
+        }
+
+        // the former implementation: seek and copy through a heap array
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            ByteBuffer buf = ByteBuffer.allocate(blockSize);
+            StopWatch sw = new StopWatch();
+            for (int l = 0; l < loops; l++) {
+                for (long offset : offsets) {
+                    buf.clear();
+                    raf.seek(offset);
+                    byte[] dest = new byte[buf.remaining()];
+                    raf.read(dest, 0, dest.length);
+                    buf.put(dest);
+                }
+            }
+            sw.stop();
+Debug.println("seek + byte[]: " + sw);
+        }
+
+        for (boolean mapped : new boolean[] {false, true}) {
+            for (boolean direct : new boolean[] {false, true}) {
+                FileDevice device = new FileDevice(file, "r", mapped);
+                ByteBuffer buf = direct ? ByteBuffer.allocateDirect(blockSize) : ByteBuffer.allocate(blockSize);
+                StopWatch sw = new StopWatch();
+                for (int l = 0; l < loops; l++) {
+                    for (long offset : offsets) {
+                        buf.clear();
+                        device.read(offset, buf);
+                    }
+                }
+                sw.stop();
+Debug.println((mapped ? "mapped" : "channel") + (direct ? ", direct" : ", heap") + ": " + sw);
+                device.close();
+            }
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package org.jnode.test.fs.exfat;
 
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
 import org.jnode.driver.Device;
 import org.jnode.driver.block.FileDevice;
+import org.jnode.fs.FSDirectory;
+import org.jnode.fs.FSEntry;
+import org.jnode.fs.FSFile;
 import org.jnode.fs.FileSystemType;
 import org.jnode.fs.exfat.ExFatFileSystem;
 import org.jnode.fs.exfat.ExFatFileSystemType;
@@ -9,6 +15,12 @@ import org.jnode.test.fs.DataStructureAsserts;
 import org.jnode.test.fs.FileSystemTestUtils;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
 public class ExFatFileSystemTest {
 
     private Device device;
@@ -38,4 +50,57 @@ public class ExFatFileSystemTest {
 
         DataStructureAsserts.assertStructure(fs, expectedStructure);
     }
+
+    @Test
+    public void testReadAtOffsets() throws Exception {
+
+        device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/exfat/test.exfat"), "r");
+        ExFatFileSystemType type = FileSystemType.lookup(ExFatFileSystemType.class);
+        ExFatFileSystem fs = type.create(device, true);
+
+        Iterator<? extends FSEntry> iterator = fs.getRootEntry().getDirectory().iterator();
+        while (iterator.hasNext()) {
+            FSEntry entry = iterator.next();
+            if (!entry.isFile()) {
+                continue;
+            }
+            FSFile file = entry.getFile();
+            ByteBuffer whole = ByteBuffer.allocate((int) file.getLength());
+            file.read(0, whole);
+            assertEquals(whole.limit(), whole.position());
+
+            // odd sized pieces cross cluster boundaries at every possible offset
+            ByteBuffer pieces = ByteBuffer.allocate(whole.capacity());
+            while (pieces.hasRemaining()) {
+                ByteBuffer piece = ByteBuffer.allocate(Math.min(1000, pieces.remaining()));
+                file.read(pieces.position(), piece);
+                pieces.put(piece.flip());
+            }
+            assertArrayEquals(whole.array(), pieces.array(), entry.getName());
+        }
+    }
+
+    @Test
+    public void testGetEntry() throws Exception {
+
+        device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/exfat/test.exfat"), "r");
+        ExFatFileSystemType type = FileSystemType.lookup(ExFatFileSystemType.class);
+        ExFatFileSystem fs = type.create(device, true);
+
+        Iterator<? extends FSEntry> iterator = fs.getRootEntry().getDirectory().iterator();
+        while (iterator.hasNext()) {
+            FSEntry entry = iterator.next();
+
+            // a fresh directory resolves the name through the name hash without listing
+            FSDirectory directory = fs.getRootEntry().getDirectory();
+            FSEntry found = directory.getEntry(entry.getName().toLowerCase());
+            assertNotNull(found, entry.getName());
+            assertEquals(entry.getId(), found.getId());
+            assertEquals(entry.getName(), found.getName());
+
+            // listing afterwards hands out the same instance, in directory order
+            assertSame(found, directory.getEntryById(found.getId()));
+        }
+        assertNull(fs.getRootEntry().getDirectory().getEntry("no such entry"));
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package org.jnode.test.fs.ext2.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jnode.fs.ext2.cache.Block;
+import org.jnode.fs.ext2.cache.BlockCache;
+import org.jnode.fs.ext2.cache.CacheEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * BlockCacheTest.
+ */
+public class BlockCacheTest {
+
+    @Test
+    void testBudget() {
+        // 4 blocks per stripe
+        BlockCache cache = new BlockCache(16 * 4 * 1024);
+        List<CacheEvent> events = new ArrayList<>();
+        cache.addCacheListener(events::add);
+
+        for (long nr = 0; nr < 1000; nr++) {
+            cache.putIfAbsent(new Block(null, nr, new byte[1024]));
+        }
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+        assertEquals(cache.getEvictionCount(), events.size());
+        assertEquals(CacheEvent.REMOVED, events.get(0).getEventType());
+
+        assertNotNull(cache.get(999));
+        assertNull(cache.get(0));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(cache.getEvictionCount(), events.get(events.size() - 1).getEvictions());
+    }
+
+    @Test
+    void testPutIfAbsent() {
+        BlockCache cache = new BlockCache();
+        Block block = new Block(null, 1, new byte[1024]);
+        assertSame(block, cache.putIfAbsent(block));
+        assertSame(block, cache.putIfAbsent(new Block(null, 1, new byte[1024])));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testEvictionFlushesUnderLock() {
+        // 1 block per stripe
+        BlockCache cache = new BlockCache(16 * 1024);
+        List<Long> flushed = new ArrayList<>();
+        Block dirty = new Block(null, 0, new byte[1024]) {
+            @Override
+            public void flush() {
+                // nobody can miss on the block and read it back from the disk until it is written
+                assertTrue(Thread.holdsLock(cache.getLock(0)));
+                assertNull(cache.peek(0));
+                flushed.add(blockNr);
+            }
+        };
+        cache.putIfAbsent(dirty);
+        cache.markDirty(dirty);
+
+        // the same stripe as block 0
+        cache.putIfAbsent(new Block(null, 16, new byte[1024]));
+        assertEquals(List.of(0L), flushed);
+        assertFalse(cache.hasDirtyBlocks());
+    }
+
+    @Test
+    void testDirtyRange() {
+        BlockCache cache = new BlockCache();
+        Block block = cache.putIfAbsent(new Block(null, 10, new byte[1024]));
+        cache.markDirty(block);
+
+        assertTrue(cache.hasDirtyBlocks(10, 1));
+        assertTrue(cache.hasDirtyBlocks(5, 6));
+        assertFalse(cache.hasDirtyBlocks(5, 5));
+        assertFalse(cache.hasDirtyBlocks(11, 100));
+
+        cache.markClean(block);
+        assertFalse(cache.hasDirtyBlocks(0, 100));
+    }
+}
@@ -20,25 +20,41 @@
 
 package org.jnode.test.fs.ext4;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.jnode.driver.Device;
 import org.jnode.driver.block.FileDevice;
 import org.jnode.fs.FSDirectory;
 import org.jnode.fs.FSEntry;
 import org.jnode.fs.FileSystemType;
+import org.jnode.fs.ext2.Ext2Entry;
 import org.jnode.fs.ext2.Ext2FileSystem;
 import org.jnode.fs.ext2.Ext2FileSystemType;
+import org.jnode.fs.ext2.INode;
+import org.jnode.fs.ext4.Extent;
+import org.jnode.fs.ext4.ExtentHeader;
 import org.jnode.test.fs.DataStructureAsserts;
 import org.jnode.test.fs.FileSystemTestUtils;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 public class Ext4FileSystemTest {
 
     private Device device;
 
+    @TempDir
+    Path tmp;
+
     @Test
     public void testReadExt4SpecialFiles() throws Exception {
 
@@ -130,6 +146,31 @@ public class Ext4FileSystemTest {
         assertEquals(65001, childCount);
     }
 
+    @Test
+    public void testLookupExt4LargeDirectoryWithIndex() throws Exception {
+
+        device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ext4/ext4-large-dir-with-index.dd"), "r");
+        Ext2FileSystemType type = FileSystemType.lookup(Ext2FileSystemType.class);
+
+        // collect the names with a full listing
+        Ext2FileSystem fs = type.create(device, true);
+        List<String> names = new ArrayList<>();
+        Iterator<? extends FSEntry> iterator = fs.getRootEntry().getDirectory().getEntry("large-directory").getDirectory().iterator();
+        while (iterator.hasNext()) {
+            names.add(iterator.next().getName());
+        }
+
+        // look the names up through the index on a fresh mount
+        fs = type.create(device, true);
+        FSDirectory largeDirectory = fs.getRootEntry().getDirectory().getEntry("large-directory").getDirectory();
+        for (String name : names) {
+            FSEntry entry = largeDirectory.getEntry(name);
+            assertNotNull(entry, name);
+            assertEquals(name, entry.getName());
+        }
+        assertNull(largeDirectory.getEntry("no-such-entry"));
+    }
+
     @Test
     public void testReadExt4FlexBG() throws Exception {
 
@@ -171,4 +212,67 @@ public class Ext4FileSystemTest {
 
         DataStructureAsserts.assertStructure(fs, expectedStructure);
     }
+
+    @Test
+    public void testExtentMapMultiLevel() throws Exception {
+
+        // 'sparse.bin' has 26 extents in runs of 1 to 3 blocks, too many for the inode so they are in an index block
+        device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ext4/ext4-multi-level-extents.dd"), "r");
+        Ext2FileSystemType type = FileSystemType.lookup(Ext2FileSystemType.class);
+        Ext2FileSystem fs = type.create(device, true);
+
+        INode iNode = ((Ext2Entry) fs.getRootEntry().getDirectory().getEntry("sparse.bin")).getINode();
+        ExtentHeader header = new ExtentHeader(iNode.getINodeBlockData());
+        assertEquals(1, header.getDepth());
+
+        // holes included, they map as the extent tree lookup does
+        for (long i = 0; i < iNode.getSizeInBlocks(); i++) {
+            assertExtentLookup(fs, iNode, header, i);
+        }
+    }
+
+    @Test
+    public void testExtentMapRebuilt() throws Exception {
+
+        Path copy = tmp.resolve("ext4-multi-level-extents.dd");
+        Files.copy(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ext4/ext4-multi-level-extents.dd").toPath(), copy,
+                StandardCopyOption.REPLACE_EXISTING);
+        device = new FileDevice(copy.toFile(), "rw");
+        Ext2FileSystemType type = FileSystemType.lookup(Ext2FileSystemType.class);
+        Ext2FileSystem fs = type.create(device, false);
+
+        // 'small.bin' is a single extent of 5 blocks, block pointers are written over the extent entries as the
+        // inode is grown and shrunk, the 6th one is the start of the extent
+        Ext2Entry entry = (Ext2Entry) fs.getRootEntry().getDirectory().getEntry("small.bin");
+        INode iNode = entry.getINode();
+        long blockNr = iNode.getDataBlockNr(0);
+
+        // allocateDataBlock
+        entry.getFile().setLength(6 * 1024);
+        iNode = fs.getINode(iNode.getINodeNr());
+        long allocated = iNode.getDataBlockNr(0);
+        assertNotEquals(blockNr, allocated);
+        for (long i = 0; i < 6; i++) {
+            assertExtentLookup(fs, iNode, new ExtentHeader(iNode.getINodeBlockData()), i);
+        }
+
+        // freeDataBlock
+        entry.getFile().setLength(5 * 1024);
+        iNode = fs.getINode(iNode.getINodeNr());
+        assertNotEquals(allocated, iNode.getDataBlockNr(0));
+        for (long i = 0; i < 5; i++) {
+            assertExtentLookup(fs, iNode, new ExtentHeader(iNode.getINodeBlockData()), i);
+        }
+    }
+
+    /** compares the cached extent map of the inode with a walk of the extent tree */
+    private static void assertExtentLookup(Ext2FileSystem fs, INode iNode, ExtentHeader header, long i) throws Exception {
+        long blockNr = iNode.getDataBlockNr(i);
+        assertEquals(header.getBlockNumber(fs, i), blockNr, "block " + i);
+
+        Extent extent = header.getExtent(fs, i);
+        long end = extent.getBlockIndex() + extent.getLength();
+        assertEquals(Math.max(1, Math.min(64, end - i)), iNode.getContiguousBlockCount(i, blockNr, 64), "run " + i);
+        assertEquals(Math.max(1, Math.min(2, end - i)), iNode.getContiguousBlockCount(i, blockNr, 2), "run " + i);
+    }
 }
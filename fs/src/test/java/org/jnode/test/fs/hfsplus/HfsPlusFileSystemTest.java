@@ -21,26 +21,38 @@
 package org.jnode.test.fs.hfsplus;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Random;
 
 import org.jnode.driver.Device;
 import org.jnode.driver.block.FileDevice;
 import org.jnode.fs.FSDirectory;
+import org.jnode.fs.FSEntry;
+import org.jnode.fs.FSFile;
 import org.jnode.fs.FileSystemType;
 import org.jnode.fs.hfsplus.HFSPlusParams;
 import org.jnode.fs.hfsplus.HfsPlusFileSystem;
 import org.jnode.fs.hfsplus.HfsPlusFileSystemFormatter;
 import org.jnode.fs.hfsplus.HfsPlusFileSystemType;
 import org.jnode.fs.hfsplus.SuperBlock;
+import org.jnode.fs.hfsplus.catalog.CatalogNodeId;
+import org.jnode.fs.hfsplus.compression.ChunkCache;
+import org.jnode.fs.hfsplus.tree.LeafRecord;
+import org.jnode.fs.hfsplus.tree.NodeCache;
 import org.jnode.test.fs.DataStructureAsserts;
 import org.jnode.test.fs.FileSystemTestUtils;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HfsPlusFileSystemTest {
@@ -231,6 +243,152 @@ public class HfsPlusFileSystemTest {
         DataStructureAsserts.assertStructure(fs, expectedStructure);
     }
 
+    @Test
+    public void testReadAtOffsets() throws Exception {
+        assertReadAtOffsets("org/jnode/test/fs/hfsplus/test.hfsplus");
+        // zlib compressed into the resource fork, pieces start in the middle of chunks
+        assertReadAtOffsets("org/jnode/test/fs/hfsplus/large-compressed.dmg");
+    }
+
+    private static void assertReadAtOffsets(String image) throws Exception {
+        Device device = new FileDevice(FileSystemTestUtils.getTestFile(image), "r");
+        HfsPlusFileSystemType type = FileSystemType.lookup(HfsPlusFileSystemType.class);
+        HfsPlusFileSystem fs = type.create(device, true);
+
+        Iterator<? extends FSEntry> iterator = fs.getRootEntry().getDirectory().iterator();
+        while (iterator.hasNext()) {
+            FSEntry entry = iterator.next();
+            if (!entry.isFile()) {
+                continue;
+            }
+            FSFile file = entry.getFile();
+            ByteBuffer whole = ByteBuffer.allocate((int) file.getLength());
+            file.read(0, whole);
+
+            // odd sized pieces cross block and extent boundaries at many offsets
+            ByteBuffer pieces = ByteBuffer.allocate(whole.capacity());
+            while (pieces.hasRemaining()) {
+                ByteBuffer piece = ByteBuffer.allocate(Math.min(999, pieces.remaining()));
+                file.read(pieces.position(), piece);
+                assertEquals(piece.limit(), piece.position());
+                pieces.put(piece.flip());
+            }
+            assertArrayEquals(whole.array(), pieces.array(), entry.getName());
+        }
+    }
+
+    @Test
+    public void testNodeCache() throws Exception {
+        Device device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/hfsplus/hard-linked-files.dmg"), "r");
+        HfsPlusFileSystemType type = FileSystemType.lookup(HfsPlusFileSystemType.class);
+        HfsPlusFileSystem fs = type.create(device, true);
+        NodeCache cache = fs.getNodeCache();
+
+        LeafRecord[] records = fs.getCatalog().getRecords(CatalogNodeId.HFSPLUS_ROOT_CNID);
+        long misses = cache.getMissCount();
+        long hits = cache.getHitCount();
+        assertTrue(misses > 0);
+        assertTrue(cache.size() > 0);
+
+        // the same lookup again is served from memory
+        assertEquals(records.length, fs.getCatalog().getRecords(CatalogNodeId.HFSPLUS_ROOT_CNID).length);
+        assertEquals(misses, cache.getMissCount());
+        assertTrue(cache.getHitCount() > hits);
+
+        // with only the pinned levels left the leaves are read again
+        cache.setCacheSize(0);
+        assertEquals(records.length, fs.getCatalog().getRecords(CatalogNodeId.HFSPLUS_ROOT_CNID).length);
+        assertTrue(cache.getMissCount() > misses);
+    }
+
+    @Test
+    public void testChunkCache() throws Exception {
+        Device device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/hfsplus/large-compressed.dmg"), "r");
+        HfsPlusFileSystemType type = FileSystemType.lookup(HfsPlusFileSystemType.class);
+        HfsPlusFileSystem fs = type.create(device, true);
+        ChunkCache cache = fs.getChunkCache();
+        fs.getChunkReadAhead().setThreads(0);
+
+        FSFile file = fs.getRootEntry().getDirectory().getEntry("large-useless-text.txt").getFile();
+        ByteBuffer whole = ByteBuffer.allocate((int) file.getLength());
+        file.read(0, whole);
+        int chunks = (whole.capacity() + 0xffff) / 0x10000;
+        assertEquals(chunks, cache.size());
+        assertEquals(chunks, cache.getMissCount());
+
+        // small reads within a chunk decompress nothing again
+        ByteBuffer piece = ByteBuffer.allocate(100);
+        for (int offset = 0; offset + piece.capacity() <= whole.capacity(); offset += 4096) {
+            file.read(offset, piece.clear());
+            assertArrayEquals(Arrays.copyOfRange(whole.array(), offset, offset + piece.capacity()), piece.array());
+        }
+        assertEquals(chunks, cache.getMissCount());
+        assertTrue(cache.getHitCount() > 0);
+
+        cache.setCacheSize(0);
+        assertEquals(0, cache.size());
+        file.read(0, piece.clear());
+        assertEquals(chunks + 1, cache.getMissCount());
+    }
+
+    @Test
+    public void testChunkReadAhead() throws Exception {
+        Device device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/hfsplus/large-compressed.dmg"), "r");
+        HfsPlusFileSystemType type = FileSystemType.lookup(HfsPlusFileSystemType.class);
+        HfsPlusFileSystem fs = type.create(device, true);
+        ChunkCache cache = fs.getChunkCache();
+        fs.getChunkReadAhead().setThreads(2);
+        fs.getChunkReadAhead().setChunks(2);
+
+        FSFile file = fs.getRootEntry().getDirectory().getEntry("large-useless-text.txt").getFile();
+        ByteBuffer head = ByteBuffer.allocate(100);
+        file.read(0, head);
+        assertEquals(1, cache.getMissCount());
+
+        // the second chunk is decompressed in the background
+        for (int i = 0; i < 100 && cache.size() < 2; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, cache.size());
+
+        // and the sequential read continuing from there finds it
+        ByteBuffer tail = ByteBuffer.allocate((int) file.getLength() - head.capacity());
+        file.read(head.capacity(), tail);
+        assertEquals(1, cache.getMissCount());
+
+        fs.getChunkCache().clear();
+        fs.getChunkReadAhead().setThreads(0);
+        ByteBuffer whole = ByteBuffer.allocate((int) file.getLength());
+        file.read(0, whole);
+        assertArrayEquals(Arrays.copyOfRange(whole.array(), 0, head.capacity()), head.array());
+        assertArrayEquals(Arrays.copyOfRange(whole.array(), head.capacity(), whole.capacity()), tail.array());
+        fs.close();
+    }
+
+    @Test
+    public void testGetEntry() throws Exception {
+        Device device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/hfsplus/hard-linked-directories.dmg"), "r");
+        HfsPlusFileSystemType type = FileSystemType.lookup(HfsPlusFileSystemType.class);
+        HfsPlusFileSystem fs = type.create(device, true);
+
+        // every listed entry is found by a lookup on a directory which hasn't been listed
+        assertGetEntry(fs.getRootEntry().getDirectory(), fs.getRootEntry().getDirectory());
+    }
+
+    private static void assertGetEntry(FSDirectory listed, FSDirectory fresh) throws IOException {
+        for (Iterator<? extends FSEntry> i = listed.iterator(); i.hasNext(); ) {
+            FSEntry entry = i.next();
+            FSEntry found = fresh.getEntry(entry.getName());
+            assertNotNull(found, entry.getName());
+            assertEquals(entry.getName(), found.getName());
+            assertEquals(entry.getId(), found.getId());
+            if (entry.isDirectory() && !".".equals(entry.getName()) && !"..".equals(entry.getName())) {
+                assertGetEntry(entry.getDirectory(), found.getDirectory());
+            }
+        }
+        assertNull(fresh.getEntry("no such entry"));
+    }
+
     @Test
     @Disabled("test file missing")
     public void testDiskWithLzvnCompression() throws Exception {
@@ -22,27 +22,49 @@ package org.jnode.test.fs.jfat;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jnode.driver.Device;
 import org.jnode.driver.block.FileDevice;
+import org.jnode.fs.FSFile;
 import org.jnode.fs.FileSystem;
 import org.jnode.fs.FileSystemType;
+import org.jnode.fs.jfat.Fat;
+import org.jnode.fs.jfat.FatCache;
+import org.jnode.fs.jfat.FatChain;
+import org.jnode.fs.jfat.FatFile;
 import org.jnode.fs.jfat.FatFileSystem;
 import org.jnode.fs.jfat.FatFileSystemType;
 import org.jnode.partitions.PartitionTable;
 import org.jnode.test.fs.DataStructureAsserts;
 import org.jnode.test.fs.FileSystemTestUtils;
+import org.jnode.util.StopWatch;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
 
 import vavi.util.Debug;
 import vavi.util.properties.annotation.Property;
 import vavi.util.properties.annotation.PropsEntity;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @PropsEntity(url = "file://${user.dir}/local.properties")
 public class FatFileSystemTest {
@@ -60,6 +82,9 @@ public class FatFileSystemTest {
         }
     }
 
+    @TempDir
+    Path tmp;
+
     static boolean localPropertiesExists() {
         return Files.exists(Paths.get("local.properties"));
     }
@@ -73,7 +98,7 @@ public class FatFileSystemTest {
 
         String expectedStructure =
                 """
-                        vol: total:-1 free:-1
+                        vol: total:104026112 free:104019968
                           ;\s
                             dir1;\s
                               test.txt; 18; 80aeb09eb86de4c4a7d1f877451dc2a2
@@ -94,7 +119,7 @@ public class FatFileSystemTest {
 
         String expectedStructure =
                 """
-                        vol: total:-1 free:-1
+                        vol: total:104634368 free:104624128
                           ;\s
                             dir1;\s
                               test.txt; 18; 80aeb09eb86de4c4a7d1f877451dc2a2
@@ -123,4 +148,307 @@ Debug.println("\n: " + actual);
 
         assertNotNull(fs);
     }
+
+    /** copies a test image so that files can be written into it */
+    FatFileSystem createWritable(String image) throws Exception {
+        Path copy = tmp.resolve(Paths.get(image).getFileName());
+        Files.copy(FileSystemTestUtils.getTestFile(image).toPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+        FatFileSystemType type = FileSystemType.lookup(FatFileSystemType.class);
+        return type.create(new FileDevice(copy.toFile(), "rw"), false);
+    }
+
+    /** writes the data cluster by cluster into the files in turn, so their chains interleave */
+    static void writeInterleaved(FatFileSystem fs, FSFile[] files, byte[][] data) throws IOException {
+        int clusterSize = fs.getClusterSize();
+        for (int offset = 0; offset < data[0].length; offset += clusterSize) {
+            for (int f = 0; f < files.length; f++) {
+                int length = Math.min(clusterSize, data[f].length - offset);
+                files[f].write(offset, ByteBuffer.wrap(data[f], offset, length));
+            }
+        }
+    }
+
+    static byte[] read(FSFile file, int offset, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        file.read(offset, buf);
+        return buf.array();
+    }
+
+    @Test
+    public void testClusterRuns() throws Exception {
+        FatFileSystem fs = createWritable("org/jnode/test/fs/jfat/test.fat32");
+        int clusterSize = fs.getClusterSize();
+        Random random = new Random(1234);
+
+        byte[] contiguous = new byte[clusterSize * 40 + 123];
+        random.nextBytes(contiguous);
+        FSFile file = fs.getRootEntry().getDirectory().addFile("runs.bin").getFile();
+        file.write(0, ByteBuffer.wrap(contiguous));
+
+        byte[][] fragmented = new byte[2][clusterSize * 20 + 45];
+        random.nextBytes(fragmented[0]);
+        random.nextBytes(fragmented[1]);
+        FSFile[] files = {
+            fs.getRootEntry().getDirectory().addFile("frag1.bin").getFile(),
+            fs.getRootEntry().getDirectory().addFile("frag2.bin").getFile()
+        };
+        writeInterleaved(fs, files, fragmented);
+
+        // a write spanning runs of both files
+        byte[] patch = new byte[clusterSize * 3];
+        random.nextBytes(patch);
+        files[0].write(clusterSize / 2, ByteBuffer.wrap(patch));
+        System.arraycopy(patch, 0, fragmented[0], clusterSize / 2, patch.length);
+        fs.flush();
+
+        assertArrayEquals(contiguous, read(file, 0, contiguous.length));
+        for (int f = 0; f < files.length; f++) {
+            assertArrayEquals(fragmented[f], read(files[f], 0, fragmented[f].length));
+            // reads starting and ending inside clusters
+            int offset = clusterSize - 7;
+            int length = clusterSize * 5 + 11;
+            byte[] expected = new byte[length];
+            System.arraycopy(fragmented[f], offset, expected, 0, length);
+            assertArrayEquals(expected, read(files[f], offset, length));
+        }
+        fs.close();
+    }
+
+    /** the chain size by following the fat */
+    static int walk(FatChain chain) throws IOException {
+        int count = 0;
+        for (FatChain.ChainIterator i = chain.listIterator(); i.hasNext(); i.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testChainRuns() throws Exception {
+        FatFileSystem fs = createWritable("org/jnode/test/fs/jfat/test.fat32");
+        int clusterSize = fs.getClusterSize();
+        Random random = new Random(1);
+
+        // appends to two files in turn
+        FatFile[] files = {
+            (FatFile) fs.getRootEntry().getDirectory().addFile("a.bin").getFile(),
+            (FatFile) fs.getRootEntry().getDirectory().addFile("b.bin").getFile()
+        };
+        byte[][] expected = new byte[2][0];
+        for (int k = 0; k < 200; k++) {
+            int f = k % 3 == 0 ? 1 : 0;
+            byte[] data = new byte[random.nextInt(3 * clusterSize) + 1];
+            random.nextBytes(data);
+            files[f].write(expected[f].length, ByteBuffer.wrap(data));
+            byte[] grown = Arrays.copyOf(expected[f], expected[f].length + data.length);
+            System.arraycopy(data, 0, grown, expected[f].length, data.length);
+            expected[f] = grown;
+        }
+        for (int f = 0; f < files.length; f++) {
+            FatChain chain = files[f].getChain();
+            assertEquals((expected[f].length + clusterSize - 1) / clusterSize, chain.size());
+            assertEquals(walk(chain), chain.size());
+            assertArrayEquals(expected[f], read(files[f], 0, expected[f].length));
+            for (int k = 0; k < 50; k++) {
+                int offset = random.nextInt(expected[f].length);
+                int length = Math.min(expected[f].length - offset, random.nextInt(5 * clusterSize) + 1);
+                assertArrayEquals(Arrays.copyOfRange(expected[f], offset, offset + length), read(files[f], offset, length));
+            }
+        }
+
+        // truncate and grow again
+        int length = expected[0].length / 3 + 17;
+        files[0].setLength(length);
+        assertEquals((length + clusterSize - 1) / clusterSize, files[0].getChain().size());
+        assertEquals(walk(files[0].getChain()), files[0].getChain().size());
+        byte[] data = new byte[5 * clusterSize];
+        random.nextBytes(data);
+        files[0].write(length, ByteBuffer.wrap(data));
+        assertEquals(walk(files[0].getChain()), files[0].getChain().size());
+        assertArrayEquals(Arrays.copyOf(expected[0], length), read(files[0], 0, length));
+        assertArrayEquals(data, read(files[0], length, data.length));
+
+        // a write past the end of the chain
+        FatFile sparse = (FatFile) fs.getRootEntry().getDirectory().addFile("c.bin").getFile();
+        sparse.write(0, ByteBuffer.wrap(data, 0, 10));
+        sparse.write(3L * clusterSize + 5, ByteBuffer.wrap(data, 0, 100));
+        assertEquals(4, sparse.getChain().size());
+        assertEquals(walk(sparse.getChain()), sparse.getChain().size());
+        assertArrayEquals(Arrays.copyOf(data, 10), read(sparse, 0, 10));
+        assertArrayEquals(Arrays.copyOf(data, 100), read(sparse, 3 * clusterSize + 5, 100));
+
+        // and past the end of an empty chain
+        FatFile empty = (FatFile) fs.getRootEntry().getDirectory().addFile("d.bin").getFile();
+        empty.write(3L * clusterSize + 5, ByteBuffer.wrap(data, 0, 100));
+        assertEquals(4, empty.getChain().size());
+        assertEquals(walk(empty.getChain()), empty.getChain().size());
+        assertArrayEquals(new byte[3 * clusterSize + 5], read(empty, 0, 3 * clusterSize + 5));
+        assertArrayEquals(Arrays.copyOf(data, 100), read(empty, 3 * clusterSize + 5, 100));
+        fs.close();
+    }
+
+    @Test
+    public void testFreeSpace() throws Exception {
+        FatFileSystem fs = createWritable("org/jnode/test/fs/jfat/test.fat32");
+        int clusterSize = fs.getClusterSize();
+        long free = fs.getFreeSpace();
+        assertEquals(104019968, free);
+
+        byte[] data = new byte[clusterSize * 100 + 1];
+        new Random(2).nextBytes(data);
+        FatFile file = (FatFile) fs.getRootEntry().getDirectory().addFile("free.bin").getFile();
+        file.write(0, ByteBuffer.wrap(data));
+        assertEquals(free - 101L * clusterSize, fs.getFreeSpace());
+        // the clusters are allocated as one run
+        assertEquals(file.getChain().getStartCluster() + 100, file.getChain().listIterator(100).next());
+
+        file.setLength(clusterSize);
+        assertEquals(free - clusterSize, fs.getFreeSpace());
+        fs.getRootEntry().getDirectory().remove("free.bin");
+        assertEquals(free, fs.getFreeSpace());
+        fs.close();
+    }
+
+    @Test
+    public void testFreeSpaceWhileSetting() throws Exception {
+        createWritable("org/jnode/test/fs/jfat/test.fat32").close();
+        Path copy = tmp.resolve("test.fat32");
+        FatFileSystemType type = FileSystemType.lookup(FatFileSystemType.class);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int round = 0; round < 20; round++) {
+                FatFileSystem fs = type.create(new FileDevice(copy.toFile(), "rw"), false);
+                Fat fat = fs.getFat();
+                int first = fat.size() - 200;
+
+                // allocates and frees the last clusters while the free map is built for the first time
+                CountDownLatch started = new CountDownLatch(1);
+                Future<?> setter = executor.submit(() -> {
+                    for (int n = 0; n < 20; n++) {
+                        for (int i = first; i < fat.size(); i++) {
+                            fat.set(i, fat.eofChain());
+                            started.countDown();
+                        }
+                        for (int i = first; i < fat.size(); i++) {
+                            fat.set(i, 0);
+                        }
+                    }
+                    return null;
+                });
+                started.await();
+                fs.getFreeSpace();
+                setter.get();
+
+                long free = fs.getFreeSpace();
+                fs.close();
+
+                fs = type.create(new FileDevice(copy.toFile(), "r"), true);
+                assertEquals(fs.getFreeSpace(), free, "round " + round);
+                fs.close();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        FatFileSystem fs = createWritable("org/jnode/test/fs/jfat/test.fat32");
+        int clusterSize = fs.getClusterSize();
+        Random random = new Random(3);
+
+        byte[][] data = new byte[4][clusterSize * 64 + 17];
+        FSFile[] files = new FSFile[data.length];
+        for (int f = 0; f < data.length; f++) {
+            random.nextBytes(data[f]);
+            files[f] = fs.getRootEntry().getDirectory().addFile("conc" + f + ".bin").getFile();
+        }
+        writeInterleaved(fs, files, data);
+        fs.flush();
+
+        // a tiny budget keeps the readers evicting each other's fat sectors
+        FatCache cache = fs.getFat().getCache();
+        cache.setMaxBytes(512);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int f = t % files.length;
+                Random r = new Random(t);
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 200; n++) {
+                        int offset = r.nextInt(data[f].length - 1);
+                        int length = 1 + r.nextInt(Math.min(clusterSize * 5, data[f].length - offset));
+                        assertArrayEquals(Arrays.copyOfRange(data[f], offset, offset + length), read(files[f], offset, length));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(cache.usedEntries() <= cache.getCacheSize());
+        assertTrue(cache.getHit() <= cache.getAccess());
+Debug.println("fat cache: access " + cache.getAccess() + ", hit " + cache.getHit() + ", ratio " + cache.getRatio());
+        fs.close();
+    }
+
+    /** run with -Dbenchmark=true */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkClusterRuns() throws Exception {
+        // new files can be written on fat32 only, fat16 writes the first cluster into the fixed root directory
+        for (String image : new String[] {"org/jnode/test/fs/jfat/test.fat32"}) {
+            FatFileSystem fs = createWritable(image);
+            int clusterSize = fs.getClusterSize();
+            int length = 10 * 1024 * 1024;
+            Random random = new Random(0);
+
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            FSFile contiguous = fs.getRootEntry().getDirectory().addFile("contig.bin").getFile();
+            StopWatch sw = new StopWatch();
+            contiguous.write(0, ByteBuffer.wrap(data));
+            sw.stop();
+Debug.println(image + ": cluster " + clusterSize + ", contiguous write: " + sw);
+
+            byte[][] fragmented = new byte[2][length / 4];
+            random.nextBytes(fragmented[0]);
+            random.nextBytes(fragmented[1]);
+            FSFile[] files = {
+                fs.getRootEntry().getDirectory().addFile("frag1.bin").getFile(),
+                fs.getRootEntry().getDirectory().addFile("frag2.bin").getFile()
+            };
+            writeInterleaved(fs, files, fragmented);
+            fs.flush();
+
+            for (int loop = 0; loop < 2; loop++) {
+                sw = new StopWatch();
+                read(contiguous, 0, length);
+                sw.stop();
+Debug.println(image + ": contiguous read: " + sw);
+
+                // one cluster per read, as the chain used to be read
+                sw = new StopWatch();
+                ByteBuffer buf = ByteBuffer.allocate(clusterSize);
+                for (int offset = 0; offset < length; offset += clusterSize) {
+                    buf.clear();
+                    contiguous.read(offset, buf);
+                }
+                sw.stop();
+Debug.println(image + ": contiguous read per cluster: " + sw);
+
+                sw = new StopWatch();
+                read(files[0], 0, fragmented[0].length);
+                sw.stop();
+Debug.println(image + ": fragmented read: " + sw);
+            }
+            fs.close();
+        }
+    }
 }
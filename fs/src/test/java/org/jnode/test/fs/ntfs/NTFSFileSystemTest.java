@@ -20,19 +20,54 @@
 
 package org.jnode.test.fs.ntfs;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
 import org.jnode.driver.Device;
 import org.jnode.driver.block.FileDevice;
+import org.jnode.fs.FSDirectory;
+import org.jnode.fs.FSEntry;
+import org.jnode.fs.FSFile;
 import org.jnode.fs.FSFileSlackSpace;
 import org.jnode.fs.FileSystemType;
+import org.jnode.fs.ntfs.CompressedDataRun;
+import org.jnode.fs.ntfs.DataRun;
+import org.jnode.fs.ntfs.DataRunInterface;
 import org.jnode.fs.ntfs.FileRecord;
+import org.jnode.fs.ntfs.MasterFileTable;
 import org.jnode.fs.ntfs.NTFSEntry;
 import org.jnode.fs.ntfs.NTFSFileSystem;
 import org.jnode.fs.ntfs.NTFSFileSystemType;
+import org.jnode.fs.ntfs.NTFSVolume;
+import org.jnode.fs.ntfs.UsnJournalEntry;
+import org.jnode.fs.ntfs.UsnJournalReader;
+import org.jnode.fs.ntfs.attribute.NTFSAttribute;
+import org.jnode.fs.ntfs.attribute.NTFSNonResidentAttribute;
 import org.jnode.test.fs.DataStructureAsserts;
 import org.jnode.test.fs.FileSystemTestUtils;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class NTFSFileSystemTest {
 
@@ -213,6 +248,341 @@ public class NTFSFileSystemTest {
         DataStructureAsserts.assertStructure(fs, expectedStructure);
     }
 
+    @Test
+    public void testGetEntry() throws Exception {
+
+        device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ntfs/ntfs-links.dd"), "r");
+        NTFSFileSystemType type = FileSystemType.lookup(NTFSFileSystemType.class);
+        NTFSFileSystem fs = type.create(device, true);
+
+        assertGetEntry(fs.getRootEntry().getDirectory(), 0);
+    }
+
+    /** the index lookup must find every entry the iterator lists */
+    private static void assertGetEntry(FSDirectory directory, int depth) throws Exception {
+        Iterator<? extends FSEntry> iterator = directory.iterator();
+        while (iterator.hasNext()) {
+            FSEntry entry = iterator.next();
+            FSEntry found = directory.getEntry(entry.getName());
+            assertNotNull(found, entry.getName());
+            assertEquals(entry.getId(), found.getId());
+            if (entry.isDirectory() && !entry.getName().equals(".") && depth < 4) {
+                assertGetEntry(entry.getDirectory(), depth + 1);
+            }
+        }
+        assertNull(directory.getEntry("no such entry"));
+    }
+
+    @Test
+    public void testRecordCache() throws Exception {
+
+        device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ntfs/ntfs-links.dd"), "r");
+        NTFSFileSystemType type = FileSystemType.lookup(NTFSFileSystemType.class);
+        NTFSFileSystem fs = type.create(device, true);
+        MasterFileTable mft = fs.getNTFSVolume().getMFT();
+        int recordSize = fs.getNTFSVolume().getBootRecord().getFileRecordSize();
+        int records = (int) (mft.getMftLength() / recordSize);
+
+        // the run map must read the same bytes as the attribute path
+        for (int i = 0; i < records; i++) {
+            byte[] expected = new byte[recordSize];
+            mft.readData((long) i * recordSize, expected, 0, recordSize);
+            assertArrayEquals(expected, mft.readRecord(i), "record " + i);
+        }
+
+        FileRecord root = mft.getRecord(MasterFileTable.SystemFiles.ROOT);
+        assertSame(root, mft.getRecord(MasterFileTable.SystemFiles.ROOT));
+        assertSame(root, mft.getRecord(MasterFileTable.SystemFiles.ROOT, root.getSequenceNumber()));
+        // a reference with another sequence number drops the cached copy and reads the record again
+        FileRecord reread = mft.getRecord(MasterFileTable.SystemFiles.ROOT, root.getSequenceNumber() + 1);
+        assertNotSame(root, reread);
+        assertSame(reread, mft.getRecord(MasterFileTable.SystemFiles.ROOT));
+
+        mft.setRecordCacheSize(8);
+        assertTrue(mft.getCachedRecordCount() <= 8);
+        mft.setRecordCacheSize(records);
+        int preloaded = mft.preloadRecords(0, records);
+        assertTrue(preloaded >= MasterFileTable.SystemFiles.FIRST_USER, "preloaded: " + preloaded);
+        assertTrue(mft.getCachedRecordCount() >= preloaded);
+
+        mft.setRecordCacheSize(0);
+        assertEquals(0, mft.getCachedRecordCount());
+        assertNotSame(mft.getRecord(MasterFileTable.SystemFiles.ROOT), mft.getRecord(MasterFileTable.SystemFiles.ROOT));
+    }
+
+    @Test
+    public void testBufferReads() throws Exception {
+
+        device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ntfs/test.ntfs"), "r");
+        NTFSFileSystemType type = FileSystemType.lookup(NTFSFileSystemType.class);
+        NTFSFileSystem fs = type.create(device, true);
+        int clusterSize = fs.getNTFSVolume().getClusterSize();
+
+        int files = 0;
+        for (Iterator<? extends FSEntry> i = fs.getRootEntry().getDirectory().iterator(); i.hasNext(); ) {
+            FSEntry entry = i.next();
+            if (!entry.isFile() || entry.getFile().getLength() < 3L * clusterSize) {
+                continue;
+            }
+            FSFile file = entry.getFile();
+            int length = (int) Math.min(file.getLength(), 1024 * 1024);
+            ByteBuffer whole = ByteBuffer.allocate(length);
+            file.read(0, whole);
+            assertEquals(length, whole.position());
+
+            // unaligned head and tail around whole clusters, into a direct buffer not starting at 0
+            Random random = new Random(length);
+            for (int n = 0; n < 10; n++) {
+                int offset = random.nextInt(length - 1);
+                int size = 1 + random.nextInt(length - offset);
+                ByteBuffer direct = ByteBuffer.allocateDirect(size + 7);
+                direct.position(7);
+                file.read(offset, direct);
+                assertEquals(size + 7, direct.position());
+
+                byte[] actual = new byte[size];
+                direct.position(7);
+                direct.get(actual);
+                assertArrayEquals(Arrays.copyOfRange(whole.array(), offset, offset + size), actual,
+                    entry.getName() + " at " + offset + " size " + size);
+            }
+            files++;
+        }
+        assertTrue(files > 0);
+    }
+
+    @Test
+    public void testRunIndex() throws Exception {
+
+        device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ntfs/test.ntfs"), "r");
+        NTFSFileSystemType type = FileSystemType.lookup(NTFSFileSystemType.class);
+        NTFSFileSystem fs = type.create(device, true);
+        NTFSVolume volume = fs.getNTFSVolume();
+        int clusterSize = volume.getClusterSize();
+        MasterFileTable mft = volume.getMFT();
+
+        // a copy of the mft data attribute with a heavily fragmented run list mapped onto the first clusters
+        NTFSAttribute mftData = mft.findAttributesByTypeAndName(NTFSAttribute.Types.DATA, null).next();
+        NTFSNonResidentAttribute attr = new NTFSNonResidentAttribute(mft, mftData.getOffset(), 0);
+        attr.getDataRuns().clear();
+        Random random = new Random(0);
+        List<Long> lcns = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            int length = 1 + random.nextInt(3);
+            boolean sparse = random.nextInt(10) == 0;
+            long lcn = sparse ? 0 : random.nextInt(4096);
+            attr.getDataRuns().add(new DataRun(lcn, length, sparse, 0, lcns.size()));
+            for (int j = 0; j < length; j++) {
+                lcns.add(sparse ? -1 : lcn + j);
+            }
+        }
+
+        for (int n = 0; n < 200; n++) {
+            int vcn = random.nextInt(lcns.size());
+            int nrClusters = 1 + random.nextInt(Math.min(64, lcns.size() - vcn));
+            byte[] expected = new byte[nrClusters * clusterSize];
+            for (int i = 0; i < nrClusters; i++) {
+                if (lcns.get(vcn + i) >= 0) {
+                    volume.readCluster(lcns.get(vcn + i), expected, i * clusterSize);
+                }
+            }
+
+            byte[] actual = new byte[expected.length];
+            assertEquals(nrClusters, attr.readVCN(vcn, actual, 0, nrClusters));
+            assertArrayEquals(expected, actual, "vcn " + vcn);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(expected.length + clusterSize);
+            assertEquals(nrClusters, attr.readVCN(vcn, direct, clusterSize, nrClusters));
+            direct.position(clusterSize);
+            direct.get(actual);
+            assertArrayEquals(expected, actual, "vcn " + vcn);
+        }
+    }
+
+    @Test
+    public void testCompressedUnitCache() throws Exception {
+
+        File image = File.createTempFile("compressed", ".ntfs");
+        image.deleteOnExit();
+        Files.copy(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ntfs/test.ntfs").toPath(), image.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+        FileDevice fileDevice = new FileDevice(image, "rw");
+        device = fileDevice;
+        NTFSFileSystemType type = FileSystemType.lookup(NTFSFileSystemType.class);
+        NTFSFileSystem fs = type.create(device, true);
+        NTFSVolume volume = fs.getNTFSVolume();
+        int clusterSize = volume.getClusterSize();
+        int unitSize = 16;
+
+        // a stored block of random bytes, a compressed block of 'A's and the end of the sequence
+        byte[] random = new byte[4096];
+        new Random(0).nextBytes(random);
+        ByteBuffer compressed = ByteBuffer.allocate(4096 + 8 + 2).order(ByteOrder.LITTLE_ENDIAN);
+        compressed.putShort((short) 0x3fff).put(random);
+        compressed.putShort((short) 0xb003).put((byte) 0x02).put((byte) 'A').putShort((short) 0x0ffc);
+        compressed.putShort((short) 0);
+        int compClusters = (compressed.capacity() + clusterSize - 1) / clusterSize;
+        long lcn = 1000;
+        fileDevice.write(lcn * clusterSize, ByteBuffer.wrap(new byte[compClusters * clusterSize]));
+        fileDevice.write(lcn * clusterSize, compressed.flip());
+
+        byte[] expected = new byte[unitSize * clusterSize];
+        System.arraycopy(random, 0, expected, 0, 4096);
+        Arrays.fill(expected, 4096, 8192, (byte) 'A');
+
+        CompressedDataRun.UnitCache cache = new CompressedDataRun.UnitCache();
+        long vcn = 32;
+        CompressedDataRun run = new CompressedDataRun(new DataRun(lcn, compClusters, false, 0, vcn), unitSize, cache);
+
+        for (int cacheSize : new int[] {CompressedDataRun.UnitCache.DEFAULT_CACHE_SIZE, 0}) {
+            cache.setCacheSize(cacheSize);
+
+            // single clusters from the end first, so a scratch buffer holds stale data of a longer read
+            for (int i = unitSize - 1; i >= 0; i--) {
+                byte[] actual = new byte[clusterSize];
+                assertEquals(1, run.readClusters(vcn + i, actual, 0, 1, clusterSize, volume));
+                assertArrayEquals(Arrays.copyOfRange(expected, i * clusterSize, (i + 1) * clusterSize), actual,
+                    "cluster " + i);
+            }
+
+            // the whole unit from before its start, into a direct buffer
+            ByteBuffer direct = ByteBuffer.allocateDirect((unitSize + 1) * clusterSize);
+            assertEquals(unitSize, run.readClusters(vcn - 1, direct, 0, unitSize + 1, clusterSize, volume));
+            byte[] actual = new byte[expected.length];
+            direct.position(clusterSize);
+            direct.get(actual);
+            assertArrayEquals(expected, actual);
+        }
+
+        assertEquals(0, cache.size());
+        assertEquals(unitSize + 2, cache.getMissCount());
+        assertEquals(unitSize, cache.getHitCount());
+    }
+
+    @Test
+    public void testScan() throws Exception {
+
+        device = new FileDevice(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ntfs/ntfs-links.dd"), "r");
+        NTFSFileSystemType type = FileSystemType.lookup(NTFSFileSystemType.class);
+        NTFSFileSystem fs = type.create(device, true);
+        MasterFileTable mft = fs.getNTFSVolume().getMFT();
+        mft.setRecordCacheSize(0);
+
+        Map<Long, MasterFileTable.ScanEntry> scanned = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            mft.scan(pool, e -> assertNull(scanned.put(e.getReferenceNumber(), e)));
+        } finally {
+            pool.shutdown();
+        }
+
+        // the same as going through the records one by one
+        int bytesPerFileRecord = fs.getNTFSVolume().getBootRecord().getFileRecordSize();
+        int expected = 0;
+        for (long index = 0; index < mft.getMftLength() / bytesPerFileRecord; index++) {
+            FileRecord fileRecord;
+            try {
+                fileRecord = mft.getRecord(index);
+            } catch (IOException e) {
+                continue;
+            }
+            if (!fileRecord.isInUse() || fileRecord.getBaseReferenceNumber() != 0) {
+                continue;
+            }
+            expected++;
+            MasterFileTable.ScanEntry entry = scanned.get(index);
+            assertNotNull(entry, "record " + index);
+            assertEquals(fileRecord.getFileName(), entry.getName());
+            assertEquals(fileRecord.getFileNameAttribute() != null ?
+                fileRecord.getFileNameAttribute().getParentMftIndex() : -1, entry.getParentReferenceNumber());
+            assertEquals(fileRecord.isDirectory(), entry.isDirectory());
+            assertEquals(fileRecord.getStandardInformationAttribute().getModificationTime(),
+                entry.getModificationTime());
+        }
+        assertEquals(expected, scanned.size());
+
+        MasterFileTable.ScanEntry root = scanned.get((long) MasterFileTable.SystemFiles.ROOT);
+        assertEquals(".", root.getName());
+        assertTrue(root.isDirectory());
+        assertTrue(scanned.values().stream().anyMatch(e -> "gaben.jpg".equals(e.getName()) && e.getSize() == 90404));
+    }
+
+    @Test
+    public void testUsnJournalReader() throws Exception {
+
+        File image = File.createTempFile("usn", ".dd");
+        image.deleteOnExit();
+        Files.copy(FileSystemTestUtils.getTestFile("org/jnode/test/fs/ntfs/ntfs-links.dd").toPath(), image.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+        FileDevice fileDevice = new FileDevice(image, "rw");
+        device = fileDevice;
+        NTFSFileSystemType type = FileSystemType.lookup(NTFSFileSystemType.class);
+        NTFSFileSystem fs = type.create(device, true);
+        int clusterSize = fs.getNTFSVolume().getClusterSize();
+
+        // a fake journal over the data of a file: version 2 entries padded to pages, and one of version 3
+        NTFSEntry entry = (NTFSEntry) fs.getRootEntry().getDirectory().getEntry("half-life").getDirectory()
+            .getEntry("Gabe Newell.jpg");
+        FileRecord fileRecord = entry.getFileRecord();
+        ByteBuffer journal = ByteBuffer.allocate((int) entry.getFile().getLength()).order(ByteOrder.LITTLE_ENDIAN);
+        List<Long> usns = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; ; i++) {
+            String name = "file" + "x".repeat(i % 37) + i;
+            int size = (0x3c + name.length() * 2 + 7) & ~7;
+            int pageLeft = 4096 - journal.position() % 4096;
+            if (size > pageLeft) {
+                journal.position(journal.position() + pageLeft);
+            }
+            if (journal.remaining() < size) {
+                break;
+            }
+            int usn = journal.position();
+            journal.putInt(usn, size).putShort(usn + 4, (short) (i == 5 ? 3 : 2));
+            journal.putLong(usn + 0x8, 100 + i).putLong(usn + 0x18, usn).putShort(usn + 0x38, (short) (name.length() * 2));
+            journal.position(usn + 0x3c);
+            journal.put(name.getBytes(StandardCharsets.UTF_16LE));
+            journal.position(usn + size);
+            if (i != 5) {
+                usns.add((long) usn);
+                names.add(name);
+            }
+        }
+        NTFSNonResidentAttribute data =
+            (NTFSNonResidentAttribute) fileRecord.findAttributesByTypeAndName(NTFSAttribute.Types.DATA, null).next();
+        for (DataRunInterface run : data.getDataRuns()) {
+            int from = (int) run.getFirstVcn() * clusterSize;
+            int to = Math.min(journal.capacity(), from + run.getLength() * clusterSize);
+            fileDevice.write(((DataRun) run).getCluster() * clusterSize,
+                ByteBuffer.wrap(journal.array(), from, to - from));
+        }
+
+        // small read ahead, so that entries are split between chunks
+        UsnJournalReader reader = new UsnJournalReader(fileRecord, null, 0, 1000);
+        List<Long> actualUsns = new ArrayList<>();
+        List<String> actualNames = new ArrayList<>();
+        reader.forEachRemaining(e -> {
+            actualUsns.add(e.getUsn());
+            actualNames.add(e.getFileName());
+        });
+        assertEquals(usns, actualUsns);
+        assertEquals(names, actualNames);
+        assertTrue(reader.getNextUsn() > journal.capacity() - 8);
+
+        // from the middle on
+        int middle = usns.size() / 2;
+        reader = new UsnJournalReader(fileRecord, null, usns.get(middle), UsnJournalReader.DEFAULT_BUFFER_SIZE);
+        assertEquals(usns.subList(middle, usns.size()), reader.stream().map(UsnJournalEntry::getUsn).toList());
+
+        // an all sparse stream has nothing to read
+        FileRecord badClus = fs.getNTFSVolume().getMFT().getRecord(MasterFileTable.SystemFiles.BADCLUS);
+        reader = new UsnJournalReader(badClus, "$Bad", 0, UsnJournalReader.DEFAULT_BUFFER_SIZE);
+        assertFalse(reader.hasNext());
+        assertEquals(badClus.getAttributeTotalSize(NTFSAttribute.Types.DATA, "$Bad"), reader.getNextUsn());
+
+        assertNull(fs.getUsnJournal(0));
+    }
+
     @Test
     public void testLinks() throws Exception {
 
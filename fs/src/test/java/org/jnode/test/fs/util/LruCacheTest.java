@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package org.jnode.test.fs.util;
+
+import org.jnode.fs.util.LruCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * LruCacheTest.
+ */
+public class LruCacheTest {
+
+    @Test
+    void testEviction() {
+        LruCache<Integer, String> cache = new LruCache<>(2);
+        cache.put(1, "1");
+        cache.put(2, "2");
+        assertEquals("1", cache.get(1));
+        cache.put(3, "3");
+
+        // 2 was the least recently used
+        assertNull(cache.get(2));
+        assertEquals("1", cache.get(1));
+        assertEquals("3", cache.get(3));
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testPutIfAbsent() {
+        LruCache<Integer, String> cache = new LruCache<>(2);
+        assertNull(cache.putIfAbsent(1, "a"));
+        assertEquals("a", cache.putIfAbsent(1, "b"));
+        assertFalse(cache.remove(1, "b"));
+        assertTrue(cache.remove(1, "a"));
+        assertFalse(cache.containsKey(1));
+        assertEquals(0, cache.getHitCount() + cache.getMissCount());
+    }
+
+    @Test
+    void testCacheSize() {
+        LruCache<Integer, String> cache = new LruCache<>(4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, String.valueOf(i));
+        }
+        cache.setCacheSize(1);
+        assertEquals(1, cache.size());
+        assertTrue(cache.containsKey(3));
+
+        cache.setCacheSize(0);
+        cache.put(4, "4");
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> cache.setCacheSize(-1));
+    }
+
+    @Test
+    void testRemoveIf() {
+        LruCache<Integer, String> cache = new LruCache<>(8);
+        for (int i = 0; i < 8; i++) {
+            cache.put(i, String.valueOf(i));
+        }
+        cache.removeIf((k, v) -> k % 2 == 0);
+        assertEquals(4, cache.size());
+        assertFalse(cache.containsKey(2));
+        assertTrue(cache.containsKey(3));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.nio.file.jnode;
+
+import java.nio.file.NoSuchFileException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * EntryCacheTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/16 umjammer initial version <br>
+ */
+class EntryCacheTest {
+
+    @Test
+    void testInvalidate() throws Exception {
+        EntryCache<String> cache = new EntryCache<>();
+        cache.put("/a", "a");
+        cache.put("/a/b", "b");
+        cache.put("/ab", "ab");
+        cache.putNegative("/c/x");
+        cache.putNegative("/a/X");
+
+        assertEquals("b", cache.get("/a/b"));
+        assertThrows(NoSuchFileException.class, () -> cache.get("/c/x"));
+        assertEquals(2, cache.getHitCount());
+        assertNull(cache.get("/d"));
+        assertEquals(1, cache.getMissCount());
+
+        // creating "/a/x" drops the negative spelling "/a/X" but keeps its siblings
+        cache.invalidate("/a/x");
+        assertNull(cache.get("/a/X"));
+        assertEquals("b", cache.get("/a/b"));
+
+        // removing "/A" drops everything below, but not "/ab"
+        cache.invalidate("/A");
+        assertNull(cache.get("/a"));
+        assertNull(cache.get("/a/b"));
+        assertEquals("ab", cache.get("/ab"));
+        assertThrows(NoSuchFileException.class, () -> cache.get("/c/x"));
+    }
+
+    @Test
+    void testCacheSize() throws Exception {
+        EntryCache<String> cache = new EntryCache<>();
+        cache.setCacheSize(2);
+        cache.put("/1", "1");
+        cache.put("/2", "2");
+        cache.get("/1");
+        cache.put("/3", "3");
+        assertEquals(2, cache.size());
+        assertNull(cache.get("/2"));
+        assertEquals("1", cache.get("/1"));
+
+        cache.setCacheSize(0);
+        assertEquals(0, cache.size());
+        cache.put("/4", "4");
+        assertNull(cache.get("/4"));
+    }
+}
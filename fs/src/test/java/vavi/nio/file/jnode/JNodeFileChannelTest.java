@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.nio.file.jnode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.jnode.fs.FSFile;
+import org.jnode.fs.FileSystem;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * JNodeFileChannelTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/16 umjammer initial version <br>
+ */
+class JNodeFileChannelTest {
+
+    /** like ext2, throws when reading past the end and does not advance the buffer */
+    static class MemoryFile implements FSFile {
+        byte[] data = new byte[0];
+
+        @Override public long getLength() { return data.length; }
+        @Override public void setLength(long length) { data = Arrays.copyOf(data, (int) length); }
+        @Override public void read(long offset, ByteBuffer dest) throws IOException {
+            if (offset + dest.remaining() > data.length) throw new IOException("Can't read past the file!");
+            dest.duplicate().put(data, (int) offset, dest.remaining());
+        }
+        @Override public void write(long offset, ByteBuffer src) {
+            if (offset + src.remaining() > data.length) setLength(offset + src.remaining());
+            src.get(data, (int) offset, src.remaining());
+        }
+        @Override public void flush() {}
+        @Override public boolean isValid() { return true; }
+        @Override public FileSystem<?> getFileSystem() { return null; }
+    }
+
+    @Test
+    void testStreams() throws Exception {
+        byte[] data = new byte[JNodeFileChannel.BUFFER_SIZE * 3 + 17];
+        new Random(1).nextBytes(data);
+        MemoryFile file = new MemoryFile();
+
+        try (OutputStream os = Channels.newOutputStream(new JNodeFileChannel(file, false, true, false))) {
+            for (int i = 0; i < 100; i++) {
+                os.write(data[i]);
+            }
+            os.write(data, 100, data.length - 100);
+        }
+        assertArrayEquals(data, file.data);
+
+        try (InputStream is = Channels.newInputStream(new JNodeFileChannel(file, true, false, false))) {
+            assertEquals(data[0] & 0xff, is.read());
+            assertEquals(1000, is.skip(1000));
+            byte[] rest = is.readAllBytes();
+            assertArrayEquals(Arrays.copyOfRange(data, 1001, data.length), rest);
+            assertEquals(-1, is.read());
+        }
+    }
+
+    @Test
+    void testChannel() throws Exception {
+        MemoryFile file = new MemoryFile();
+        file.data = new byte[1000];
+        new Random(2).nextBytes(file.data);
+
+        try (FileChannel channel = new JNodeFileChannel(file, true, false, false)) {
+            ByteBuffer buffer = ByteBuffer.allocate(300);
+            channel.position(900);
+            assertEquals(100, channel.read(buffer));
+            assertEquals(1000, channel.position());
+            assertArrayEquals(Arrays.copyOfRange(file.data, 900, 1000), Arrays.copyOf(buffer.array(), 100));
+            assertEquals(-1, channel.read(buffer.clear()));
+
+            assertEquals(10, channel.read(buffer.clear().limit(10), 5));
+            assertEquals(1000, channel.position());
+            assertThrows(NonWritableChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+        }
+
+        try (FileChannel channel = new JNodeFileChannel(file, false, true, true)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+            assertEquals(1003, channel.size());
+            channel.truncate(500);
+            assertEquals(500, channel.position());
+        }
+        assertEquals(500, file.getLength());
+    }
+
+    @Test
+    void testLock() throws Exception {
+        MemoryFile file = new MemoryFile();
+        file.data = new byte[1000];
+
+        FileLock shared;
+        try (FileChannel channel = new JNodeFileChannel(file, true, true, false)) {
+            FileLock lock = channel.lock();
+            assertTrue(lock.isValid());
+            assertFalse(lock.isShared());
+            assertThrows(OverlappingFileLockException.class, () -> channel.tryLock(0, 10, true));
+            lock.release();
+            assertFalse(lock.isValid());
+
+            shared = channel.tryLock(0, 100, true);
+            assertTrue(shared.isShared());
+            FileLock other = channel.tryLock(100, 100, false);
+            assertTrue(other.isValid());
+            assertThrows(OverlappingFileLockException.class, () -> channel.lock(50, 100, false));
+            other.close();
+        }
+        assertFalse(shared.isValid());
+
+        try (FileChannel channel = new JNodeFileChannel(file, true, false, false)) {
+            assertThrows(NonWritableChannelException.class, channel::lock);
+            assertTrue(channel.tryLock(0, Long.MAX_VALUE, true).isValid());
+        }
+    }
+}